@@ -0,0 +1,105 @@
+const int MAX_POINT_LIGHTS = 5;
+const int MAX_SPOT_LIGHTS = 5;
+const float SPECULAR_POWER = 10;
+
+struct Attenuation {
+    float constant;
+    float linear;
+    float exponent;
+};
+
+struct AmbientLight {
+    float factor;
+    vec3 color;
+};
+
+struct PointLight {
+    vec3 position;
+    vec3 color;
+    float intensity;
+    Attenuation att;
+};
+
+struct SpotLight {
+    PointLight pl;
+    vec3 conedir;
+    float cutoff;
+};
+
+struct DirLight {
+    vec3 color;
+    vec3 direction;
+    float intensity;
+};
+
+// std140 layout, written by SceneRender: changing a member here means changing its offsets there
+layout (std140) uniform LightUniforms {
+    AmbientLight ambientLight;
+    DirLight dirLight;
+    PointLight pointLights[MAX_POINT_LIGHTS];
+    SpotLight spotLights[MAX_SPOT_LIGHTS];
+    // Only the first pointLightCount and spotLightCount slots hold lights
+    int pointLightCount;
+    int spotLightCount;
+};
+
+vec4 calcAmbient(AmbientLight ambientLight, vec4 ambient) {
+    return vec4(ambientLight.factor * ambientLight.color, 1) * ambient;
+}
+
+vec4 calcLightColor(
+    vec4 diffuse, vec4 specular, float reflectance, vec3 lightColor,
+    float light_intensity, vec3 position, vec3 to_light_dir, vec3 normal) {
+    vec4 diffuseColor = vec4(0, 0, 0, 1);
+    vec4 specColor = vec4(0, 0, 0, 1);
+
+    // Diffuse Light
+    float diffuseFactor = max(dot(normal, to_light_dir), 0.0);
+    diffuseColor = diffuse * vec4(lightColor, 1.0) * light_intensity * diffuseFactor;
+
+    // Specular Light
+    vec3 camera_direction = normalize(-position);
+    vec3 from_light_dir = -to_light_dir;
+    vec3 reflected_light = normalize(reflect(from_light_dir, normal));
+    float specularFactor = max(dot(camera_direction, reflected_light), 0.0);
+    specularFactor = pow(specularFactor, SPECULAR_POWER);
+    specColor = specular * light_intensity * specularFactor * reflectance * vec4(lightColor, 1.0);
+
+    return (diffuseColor + specColor);
+}
+
+vec4 calcPointLight(vec4 diffuse, vec4 specular, float reflectance, PointLight light, vec3 position, vec3 normal) {
+    vec3 light_direction = light.position - position;
+    vec3 to_light_dir = normalize(light_direction);
+    vec4 light_color = calcLightColor(
+        diffuse, specular, reflectance, light.color, light.intensity, position, to_light_dir, normal
+    );
+
+    // Apply Attenuation
+    float distance = length(light_direction);
+    float attenuationInv = light.att.constant + light.att.linear * distance +
+    light.att.exponent * distance * distance;
+    return light_color / attenuationInv;
+}
+
+vec4 calcSpotLight(vec4 diffuse, vec4 specular, float reflectance, SpotLight light, vec3 position, vec3 normal) {
+    vec3 light_direction = light.pl.position - position;
+    vec3 to_light_dir = normalize(light_direction);
+    vec3 from_light_dir = -to_light_dir;
+    float spot_alfa = dot(from_light_dir, normalize(light.conedir));
+
+    vec4 color = vec4(0, 0, 0, 0);
+
+    if (spot_alfa > light.cutoff)
+    {
+        color = calcPointLight(diffuse, specular, reflectance, light.pl, position, normal);
+        color *= (1.0 - (1.0 - spot_alfa) / (1.0 - light.cutoff));
+    }
+    return color;
+}
+
+vec4 calcDirLight(vec4 diffuse, vec4 specular, float reflectance, DirLight light, vec3 position, vec3 normal) {
+    return calcLightColor(
+        diffuse, specular, reflectance, light.color, light.intensity, position, normalize(light.direction), normal
+    );
+}
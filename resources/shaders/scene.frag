@@ -1,128 +1,41 @@
 #version 330
 
-const int MAX_POINT_LIGHTS = 5;
-const int MAX_SPOT_LIGHTS = 5;
-const float SPECULAR_POWER = 10;
+#include "lighting.glsl"
 
 in vec3 outPosition;
 in vec3 outNormal;
 in vec3 outTangent;
 in vec3 outBitangent;
 in vec2 outTextCoord;
+#ifdef ATLAS
+in vec4 outAtlasTile;
+#endif
 
 out vec4 fragColor;
 
-struct Attenuation {
-    float constant;
-    float linear;
-    float exponent;
-};
-
 struct Material {
     vec4 ambient;
     vec4 diffuse;
     vec4 specular;
     float reflectance;
-    int hasNormalMap;
-};
-
-struct AmbientLight {
-    float factor;
-    vec3 color;
 };
 
-struct PointLight {
-    vec3 position;
-    vec3 color;
-    float intensity;
-    Attenuation att;
-};
-
-struct SpotLight {
-    PointLight pl;
-    vec3 conedir;
-    float cutoff;
-};
+uniform sampler2D txtSampler;
+uniform Material material;
 
-struct DirLight {
-    vec3 color;
-    vec3 direction;
-    float intensity;
-};
+#ifdef NORMAL_MAP
+uniform sampler2D normalSampler;
+#endif
 
+#ifdef FOG
 struct Fog {
-    int activeFog;
     vec3 color;
     float density;
 };
 
-uniform sampler2D txtSampler;
-uniform sampler2D normalSampler;
-uniform Material material;
-uniform AmbientLight ambientLight;
-uniform PointLight pointLights[MAX_POINT_LIGHTS];
-uniform SpotLight spotLights[MAX_SPOT_LIGHTS];
-uniform DirLight dirLight;
-uniform Fog fog;
-
-vec4 calcAmbient(AmbientLight ambientLight, vec4 ambient) {
-    return vec4(ambientLight.factor * ambientLight.color, 1) * ambient;
-}
-
-vec4 calcLightColor(
-    vec4 diffuse, vec4 specular, vec3 lightColor,
-    float light_intensity, vec3 position, vec3 to_light_dir, vec3 normal) {
-    vec4 diffuseColor = vec4(0, 0, 0, 1);
-    vec4 specColor = vec4(0, 0, 0, 1);
-
-    // Diffuse Light
-    float diffuseFactor = max(dot(normal, to_light_dir), 0.0);
-    diffuseColor = diffuse * vec4(lightColor, 1.0) * light_intensity * diffuseFactor;
-
-    // Specular Light
-    vec3 camera_direction = normalize(-position);
-    vec3 from_light_dir = -to_light_dir;
-    vec3 reflected_light = normalize(reflect(from_light_dir, normal));
-    float specularFactor = max(dot(camera_direction, reflected_light), 0.0);
-    specularFactor = pow(specularFactor, SPECULAR_POWER);
-    specColor = specular * light_intensity * specularFactor * material.reflectance * vec4(lightColor, 1.0);
-
-    return (diffuseColor + specColor);
-}
-
-vec4 calcPointLight(vec4 diffuse, vec4 specular, PointLight light, vec3 position, vec3 normal) {
-    vec3 light_direction = light.position - position;
-    vec3 to_light_dir = normalize(light_direction);
-    vec4 light_color = calcLightColor(diffuse, specular, light.color, light.intensity, position, to_light_dir, normal);
-
-    // Apply Attenuation
-    float distance = length(light_direction);
-    float attenuationInv = light.att.constant + light.att.linear * distance +
-    light.att.exponent * distance * distance;
-    return light_color / attenuationInv;
-}
-
-vec4 calcSpotLight(vec4 diffuse, vec4 specular, SpotLight light, vec3 position, vec3 normal) {
-    vec3 light_direction = light.pl.position - position;
-    vec3 to_light_dir = normalize(light_direction);
-    vec3 from_light_dir = -to_light_dir;
-    float spot_alfa = dot(from_light_dir, normalize(light.conedir));
-
-    vec4 color = vec4(0, 0, 0, 0);
-
-    if (spot_alfa > light.cutoff)
-    {
-        color = calcPointLight(diffuse, specular, light.pl, position, normal);
-        color *= (1.0 - (1.0 - spot_alfa) / (1.0 - light.cutoff));
-    }
-    return color;
-}
-
-vec4 calcDirLight(vec4 diffuse, vec4 specular, DirLight light, vec3 position, vec3 normal) {
-    return calcLightColor(
-        diffuse, specular, light.color, light.intensity, position, normalize(light.direction), normal
-    );
-}
+layout (std140) uniform FogUniforms {
+    Fog fog;
+};
 
 vec4 calcFog(vec3 pos, vec4 color, Fog fog, vec3 ambientLight, DirLight dirLight) {
     vec3 fogColor = fog.color * (ambientLight + dirLight.color * dirLight.intensity);
@@ -133,7 +46,9 @@ vec4 calcFog(vec3 pos, vec4 color, Fog fog, vec3 ambientLight, DirLight dirLight
     vec3 resultColor = mix(color.xyz, fog.color, fogFactor);
     return vec4(resultColor, color.w);
 }
+#endif
 
+#ifdef NORMAL_MAP
 vec3 calcNormal(vec3 normal, vec3 tangent, vec3 bitangent, vec2 textCoords) {
     mat3 TBN = mat3(tangent, bitangent, normal);
     vec3 newNormal = texture(normalSampler, textCoords).rgb;
@@ -141,34 +56,46 @@ vec3 calcNormal(vec3 normal, vec3 tangent, vec3 bitangent, vec2 textCoords) {
     newNormal = normalize(TBN * newNormal);
     return newNormal;
 }
+#endif
+
+#ifdef ATLAS
+vec2 calcTextCoord(vec2 textCoord, vec4 atlasTile) {
+    // Greedy-meshed voxel quads carry texture coordinates in block units, repeat them inside their atlas tile
+    return atlasTile.xy + fract(textCoord) * atlasTile.z;
+}
+#endif
 
 void main() {
-    vec4 text_color = texture(txtSampler, outTextCoord);
+#ifdef ATLAS
+    vec2 textCoord = calcTextCoord(outTextCoord, outAtlasTile);
+    vec4 text_color = texture(txtSampler, textCoord) * vec4(vec3(outAtlasTile.w), 1);
+#else
+    vec2 textCoord = outTextCoord;
+    vec4 text_color = texture(txtSampler, textCoord);
+#endif
     vec4 ambient = calcAmbient(ambientLight, text_color + material.ambient);
     vec4 diffuse = text_color + material.diffuse;
     vec4 specular = text_color + material.specular;
 
+#ifdef NORMAL_MAP
+    vec3 normal = calcNormal(outNormal, outTangent, outBitangent, textCoord);
+#else
     vec3 normal = outNormal;
-    if (material.hasNormalMap > 0) {
-        normal = calcNormal(outNormal, outTangent, outBitangent, outTextCoord);
-    }
+#endif
 
-    vec4 diffuseSpecularComp = calcDirLight(diffuse, specular, dirLight, outPosition, normal);
+    float reflectance = material.reflectance;
+    vec4 diffuseSpecularComp = calcDirLight(diffuse, specular, reflectance, dirLight, outPosition, normal);
 
-    for (int i = 0; i < MAX_POINT_LIGHTS; i++) {
-        if (pointLights[i].intensity > 0) {
-            diffuseSpecularComp += calcPointLight(diffuse, specular, pointLights[i], outPosition, normal);
-        }
+    for (int i = 0; i < pointLightCount; i++) {
+        diffuseSpecularComp += calcPointLight(diffuse, specular, reflectance, pointLights[i], outPosition, normal);
     }
 
-    for (int i = 0; i < MAX_SPOT_LIGHTS; i++) {
-        if (spotLights[i].pl.intensity > 0) {
-            diffuseSpecularComp += calcSpotLight(diffuse, specular, spotLights[i], outPosition, normal);
-        }
+    for (int i = 0; i < spotLightCount; i++) {
+        diffuseSpecularComp += calcSpotLight(diffuse, specular, reflectance, spotLights[i], outPosition, normal);
     }
     fragColor = ambient + diffuseSpecularComp;
 
-    if (fog.activeFog == 1) {
-        fragColor = calcFog(outPosition, fragColor, fog, ambientLight.color, dirLight);
-    }
+#ifdef FOG
+    fragColor = calcFog(outPosition, fragColor, fog, ambientLight.color, dirLight);
+#endif
 }
\ No newline at end of file
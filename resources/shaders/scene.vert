@@ -1,15 +1,10 @@
 #version 330
 
-const int MAX_WEIGHTS = 4;
-const int MAX_BONES = 150;
-
 layout (location=0) in vec3 position;
 layout (location=1) in vec3 normal;
 layout (location=2) in vec3 tangent;
 layout (location=3) in vec3 bitangent;
 layout (location=4) in vec2 texCoord;
-layout (location=5) in vec4 boneWeights;
-layout (location=6) in ivec4 boneIndices;
 
 out vec3 outPosition;
 out vec3 outNormal;
@@ -17,12 +12,32 @@ out vec3 outTangent;
 out vec3 outBitangent;
 out vec2 outTextCoord;
 
-uniform mat4 projectionMatrix;
-uniform mat4 viewMatrix;
+layout (std140) uniform CameraUniforms {
+    mat4 projectionMatrix;
+    mat4 viewMatrix;
+};
+
+#ifdef ATLAS
+layout (location=7) in vec4 atlasTile;
+
+out vec4 outAtlasTile;
+#endif
+
+#ifdef SKINNED
+const int MAX_WEIGHTS = 4;
+const int MAX_BONES = 150;
+
+layout (location=5) in vec4 boneWeights;
+layout (location=6) in ivec4 boneIndices;
+
 uniform mat4 modelMatrix;
 uniform mat4 bonesMatrices[MAX_BONES];
+#else
+layout (location=8) in mat4 instanceMatrix;
+#endif
 
 void main() {
+#ifdef SKINNED
     vec4 initPos = vec4(0, 0, 0, 0);
     vec4 initNormal = vec4(0, 0, 0, 0);
     vec4 initTangent = vec4(0, 0, 0, 0);
@@ -54,8 +69,15 @@ void main() {
         initTangent = vec4(tangent, 0.0);
         initBitangent = vec4(bitangent, 0.0);
     }
-
     mat4 modelViewMatrix = viewMatrix * modelMatrix;
+#else
+    vec4 initPos = vec4(position, 1.0);
+    vec4 initNormal = vec4(normal, 0.0);
+    vec4 initTangent = vec4(tangent, 0.0);
+    vec4 initBitangent = vec4(bitangent, 0.0);
+    mat4 modelViewMatrix = viewMatrix * instanceMatrix;
+#endif
+
     vec4 mvPosition = modelViewMatrix * initPos;
     gl_Position = projectionMatrix * mvPosition;
     outPosition = mvPosition.xyz;
@@ -63,4 +85,7 @@ void main() {
     outTangent = normalize(modelViewMatrix * initTangent).xyz;
     outBitangent = normalize(modelViewMatrix * initBitangent).xyz;
     outTextCoord = texCoord;
+#ifdef ATLAS
+    outAtlasTile = atlasTile;
+#endif
 }
\ No newline at end of file
@@ -12,6 +12,10 @@ public class MouseInput {
     private boolean inWindow;
     @Getter private boolean leftButtonPressed;
     @Getter private boolean rightButtonPressed;
+    @Getter private boolean leftButtonClicked;
+    @Getter private boolean rightButtonClicked;
+    private boolean leftButtonDown;
+    private boolean rightButtonDown;
 
     private final long windowHandle;
 
@@ -31,6 +35,9 @@ public class MouseInput {
         glfwSetMouseButtonCallback(windowHandle, (_, button, action, _) -> {
             this.leftButtonPressed = button == GLFW_MOUSE_BUTTON_1 && action == GLFW_PRESS;
             this.rightButtonPressed = button == GLFW_MOUSE_BUTTON_2 && action == GLFW_PRESS;
+            // Remembered until the next input() so a click between two frames is not lost
+            this.leftButtonDown |= this.leftButtonPressed;
+            this.rightButtonDown |= this.rightButtonPressed;
         });
         this.windowHandle = windowHandle;
     }
@@ -40,8 +47,15 @@ public class MouseInput {
         this.middlePos.y = height / 2f;
     }
 
+    /**
+     * Samples the mouse for the next frame. The clicked flags are only set for the frame after a button went down.
+     */
     public void input() {
         this.displayVec.zero();
+        this.leftButtonClicked = this.leftButtonDown;
+        this.rightButtonClicked = this.rightButtonDown;
+        this.leftButtonDown = false;
+        this.rightButtonDown = false;
 
         if (this.inWindow) {
             double deltaX = this.currentPos.x - this.middlePos.x;
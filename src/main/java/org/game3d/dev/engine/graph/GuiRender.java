@@ -10,6 +10,7 @@ import org.game3d.dev.engine.IGuiInstance;
 import org.game3d.dev.engine.Window;
 import org.game3d.dev.engine.scene.Scene;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.joml.Vector2f;
 import org.lwjgl.glfw.GLFWKeyCallback;
 
@@ -33,12 +34,13 @@ public class GuiRender {
     private ShaderProgram shaderProgram;
     private Texture texture;
     private UniformsMap uniformsMap;
+    private int scaleUniform;
 
-    public GuiRender(Window window) {
+    public GuiRender(Window window, @Nullable ProgramBinaryCache cache) {
         List<ShaderProgram.ShaderModuleData> shaderModuleDataList = new ArrayList<>();
         shaderModuleDataList.add(new ShaderProgram.ShaderModuleData("resources/shaders/gui.vert", GL_VERTEX_SHADER));
         shaderModuleDataList.add(new ShaderProgram.ShaderModuleData("resources/shaders/gui.frag", GL_FRAGMENT_SHADER));
-        this.shaderProgram = new ShaderProgram(shaderModuleDataList);
+        this.shaderProgram = new ShaderProgram(shaderModuleDataList, cache);
         createUniforms();
         createUIResources(window);
         setupKeyCallback(window);
@@ -69,7 +71,7 @@ public class GuiRender {
 
     private void createUniforms() {
         this.uniformsMap = new UniformsMap(this.shaderProgram.getProgramId());
-        this.uniformsMap.createUniform("scale");
+        this.scaleUniform = this.uniformsMap.createUniform("scale");
         this.scale = new Vector2f();
     }
 
@@ -95,7 +97,7 @@ public class GuiRender {
         ImGuiIO io = ImGui.getIO();
         this.scale.x = 2.0f / io.getDisplaySizeX();
         this.scale.y = -2.0f / io.getDisplaySizeY();
-        this.uniformsMap.setUniform("scale", this.scale);
+        this.uniformsMap.setUniform(this.scaleUniform, this.scale);
 
         ImDrawData drawData = ImGui.getDrawData();
         int numList = drawData.getCmdListsCount();
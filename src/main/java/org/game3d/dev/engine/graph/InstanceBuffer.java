@@ -0,0 +1,98 @@
+package org.game3d.dev.engine.graph;
+
+import lombok.Getter;
+import org.game3d.dev.engine.scene.EntityStore;
+import org.jetbrains.annotations.NotNull;
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.FloatBuffer;
+
+import static org.lwjgl.opengl.GL15.*;
+
+/**
+ * The model matrices of the entities of one model in a vertex buffer, in the order of {@link Model#getEntities()},
+ * for drawing all of them with one instanced draw call per mesh.
+ * <p>
+ * The buffer is only written when something changed: the whole of it when entities were added to or removed
+ * from the model, otherwise just the range between the first and the last instance marked changed.
+ */
+public class InstanceBuffer {
+    private static final int MATRIX_BYTES = EntityStore.MATRIX_SIZE * Float.BYTES;
+
+    @Getter private final int vboId;
+    private FloatBuffer data;
+    private int capacity;
+    private int entityVersion;
+    private int changedFrom;
+    private int changedTo;
+
+    public InstanceBuffer(@NotNull Model model) {
+        this.vboId = glGenBuffers();
+        this.capacity = Math.max(model.getEntityCount(), 16);
+        this.data = MemoryUtil.memAllocFloat(this.capacity * EntityStore.MATRIX_SIZE);
+        glBindBuffer(GL_ARRAY_BUFFER, this.vboId);
+        glBufferData(GL_ARRAY_BUFFER, (long) this.capacity * MATRIX_BYTES, GL_DYNAMIC_DRAW);
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+        // Anything but the current version, so the first update writes everything
+        this.entityVersion = model.getEntityVersion() - 1;
+        this.resetChanged();
+    }
+
+    /**
+     * Marks the model matrix of the instance at {@code position} in {@link Model#getEntities()} as changed.
+     */
+    public void markChanged(int position) {
+        this.changedFrom = Math.min(this.changedFrom, position);
+        this.changedTo = Math.max(this.changedTo, position);
+    }
+
+    /**
+     * Uploads the changed model matrices of the entities of the model.
+     *
+     * @param matrices the model matrices of the scene's {@link EntityStore}
+     */
+    public void update(@NotNull Model model, float @NotNull [] matrices) {
+        int count = model.getEntityCount();
+        glBindBuffer(GL_ARRAY_BUFFER, this.vboId);
+        if (count > this.capacity) {
+            this.capacity = Math.max(count, this.capacity * 2);
+            this.data = MemoryUtil.memRealloc(this.data, this.capacity * EntityStore.MATRIX_SIZE);
+            glBufferData(GL_ARRAY_BUFFER, (long) this.capacity * MATRIX_BYTES, GL_DYNAMIC_DRAW);
+            this.entityVersion = model.getEntityVersion() - 1;
+        }
+        if (this.entityVersion != model.getEntityVersion()) {
+            this.entityVersion = model.getEntityVersion();
+            this.upload(model, matrices, 0, count);
+        } else if (this.changedFrom < count) {
+            this.upload(model, matrices, this.changedFrom, Math.min(this.changedTo + 1, count));
+        }
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+        this.resetChanged();
+    }
+
+    public void cleanup() {
+        glDeleteBuffers(this.vboId);
+        MemoryUtil.memFree(this.data);
+    }
+
+    private void upload(@NotNull Model model, float @NotNull [] matrices, int from, int to) {
+        if (from >= to) {
+            return;
+        }
+        int[] entities = model.getEntities();
+        for (int position = from; position < to; position++) {
+            this.data.put(
+                    position * EntityStore.MATRIX_SIZE, matrices, entities[position] * EntityStore.MATRIX_SIZE,
+                    EntityStore.MATRIX_SIZE
+            );
+        }
+        this.data.limit(to * EntityStore.MATRIX_SIZE).position(from * EntityStore.MATRIX_SIZE);
+        glBufferSubData(GL_ARRAY_BUFFER, (long) from * MATRIX_BYTES, this.data);
+        this.data.clear();
+    }
+
+    private void resetChanged() {
+        this.changedFrom = Integer.MAX_VALUE;
+        this.changedTo = -1;
+    }
+}
@@ -18,6 +18,10 @@ public class Material {
     @Setter private Vector4f specularColor;
     @Setter private String texturePath;
     @Setter private String normalMapPath;
+    /**
+     * Whether the meshes carry atlas tiles, with texture coordinates in blocks repeated inside their tile.
+     */
+    @Setter private boolean atlas;
 
     public Material() {
         this.diffuseColor = DEFAULT_COLOR;
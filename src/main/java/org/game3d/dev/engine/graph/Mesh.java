@@ -2,6 +2,7 @@ package org.game3d.dev.engine.graph;
 
 import lombok.Getter;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.lwjgl.opengl.GL30;
 import org.lwjgl.system.MemoryStack;
 
@@ -11,13 +12,19 @@ import java.util.ArrayList;
 import java.util.List;
 
 import static org.lwjgl.opengl.GL30.*;
+import static org.lwjgl.opengl.GL33.glVertexAttribDivisor;
 
 public class Mesh {
     @Getter private final int numVertices;
     @Getter private final int vaoId;
     private final List<Integer> vboIdList;
+    private int instanceVboId;
 
     public static final int MAX_WEIGHTS = 4;
+    /**
+     * First of the four attribute locations holding the columns of the model matrix of an instance.
+     */
+    public static final int INSTANCE_MATRIX_LOCATION = 8;
 
     public Mesh(
             float[] positions,
@@ -41,6 +48,20 @@ public class Mesh {
             int @NotNull [] indices,
             int[] boneIndices,
             float[] weights
+    ) {
+        this(positions, normals, tangents, biTangents, textCoords, indices, boneIndices, weights, null);
+    }
+
+    public Mesh(
+            float @NotNull [] positions,
+            float @NotNull [] normals,
+            float @NotNull [] tangents,
+            float @NotNull [] biTangents,
+            float @NotNull [] textCoords,
+            int @NotNull [] indices,
+            int[] boneIndices,
+            float[] weights,
+            float @Nullable [] atlasTiles
     ) {
         try (MemoryStack stack = MemoryStack.stackPush()) {
             this.numVertices = indices.length;
@@ -119,6 +140,18 @@ public class Mesh {
             glEnableVertexAttribArray(6);
             glVertexAttribPointer(6, 4, GL_FLOAT, false, 0, 0);
 
+            // atlas tiles (origin, size and shade), only read by the ATLAS variants of the scene shader
+            if (atlasTiles != null) {
+                vboId = glGenBuffers();
+                this.vboIdList.add(vboId);
+                FloatBuffer atlasTilesBuffer = stack.callocFloat(atlasTiles.length);
+                atlasTilesBuffer.put(0, atlasTiles);
+                glBindBuffer(GL_ARRAY_BUFFER, vboId);
+                glBufferData(GL_ARRAY_BUFFER, atlasTilesBuffer, GL_STATIC_DRAW);
+                glEnableVertexAttribArray(7);
+                glVertexAttribPointer(7, 4, GL_FLOAT, false, 0, 0);
+            }
+
             // indices
             vboId = glGenBuffers();
             this.vboIdList.add(vboId);
@@ -132,6 +165,27 @@ public class Mesh {
         }
     }
 
+    /**
+     * Feeds the instance model matrix attributes from a buffer of column-major matrices, one per instance. Does
+     * nothing if the mesh already reads from that buffer.
+     */
+    public void setInstanceBuffer(int vboId) {
+        if (this.instanceVboId == vboId) {
+            return;
+        }
+        this.instanceVboId = vboId;
+        glBindVertexArray(this.vaoId);
+        glBindBuffer(GL_ARRAY_BUFFER, vboId);
+        for (int column = 0; column < 4; column++) {
+            int location = INSTANCE_MATRIX_LOCATION + column;
+            glEnableVertexAttribArray(location);
+            glVertexAttribPointer(location, 4, GL_FLOAT, false, 16 * Float.BYTES, (long) column * 4 * Float.BYTES);
+            glVertexAttribDivisor(location, 1);
+        }
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+        glBindVertexArray(0);
+    }
+
     public void cleanup() {
         this.vboIdList.forEach(GL30::glDeleteBuffers);
         glDeleteVertexArrays(this.vaoId);
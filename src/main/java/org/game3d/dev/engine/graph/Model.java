@@ -1,26 +1,63 @@
 package org.game3d.dev.engine.graph;
 
 import lombok.Getter;
-import org.game3d.dev.engine.scene.Entity;
 import org.joml.Matrix4f;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 @Getter
 public class Model {
     private final String id;
-    private final List<Entity> entities;
+    /**
+     * Slots in the scene's {@link org.game3d.dev.engine.scene.EntityStore} of the entities drawn with this model;
+     * only the first {@code entityCount} are live, in no particular order.
+     */
+    private int[] entities;
+    private int entityCount;
+    /**
+     * Bumped whenever {@link #getEntities()} changes.
+     */
+    private int entityVersion;
     private final List<Material> materials;
     private final List<Animation> animations;
 
     public Model(String id, List<Material> materials, List<Animation> animations) {
         this.id = id;
         this.materials = materials;
-        this.entities = new ArrayList<>();
+        this.entities = new int[4];
         this.animations = animations;
     }
 
+    /**
+     * @return the position of the entity in {@link #getEntities()}
+     */
+    public int addEntity(int index) {
+        if (this.entityCount == this.entities.length) {
+            this.entities = Arrays.copyOf(this.entities, this.entityCount * 2);
+        }
+        this.entities[this.entityCount] = index;
+        this.entityVersion++;
+        return this.entityCount++;
+    }
+
+    /**
+     * Removes the entity at {@code position} by moving the last entity into its place.
+     *
+     * @return the slot of the entity that moved to {@code position}, or -1 if the removed entity was the last one
+     */
+    public int removeEntityAt(int position) {
+        int last = --this.entityCount;
+        int moved = this.entities[last];
+        this.entities[position] = moved;
+        this.entityVersion++;
+        return position == last ? -1 : moved;
+    }
+
+    public boolean isAnimated() {
+        return !this.animations.isEmpty();
+    }
+
     public void cleanup() {
         this.materials.forEach(Material::cleanup);
     }
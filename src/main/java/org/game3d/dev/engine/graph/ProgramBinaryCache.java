@@ -0,0 +1,211 @@
+package org.game3d.dev.engine.graph;
+
+import lombok.Getter;
+import org.jetbrains.annotations.NotNull;
+import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GLCapabilities;
+import org.lwjgl.system.MemoryStack;
+import org.lwjgl.system.MemoryUtil;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+
+import static org.lwjgl.opengl.ARBGetProgramBinary.*;
+import static org.lwjgl.opengl.GL20.*;
+
+/**
+ * Linked program binaries in a directory on disk, so a program whose sources are the same as on an earlier launch
+ * is loaded from the driver's own format instead of compiled and linked again.
+ * <p>
+ * An entry is keyed by a hash of the preprocessed sources of all stages, which include the injected defines, and
+ * of the vendor, renderer and version strings of the driver, since a binary is only valid for the driver that
+ * produced it. Without program binary support, with an unreadable entry or with one the driver rejects, the
+ * program is compiled from source as usual, and an entry that was unreadable or rejected is deleted. Entries that
+ * cannot be written are simply not cached.
+ */
+public class ProgramBinaryCache {
+    private static final int MAGIC = 0x50424331;
+    // Magic, binary format, compile time and binary length
+    private static final int HEADER_BYTES = 4 + 4 + 8 + 4;
+
+    private final Path directory;
+    @Getter private final boolean supported;
+    private final String driver;
+    /**
+     * Programs loaded from the cache so far.
+     */
+    @Getter private int loadedCount;
+    /**
+     * Programs compiled from source so far.
+     */
+    @Getter private int compiledCount;
+    /**
+     * Time the loaded programs took to compile and link when they were cached, minus the time loading them took.
+     */
+    @Getter private long savedNanos;
+
+    public ProgramBinaryCache(@NotNull Path directory) {
+        this.directory = directory;
+        GLCapabilities capabilities = GL.getCapabilities();
+        this.supported = (capabilities.OpenGL41 || capabilities.GL_ARB_get_program_binary)
+                && glGetInteger(GL_NUM_PROGRAM_BINARY_FORMATS) > 0;
+        this.driver = glGetString(GL_VENDOR) + "\n" + glGetString(GL_RENDERER) + "\n" + glGetString(GL_VERSION);
+    }
+
+    /**
+     * @param sources the preprocessed source of each shader module, in the same order
+     */
+    public @NotNull String getKey(@NotNull List<ShaderProgram.ShaderModuleData> shaderModuleDataList,
+                                  @NotNull List<String> sources) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        digest.update(this.driver.getBytes(StandardCharsets.UTF_8));
+        for (int i = 0; i < sources.size(); i++) {
+            digest.update((byte) 0);
+            digest.update(Integer.toString(shaderModuleDataList.get(i).shaderType()).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(sources.get(i).getBytes(StandardCharsets.UTF_8));
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Loads the cached binary for {@code key} into a program that has nothing attached yet.
+     *
+     * @return whether the program is linked now; if not, it is still empty and can be built from source
+     */
+    public boolean load(int programId, @NotNull String key) {
+        if (!this.supported) {
+            return false;
+        }
+        Path file = this.getFile(key);
+        if (!Files.isRegularFile(file)) {
+            return false;
+        }
+        long start = System.nanoTime();
+        long compileNanos = 0;
+        boolean linked = false;
+        ByteBuffer binary = null;
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+            if (in.readInt() == MAGIC) {
+                int format = in.readInt();
+                compileNanos = in.readLong();
+                int length = in.readInt();
+                // A damaged length must not decide how much is allocated
+                if (length > 0 && length <= Files.size(file) - HEADER_BYTES) {
+                    binary = MemoryUtil.memAlloc(length);
+                    readFully(in, binary);
+                    glProgramBinary(programId, format, binary);
+                    linked = glGetProgrami(programId, GL_LINK_STATUS) != 0;
+                }
+            }
+        } catch (IOException e) {
+            // Treated like a damaged entry
+        } finally {
+            MemoryUtil.memFree(binary);
+        }
+
+        if (!linked) {
+            // Only once the stream is closed, since an open file cannot be deleted on every platform
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                // Replaced by the program compiled from source instead
+            }
+            return false;
+        }
+        this.loadedCount++;
+        this.savedNanos += compileNanos - (System.nanoTime() - start);
+        return true;
+    }
+
+    /**
+     * Asks the driver to keep the binary of a program about to be linked, so {@link #store} can fetch it.
+     */
+    public void prepare(int programId) {
+        if (this.supported) {
+            glProgramParameteri(programId, GL_PROGRAM_BINARY_RETRIEVABLE_HINT, GL_TRUE);
+        }
+    }
+
+    /**
+     * Writes the binary of a program linked from source to the cache.
+     *
+     * @param compileNanos how long compiling and linking took
+     */
+    public void store(int programId, @NotNull String key, long compileNanos) {
+        this.compiledCount++;
+        if (!this.supported) {
+            return;
+        }
+        int length = glGetProgrami(programId, GL_PROGRAM_BINARY_LENGTH);
+        if (length <= 0) {
+            return;
+        }
+        ByteBuffer binary = MemoryUtil.memAlloc(length);
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            IntBuffer written = stack.mallocInt(1);
+            IntBuffer format = stack.mallocInt(1);
+            glGetProgramBinary(programId, written, format, binary);
+            binary.limit(written.get(0));
+
+            Files.createDirectories(this.directory);
+            // Written next to the entry and moved over it, so a crash never leaves half an entry behind
+            Path temporary = Files.createTempFile(this.directory, key, ".tmp");
+            try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(temporary))) {
+                out.writeInt(MAGIC);
+                out.writeInt(format.get(0));
+                out.writeLong(compileNanos);
+                out.writeInt(binary.remaining());
+                writeFully(out, binary);
+            }
+            Files.move(temporary, this.getFile(key), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            // The program is linked either way; it is just compiled again on the next launch
+        } finally {
+            MemoryUtil.memFree(binary);
+        }
+    }
+
+    private @NotNull Path getFile(@NotNull String key) {
+        return this.directory.resolve(key + ".bin");
+    }
+
+    private static void readFully(@NotNull InputStream in, @NotNull ByteBuffer binary) throws IOException {
+        byte[] chunk = new byte[8192];
+        while (binary.hasRemaining()) {
+            int read = in.read(chunk, 0, Math.min(chunk.length, binary.remaining()));
+            if (read < 0) {
+                throw new IOException("Program binary is truncated");
+            }
+            binary.put(chunk, 0, read);
+        }
+        binary.flip();
+    }
+
+    private static void writeFully(@NotNull OutputStream out, @NotNull ByteBuffer binary) throws IOException {
+        byte[] chunk = new byte[8192];
+        while (binary.hasRemaining()) {
+            int count = Math.min(chunk.length, binary.remaining());
+            binary.get(chunk, 0, count);
+            out.write(chunk, 0, count);
+        }
+    }
+}
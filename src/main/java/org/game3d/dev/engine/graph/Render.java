@@ -1,18 +1,25 @@
 package org.game3d.dev.engine.graph;
 
+import lombok.Getter;
 import org.game3d.dev.engine.Window;
 import org.game3d.dev.engine.scene.Scene;
 import org.game3d.dev.game.CONST;
 import org.jetbrains.annotations.NotNull;
 
+import java.nio.file.Paths;
+
 import static org.lwjgl.opengl.GL.createCapabilities;
 import static org.lwjgl.opengl.GL11.*;
 import static org.lwjgl.opengl.GL13.GL_MULTISAMPLE;
 
 public class Render {
-    private final SceneRender sceneRender;
+    @Getter private final SceneRender sceneRender;
     private final GuiRender guiRender;
     private final SkyBoxRender skyBoxRender;
+    /**
+     * Tells how many shader programs were loaded from the cache and how many were compiled from source.
+     */
+    @Getter private final ProgramBinaryCache programBinaryCache;
 
     public Render(Window window) {
         createCapabilities();
@@ -23,9 +30,10 @@ public class Render {
 //        glEnable(GL_CULL_FACE);
 //        glCullFace(GL_BACK);
 //        glFrontFace(GL_CCW);
-        this.sceneRender = new SceneRender();
-        this.guiRender = new GuiRender(window);
-        this.skyBoxRender = new SkyBoxRender();
+        this.programBinaryCache = new ProgramBinaryCache(Paths.get("cache", "shaders"));
+        this.sceneRender = new SceneRender(this.programBinaryCache);
+        this.guiRender = new GuiRender(window, this.programBinaryCache);
+        this.skyBoxRender = new SkyBoxRender(this.programBinaryCache);
     }
 
     public void cleanup() {
@@ -37,6 +45,7 @@ public class Render {
     public void render(@NotNull Window window, @NotNull Scene scene) {
         glClear(GL_COLOR_BUFFER_BIT | GL_DEPTH_BUFFER_BIT);
         glViewport(0, 0, window.getWidth(), window.getHeight());
+        scene.getEntities().updateModelMatrices();
 
         this.skyBoxRender.render(scene);
         this.sceneRender.render(scene);
@@ -1,231 +1,382 @@
 package org.game3d.dev.engine.graph;
 
+import lombok.Getter;
 import org.game3d.dev.engine.scene.AnimationData;
-import org.game3d.dev.engine.scene.Entity;
+import org.game3d.dev.engine.scene.EntityStore;
+import org.game3d.dev.engine.scene.Fog;
 import org.game3d.dev.engine.scene.Scene;
 import org.game3d.dev.engine.scene.lights.*;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.joml.Matrix4f;
-import org.joml.Vector3f;
 import org.joml.Vector4f;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 import static org.lwjgl.opengl.GL30.*;
+import static org.lwjgl.opengl.GL31.glDrawElementsInstanced;
 
+/**
+ * Draws the models of a scene with variants of one program, specialised for the features in use instead of
+ * branching on them at run time. Models without animations are drawn with variants that read the model matrices
+ * from per-model instance buffers and know nothing of bones, animated models with {@code SKINNED} variants that
+ * get the model matrix and bone matrices of each entity as uniforms. Materials with a normal map or with atlas
+ * tiles, and an active fog select their variants the same way.
+ * <p>
+ * Camera, lights and fog are the same for all variants and live in uniform buffers, written once per frame and
+ * only sent to the GPU when they changed; the variants only get per-material and per-entity uniforms, set
+ * through handles resolved when the variant is built.
+ */
 public class SceneRender {
 
     private static final int MAX_POINT_LIGHTS = 5;
     private static final int MAX_SPOT_LIGHTS = 5;
+    private static final int SKINNED = 1;
+    private static final int NORMAL_MAP = 1 << 1;
+    private static final int FOG = 1 << 2;
+    private static final int ATLAS = 1 << 3;
+    private static final int VARIANT_COUNT = ATLAS << 1;
 
-    private final ShaderProgram shaderProgram;
+    // Uniform buffer bindings, and the std140 layouts of their blocks in scene.vert, lighting.glsl and scene.frag
+    private static final int CAMERA_BINDING = 0;
+    private static final int LIGHTS_BINDING = 1;
+    private static final int FOG_BINDING = 2;
+    private static final int CAMERA_SIZE = 2 * 64;
+    // AmbientLight: factor, color
+    private static final int AMBIENT_LIGHT_OFFSET = 0;
+    // DirLight: color, direction, intensity
+    private static final int DIR_LIGHT_OFFSET = 32;
+    // PointLight: position, color, intensity, att.constant, att.linear, att.exponent
+    private static final int POINT_LIGHTS_OFFSET = 64;
+    private static final int POINT_LIGHT_STRIDE = 48;
+    // SpotLight: pl, conedir, cutoff
+    private static final int SPOT_LIGHTS_OFFSET = POINT_LIGHTS_OFFSET + MAX_POINT_LIGHTS * POINT_LIGHT_STRIDE;
+    private static final int SPOT_LIGHT_STRIDE = 64;
+    // pointLightCount, spotLightCount
+    private static final int LIGHT_COUNTS_OFFSET = SPOT_LIGHTS_OFFSET + MAX_SPOT_LIGHTS * SPOT_LIGHT_STRIDE;
+    private static final int LIGHTS_SIZE = LIGHT_COUNTS_OFFSET + 16;
+    // Fog: color, density
+    private static final int FOG_SIZE = 16;
 
-    private UniformsMap uniformsMap;
+    private final UniformBuffer cameraUniforms;
+    private final UniformBuffer lightUniforms;
+    private final UniformBuffer fogUniforms;
+    private final Vector4f aux;
+    private final ShaderVariants<VariantUniforms> shaderVariants;
+    // The variant in use
+    private int boundFeatures;
+    private final Map<Model, InstanceBuffer> instanceBuffers;
+    // The update of the entity store the instance buffers are in sync with
+    private long syncedFrame;
+    /**
+     * Draw calls issued by the last {@link #render(Scene)}.
+     */
+    @Getter private int drawCallCount;
+    /**
+     * Entity meshes drawn by the last {@link #render(Scene)}, over all draw calls.
+     */
+    @Getter private int instanceCount;
+    /**
+     * Sets of bone matrices uploaded by the last {@link #render(Scene)}: one per entity of an animated model.
+     */
+    @Getter private int boneUploadCount;
+    /**
+     * Uniform buffers sent to the GPU by the last {@link #render(Scene)}: only the ones whose contents changed.
+     */
+    @Getter private int uniformBufferUploadCount;
+
+    public SceneRender(@Nullable ProgramBinaryCache cache) {
+        this.cameraUniforms = new UniformBuffer(CAMERA_BINDING, CAMERA_SIZE);
+        this.lightUniforms = new UniformBuffer(LIGHTS_BINDING, LIGHTS_SIZE);
+        this.fogUniforms = new UniformBuffer(FOG_BINDING, FOG_SIZE);
+        this.aux = new Vector4f();
 
-    public SceneRender() {
         List<ShaderProgram.ShaderModuleData> shaderModuleDataList = new ArrayList<>();
         shaderModuleDataList.add(new ShaderProgram.ShaderModuleData("resources/shaders/scene.vert", GL_VERTEX_SHADER));
         shaderModuleDataList.add(new ShaderProgram.ShaderModuleData("resources/shaders/scene.frag", GL_FRAGMENT_SHADER));
-        this.shaderProgram = new ShaderProgram(shaderModuleDataList);
-        createUniforms();
+        this.shaderVariants = new ShaderVariants<>(
+                shaderModuleDataList, cache, this::createUniforms, "SKINNED", "NORMAL_MAP", "FOG", "ATLAS"
+        );
+        this.instanceBuffers = new IdentityHashMap<>();
     }
 
     public void cleanup() {
-        this.shaderProgram.cleanup();
+        this.shaderVariants.cleanup();
+        this.instanceBuffers.values().forEach(InstanceBuffer::cleanup);
+        this.cameraUniforms.cleanup();
+        this.lightUniforms.cleanup();
+        this.fogUniforms.cleanup();
     }
 
-    private void createUniforms() {
-        this.uniformsMap = new UniformsMap(this.shaderProgram.getProgramId());
-        this.uniformsMap.createUniform("projectionMatrix");
-        this.uniformsMap.createUniform("modelMatrix");
-        this.uniformsMap.createUniform("viewMatrix");
-        this.uniformsMap.createUniform("bonesMatrices");
-        this.uniformsMap.createUniform("txtSampler");
-        this.uniformsMap.createUniform("normalSampler");
-        this.uniformsMap.createUniform("material.ambient");
-        this.uniformsMap.createUniform("material.diffuse");
-        this.uniformsMap.createUniform("material.specular");
-        this.uniformsMap.createUniform("material.reflectance");
-        this.uniformsMap.createUniform("material.hasNormalMap");
-        this.uniformsMap.createUniform("ambientLight.factor");
-        this.uniformsMap.createUniform("ambientLight.color");
-
-        for (int i = 0; i < MAX_POINT_LIGHTS; i++) {
-            String name = "pointLights[" + i + "]";
-            this.uniformsMap.createUniform(name + ".position");
-            this.uniformsMap.createUniform(name + ".color");
-            this.uniformsMap.createUniform(name + ".intensity");
-            this.uniformsMap.createUniform(name + ".att.constant");
-            this.uniformsMap.createUniform(name + ".att.linear");
-            this.uniformsMap.createUniform(name + ".att.exponent");
-        }
-        for (int i = 0; i < MAX_SPOT_LIGHTS; i++) {
-            String name = "spotLights[" + i + "]";
-            this.uniformsMap.createUniform(name + ".pl.position");
-            this.uniformsMap.createUniform(name + ".pl.color");
-            this.uniformsMap.createUniform(name + ".pl.intensity");
-            this.uniformsMap.createUniform(name + ".pl.att.constant");
-            this.uniformsMap.createUniform(name + ".pl.att.linear");
-            this.uniformsMap.createUniform(name + ".pl.att.exponent");
-            this.uniformsMap.createUniform(name + ".conedir");
-            this.uniformsMap.createUniform(name + ".cutoff");
+    /**
+     * Resolves the uniforms of a new variant, connects its uniform blocks to the scene's uniform buffers and sets
+     * its samplers, which never change.
+     */
+    private @NotNull VariantUniforms createUniforms(@NotNull ShaderProgram shaderProgram, int features) {
+        UniformsMap uniformsMap = new UniformsMap(shaderProgram.getProgramId());
+        uniformsMap.bindUniformBlock("CameraUniforms", this.cameraUniforms);
+        uniformsMap.bindUniformBlock("LightUniforms", this.lightUniforms);
+        if ((features & FOG) != 0) {
+            uniformsMap.bindUniformBlock("FogUniforms", this.fogUniforms);
         }
+        VariantUniforms uniforms = new VariantUniforms(uniformsMap, features);
 
-        this.uniformsMap.createUniform("dirLight.color");
-        this.uniformsMap.createUniform("dirLight.direction");
-        this.uniformsMap.createUniform("dirLight.intensity");
-
-        this.uniformsMap.createUniform("fog.activeFog");
-        this.uniformsMap.createUniform("fog.color");
-        this.uniformsMap.createUniform("fog.density");
+        shaderProgram.bind();
+        uniformsMap.setUniform(uniformsMap.createUniform("txtSampler"), 0);
+        if ((features & NORMAL_MAP) != 0) {
+            uniformsMap.setUniform(uniformsMap.createUniform("normalSampler"), 1);
+        }
+        shaderProgram.unbind();
+        return uniforms;
     }
 
     public void render(@NotNull Scene scene) {
         glEnable(GL_BLEND);
         glBlendEquation(GL_FUNC_ADD);
         glBlendFunc(GL_SRC_ALPHA, GL_ONE_MINUS_SRC_ALPHA);
-        this.shaderProgram.bind();
 
-        this.uniformsMap.setUniform("projectionMatrix", scene.getProjection().getProjectionMatrix());
-        this.uniformsMap.setUniform("viewMatrix", scene.getCamera().getViewMatrix());
-        this.uniformsMap.setUniform("txtSampler", 0);
-        this.uniformsMap.setUniform("normalSampler", 1);
+        this.drawCallCount = 0;
+        this.instanceCount = 0;
+        this.boneUploadCount = 0;
+        this.syncInstanceBuffers(scene.getEntities());
+        this.updateUniformBuffers(scene);
 
-        updateLights(scene);
-
-        this.uniformsMap.setUniform("fog.activeFog", scene.getFog().isActive() ? 1 : 0);
-        this.uniformsMap.setUniform("fog.color", scene.getFog().getColor());
-        this.uniformsMap.setUniform("fog.density", scene.getFog().getDensity());
+        this.boundFeatures = -1;
+        int sceneFeatures = scene.getFog().isActive() ? FOG : 0;
 
         Collection<Model> models = scene.getModelMap().values();
-        TextureCache textureCache = scene.getTextureCache();
+        float[] modelMatrices = scene.getEntities().getModelMatrices();
         for (Model model : models) {
-            List<Entity> entities = model.getEntities();
-
-            for (Material material : model.getMaterials()) {
-                this.uniformsMap.setUniform("material.ambient", material.getAmbientColor());
-                this.uniformsMap.setUniform("material.diffuse", material.getDiffuseColor());
-                this.uniformsMap.setUniform("material.specular", material.getSpecularColor());
-                this.uniformsMap.setUniform("material.reflectance", material.getReflectance());
-
-                String normalMapPath = material.getNormalMapPath();
-                boolean hasNormalMap = normalMapPath != null;
-                this.uniformsMap.setUniform("material.hasNormalMap", hasNormalMap ? 1 : 0);
-                Texture texture = textureCache.getTexture(material.getTexturePath());
-                glActiveTexture(GL_TEXTURE0);
-                texture.bind();
-                if (hasNormalMap) {
-                    Texture normalMap = textureCache.getTexture(normalMapPath);
-                    glActiveTexture(GL_TEXTURE1);
-                    normalMap.bind();
-                }
-
-                for (Mesh mesh : material.getMeshes()) {
-                    glBindVertexArray(mesh.getVaoId());
-                    for (Entity entity : entities) {
-                        this.uniformsMap.setUniform("modelMatrix", entity.getModelMatrix());
-                        AnimationData animationData = entity.getAnimationData();
-                        if (animationData == null) {
-                            this.uniformsMap.setUniform("bonesMatrices", AnimationData.DEFAULT_BONE_MATRICES);
-                        } else {
-                            this.uniformsMap.setUniform("bonesMatrices", animationData.getCurrentFrame().boneMatrices());
-                        }
-                        glDrawElements(GL_TRIANGLES, mesh.getNumVertices(), GL_UNSIGNED_INT, 0);
-                    }
-                }
+            if (model.getEntityCount() > 0 && !model.isAnimated()) {
+                InstanceBuffer instanceBuffer = this.instanceBuffers.computeIfAbsent(model, InstanceBuffer::new);
+                instanceBuffer.update(model, modelMatrices);
+                this.renderStatic(scene, model, instanceBuffer, sceneFeatures);
+            }
+        }
+        for (Model model : models) {
+            if (model.getEntityCount() > 0 && model.isAnimated()) {
+                this.renderSkinned(scene, model, sceneFeatures | SKINNED);
             }
         }
 
         glBindVertexArray(0);
-        this.shaderProgram.unbind();
+        glUseProgram(0);
 //        glDisable(GL_BLEND);
     }
 
-    private void updateLights(@NotNull Scene scene) {
+    /**
+     * Draws all entities of a model without animations with one call per mesh.
+     */
+    private void renderStatic(@NotNull Scene scene, @NotNull Model model, @NotNull InstanceBuffer instanceBuffer,
+                              int features) {
+        int entityCount = model.getEntityCount();
+        for (Material material : model.getMaterials()) {
+            VariantUniforms uniforms = this.useVariant(features | getFeatures(material));
+            this.setMaterial(uniforms, scene.getTextureCache(), material);
+            for (Mesh mesh : material.getMeshes()) {
+                mesh.setInstanceBuffer(instanceBuffer.getVboId());
+                glBindVertexArray(mesh.getVaoId());
+                glDrawElementsInstanced(GL_TRIANGLES, mesh.getNumVertices(), GL_UNSIGNED_INT, 0, entityCount);
+                this.drawCallCount++;
+                this.instanceCount += entityCount;
+            }
+        }
+    }
+
+    /**
+     * Draws the entities of an animated model one by one, uploading the bone matrices of each entity once for
+     * all of its meshes that share a variant; usually all materials of a model do.
+     */
+    private void renderSkinned(@NotNull Scene scene, @NotNull Model model, int features) {
+        float[] modelMatrices = scene.getEntities().getModelMatrices();
+        AnimationData[] animations = scene.getEntities().getAnimationData();
+        int[] entities = model.getEntities();
+        int variants = 0;
+        for (Material material : model.getMaterials()) {
+            variants |= 1 << (features | getFeatures(material));
+        }
+        for (int variant = 0; variant < VARIANT_COUNT; variant++) {
+            if ((variants & 1 << variant) == 0) {
+                continue;
+            }
+            VariantUniforms uniforms = this.useVariant(variant);
+            UniformsMap uniformsMap = uniforms.uniformsMap;
+            for (int i = 0; i < model.getEntityCount(); i++) {
+                int entity = entities[i];
+                uniformsMap.setUniform(uniforms.modelMatrix, modelMatrices, entity * EntityStore.MATRIX_SIZE);
+                AnimationData animationData = animations[entity];
+                if (animationData == null) {
+                    uniformsMap.setUniform(uniforms.bonesMatrices, AnimationData.DEFAULT_BONE_MATRICES);
+                } else {
+                    uniformsMap.setUniform(uniforms.bonesMatrices, animationData.getCurrentFrame().boneMatrices());
+                }
+                this.boneUploadCount++;
+                this.renderSkinnedEntity(scene, model, variant & ~features, uniforms);
+            }
+        }
+    }
+
+    /**
+     * Draws the meshes of the materials of an animated model that have the given features.
+     */
+    private void renderSkinnedEntity(@NotNull Scene scene, @NotNull Model model, int materialFeatures,
+                                     @NotNull VariantUniforms uniforms) {
+        for (Material material : model.getMaterials()) {
+            if (getFeatures(material) != materialFeatures) {
+                continue;
+            }
+            this.setMaterial(uniforms, scene.getTextureCache(), material);
+            for (Mesh mesh : material.getMeshes()) {
+                glBindVertexArray(mesh.getVaoId());
+                glDrawElements(GL_TRIANGLES, mesh.getNumVertices(), GL_UNSIGNED_INT, 0);
+                this.drawCallCount++;
+                this.instanceCount++;
+            }
+        }
+    }
+
+    private static int getFeatures(@NotNull Material material) {
+        return (material.getNormalMapPath() != null ? NORMAL_MAP : 0) | (material.isAtlas() ? ATLAS : 0);
+    }
+
+    /**
+     * Binds the variant with the given features, compiling it if needed.
+     */
+    private @NotNull VariantUniforms useVariant(int features) {
+        ShaderVariants.Variant<VariantUniforms> variant = this.shaderVariants.get(features);
+        if (this.boundFeatures != features) {
+            variant.shaderProgram().bind();
+            this.boundFeatures = features;
+        }
+        return variant.uniforms();
+    }
+
+    private void setMaterial(@NotNull VariantUniforms uniforms, @NotNull TextureCache textureCache,
+                             @NotNull Material material) {
+        UniformsMap uniformsMap = uniforms.uniformsMap;
+        uniformsMap.setUniform(uniforms.materialAmbient, material.getAmbientColor());
+        uniformsMap.setUniform(uniforms.materialDiffuse, material.getDiffuseColor());
+        uniformsMap.setUniform(uniforms.materialSpecular, material.getSpecularColor());
+        uniformsMap.setUniform(uniforms.materialReflectance, material.getReflectance());
+
+        String normalMapPath = material.getNormalMapPath();
+        Texture texture = textureCache.getTexture(material.getTexturePath());
+        glActiveTexture(GL_TEXTURE0);
+        texture.bind();
+        if (normalMapPath != null) {
+            Texture normalMap = textureCache.getTexture(normalMapPath);
+            glActiveTexture(GL_TEXTURE1);
+            normalMap.bind();
+        }
+    }
+
+    /**
+     * Marks the instances whose model matrix was rebuilt since the last frame in the buffers of their models.
+     */
+    private void syncInstanceBuffers(@NotNull EntityStore entities) {
+        if (!this.instanceBuffers.isEmpty()) {
+            entities.forEachChangedSince(this.syncedFrame, index -> {
+                InstanceBuffer instanceBuffer = this.instanceBuffers.get(entities.getModelAt(index));
+                if (instanceBuffer != null) {
+                    instanceBuffer.markChanged(entities.getModelPositionAt(index));
+                }
+            });
+        }
+        this.syncedFrame = entities.getFrame();
+    }
+
+    /**
+     * Writes camera, lights and fog of the scene to their uniform buffers and sends the ones that changed.
+     */
+    private void updateUniformBuffers(@NotNull Scene scene) {
         Matrix4f viewMatrix = scene.getCamera().getViewMatrix();
+        this.cameraUniforms.putMat4(0, scene.getProjection().getProjectionMatrix());
+        this.cameraUniforms.putMat4(64, viewMatrix);
+        int uploads = this.cameraUniforms.upload() ? 1 : 0;
+
+        this.updateLights(scene.getSceneLights(), viewMatrix);
+        uploads += this.lightUniforms.upload() ? 1 : 0;
+
+        Fog fog = scene.getFog();
+        if (fog.isActive()) {
+            this.fogUniforms.putVec3(0, fog.getColor());
+            this.fogUniforms.putFloat(12, fog.getDensity());
+            uploads += this.fogUniforms.upload() ? 1 : 0;
+        }
+        this.uniformBufferUploadCount = uploads;
+    }
 
-        SceneLights sceneLights = scene.getSceneLights();
+    /**
+     * Writes the lights in view space and how many of each kind there are; the shader only loops over those, so
+     * the slots after them are left as they are.
+     */
+    private void updateLights(@NotNull SceneLights sceneLights, @NotNull Matrix4f viewMatrix) {
+        UniformBuffer lights = this.lightUniforms;
         AmbientLight ambientLight = sceneLights.getAmbientLight();
-        this.uniformsMap.setUniform("ambientLight.factor", ambientLight.getIntensity());
-        this.uniformsMap.setUniform("ambientLight.color", ambientLight.getColor());
+        lights.putFloat(AMBIENT_LIGHT_OFFSET, ambientLight.getIntensity());
+        lights.putVec3(AMBIENT_LIGHT_OFFSET + 16, ambientLight.getColor());
 
         DirLight dirLight = sceneLights.getDirLight();
-        Vector4f auxDir = new Vector4f(dirLight.getDirection(), 0);
-        auxDir.mul(viewMatrix);
-        Vector3f dir = new Vector3f(auxDir.x, auxDir.y, auxDir.z);
-        this.uniformsMap.setUniform("dirLight.color", dirLight.getColor());
-        this.uniformsMap.setUniform("dirLight.direction", dir);
-        this.uniformsMap.setUniform("dirLight.intensity", dirLight.getIntensity());
+        this.aux.set(dirLight.getDirection(), 0).mul(viewMatrix);
+        lights.putVec3(DIR_LIGHT_OFFSET, dirLight.getColor());
+        lights.putVec3(DIR_LIGHT_OFFSET + 16, this.aux.x, this.aux.y, this.aux.z);
+        lights.putFloat(DIR_LIGHT_OFFSET + 28, dirLight.getIntensity());
 
         List<PointLight> pointLights = sceneLights.getPointLights();
-        int numPointLights = pointLights.size();
-        PointLight pointLight;
-        for (int i = 0; i < MAX_POINT_LIGHTS; i++) {
-            if (i < numPointLights) {
-                pointLight = pointLights.get(i);
-            } else {
-                pointLight = null;
-            }
-            String name = "pointLights[" + i + "]";
-            updatePointLight(pointLight, name, viewMatrix);
+        int pointLightCount = Math.min(pointLights.size(), MAX_POINT_LIGHTS);
+        for (int i = 0; i < pointLightCount; i++) {
+            this.putPointLight(POINT_LIGHTS_OFFSET + i * POINT_LIGHT_STRIDE, pointLights.get(i), viewMatrix);
         }
 
-
         List<SpotLight> spotLights = sceneLights.getSpotLights();
-        int numSpotLights = spotLights.size();
-        SpotLight spotLight;
-        for (int i = 0; i < MAX_SPOT_LIGHTS; i++) {
-            if (i < numSpotLights) {
-                spotLight = spotLights.get(i);
-            } else {
-                spotLight = null;
-            }
-            String name = "spotLights[" + i + "]";
-            updateSpotLight(spotLight, name, viewMatrix);
+        int spotLightCount = Math.min(spotLights.size(), MAX_SPOT_LIGHTS);
+        for (int i = 0; i < spotLightCount; i++) {
+            SpotLight spotLight = spotLights.get(i);
+            int offset = SPOT_LIGHTS_OFFSET + i * SPOT_LIGHT_STRIDE;
+            this.putPointLight(offset, spotLight.getPointLight(), viewMatrix);
+            lights.putVec3(offset + 48, spotLight.getConeDirection());
+            lights.putFloat(offset + 60, spotLight.getCutoff());
         }
+        lights.putInt(LIGHT_COUNTS_OFFSET, pointLightCount);
+        lights.putInt(LIGHT_COUNTS_OFFSET + 4, spotLightCount);
     }
 
-    private void updatePointLight(PointLight pointLight, String prefix, Matrix4f viewMatrix) {
-        Vector4f aux = new Vector4f();
-        Vector3f lightPosition = new Vector3f();
-        Vector3f color = new Vector3f();
-        float intensity = 0.0f;
-        float constant = 0.0f;
-        float linear = 0.0f;
-        float exponent = 0.0f;
-        if (pointLight != null) {
-            aux.set(pointLight.getPosition(), 1);
-            aux.mul(viewMatrix);
-            lightPosition.set(aux.x, aux.y, aux.z);
-            color.set(pointLight.getColor());
-            intensity = pointLight.getIntensity();
-            PointLight.Attenuation attenuation = pointLight.getAttenuation();
-            constant = attenuation.getConstant();
-            linear = attenuation.getLinear();
-            exponent = attenuation.getExponent();
-        }
-        this.uniformsMap.setUniform(prefix + ".position", lightPosition);
-        this.uniformsMap.setUniform(prefix + ".color", color);
-        this.uniformsMap.setUniform(prefix + ".intensity", intensity);
-        this.uniformsMap.setUniform(prefix + ".att.constant", constant);
-        this.uniformsMap.setUniform(prefix + ".att.linear", linear);
-        this.uniformsMap.setUniform(prefix + ".att.exponent", exponent);
+    private void putPointLight(int offset, @NotNull PointLight pointLight, @NotNull Matrix4f viewMatrix) {
+        UniformBuffer lights = this.lightUniforms;
+        this.aux.set(pointLight.getPosition(), 1).mul(viewMatrix);
+        PointLight.Attenuation attenuation = pointLight.getAttenuation();
+        lights.putVec3(offset, this.aux.x, this.aux.y, this.aux.z);
+        lights.putVec3(offset + 16, pointLight.getColor());
+        lights.putFloat(offset + 28, pointLight.getIntensity());
+        lights.putVec3(offset + 32, attenuation.getConstant(), attenuation.getLinear(), attenuation.getExponent());
     }
 
-    private void updateSpotLight(SpotLight spotLight, String prefix, Matrix4f viewMatrix) {
-        PointLight pointLight = null;
-        Vector3f coneDirection = new Vector3f();
-        float cutoff = 0.0f;
-        if (spotLight != null) {
-            coneDirection = spotLight.getConeDirection();
-            cutoff = spotLight.getCutoff();
-            pointLight = spotLight.getPointLight();
-        }
+    /**
+     * The uniforms of one scene variant, resolved once when it is built; the handles of uniforms the variant
+     * does not declare are -1.
+     */
+    private static final class VariantUniforms {
+        private final UniformsMap uniformsMap;
+        private final int materialAmbient;
+        private final int materialDiffuse;
+        private final int materialSpecular;
+        private final int materialReflectance;
+        private final int modelMatrix;
+        private final int bonesMatrices;
 
-        this.uniformsMap.setUniform(prefix + ".conedir", coneDirection);
-        this.uniformsMap.setUniform(prefix + ".cutoff", cutoff);
-        updatePointLight(pointLight, prefix + ".pl", viewMatrix);
+        private VariantUniforms(@NotNull UniformsMap uniformsMap, int features) {
+            this.uniformsMap = uniformsMap;
+            this.materialAmbient = uniformsMap.createUniform("material.ambient");
+            this.materialDiffuse = uniformsMap.createUniform("material.diffuse");
+            this.materialSpecular = uniformsMap.createUniform("material.specular");
+            this.materialReflectance = uniformsMap.createUniform("material.reflectance");
+            boolean skinned = (features & SKINNED) != 0;
+            this.modelMatrix = skinned ? uniformsMap.createUniform("modelMatrix") : -1;
+            this.bonesMatrices = skinned ? uniformsMap.createUniform("bonesMatrices") : -1;
+        }
     }
-}
\ No newline at end of file
+}
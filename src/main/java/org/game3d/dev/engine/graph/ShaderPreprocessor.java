@@ -0,0 +1,84 @@
+package org.game3d.dev.engine.graph;
+
+import org.game3d.dev.engine.Utils;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Turns a shader file into the source handed to the compiler: {@code #include "file"} lines are replaced by the
+ * file they name, relative to the including file, and a {@code #define} for every given name is inserted right
+ * after the {@code #version} line. A file included more than once is only expanded the first time, so shared
+ * pieces can include what they need without guards.
+ * <p>
+ * Wherever lines are added, a {@code #line} directive follows that restores the numbering of the file the
+ * following lines come from, so compiler messages point at the line in the file as written. The source string
+ * number of a directive tells the files apart: 0 is the given file, and the included files count up from 1 in
+ * the order they were first included. As from GLSL 3.30, a directive gives the number of the line after it.
+ * Conditionals are left to the compiler, which keeps the line numbers of the blocks it drops.
+ */
+public final class ShaderPreprocessor {
+    private static final Pattern INCLUDE = Pattern.compile("^\\s*#include\\s+\"([^\"]+)\"\\s*$");
+    private static final Pattern VERSION = Pattern.compile("^\\s*#version\\b.*$", Pattern.MULTILINE);
+
+    private ShaderPreprocessor() {
+    }
+
+    public static @NotNull String process(@NotNull String shaderFile, @NotNull Collection<String> defines) {
+        StringBuilder source = new StringBuilder();
+        expand(Paths.get(shaderFile).normalize(), source, new ArrayList<>());
+        if (defines.isEmpty()) {
+            return source.toString();
+        }
+
+        StringBuilder defineLines = new StringBuilder();
+        for (String define : defines) {
+            defineLines.append("\n#define ").append(define);
+        }
+        Matcher version = VERSION.matcher(source);
+        int insertAt = version.find() ? version.end() : 0;
+        if (insertAt == 0) {
+            // Without a version line the defines still have to come first
+            defineLines.deleteCharAt(0).append("\n#line 1 0\n");
+        } else {
+            // Nothing is expanded before the version line, so it is where it is in the file
+            int versionLine = (int) source.chars().limit(version.start()).filter(c -> c == '\n').count() + 1;
+            defineLines.append("\n#line ").append(versionLine + 1).append(" 0");
+        }
+        return source.insert(insertAt, defineLines).toString();
+    }
+
+    private static void expand(@NotNull Path file, @NotNull StringBuilder source, @NotNull List<Path> included) {
+        if (included.contains(file)) {
+            return;
+        }
+        int sourceNumber = included.size();
+        included.add(file);
+        String[] lines = Utils.readFile(file.toString()).split("\n", -1);
+        for (int i = 0; i < lines.length; i++) {
+            Matcher include = INCLUDE.matcher(lines[i]);
+            if (include.matches()) {
+                Path parent = file.getParent();
+                Path includedFile = (parent == null ? Paths.get(include.group(1)) : parent.resolve(include.group(1)));
+                includedFile = includedFile.normalize();
+                if (!included.contains(includedFile)) {
+                    source.append("#line 1 ").append(included.size()).append('\n');
+                    expand(includedFile, source, included);
+                    // Lines are numbered from 1, so the line after the include is line i + 2
+                    source.append("\n#line ").append(i + 2).append(' ').append(sourceNumber);
+                }
+            } else {
+                source.append(lines[i]);
+            }
+            if (i < lines.length - 1) {
+                source.append('\n');
+            }
+        }
+    }
+}
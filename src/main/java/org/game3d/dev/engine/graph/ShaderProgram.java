@@ -1,10 +1,11 @@
 package org.game3d.dev.engine.graph;
 
 import lombok.Getter;
-import org.game3d.dev.engine.Utils;
+import org.jetbrains.annotations.Nullable;
 import org.lwjgl.opengl.GL30;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 import static org.lwjgl.opengl.GL30.*;
@@ -14,14 +15,43 @@ public class ShaderProgram {
     private final int programId;
 
     public ShaderProgram(List<ShaderModuleData> shaderModuleDataList) {
+        this(shaderModuleDataList, List.of(), null);
+    }
+
+    public ShaderProgram(List<ShaderModuleData> shaderModuleDataList, @Nullable ProgramBinaryCache cache) {
+        this(shaderModuleDataList, List.of(), cache);
+    }
+
+    /**
+     * Compiles the shader modules through {@link ShaderPreprocessor}, with a {@code #define} for each of
+     * {@code defines}. With a cache, a program built from the same sources before is loaded from there instead.
+     */
+    public ShaderProgram(List<ShaderModuleData> shaderModuleDataList, Collection<String> defines,
+                         @Nullable ProgramBinaryCache cache) {
         this.programId = glCreateProgram();
         if (this.programId == 0) {
             throw new RuntimeException("Could not create shader.");
         }
 
+        List<String> sources = new ArrayList<>();
+        shaderModuleDataList.forEach(s -> sources.add(ShaderPreprocessor.process(s.shaderFile, defines)));
+        String key = cache == null ? null : cache.getKey(shaderModuleDataList, sources);
+        if (cache != null && cache.load(this.programId, key)) {
+            return;
+        }
+
+        long start = System.nanoTime();
         List<Integer> shaderModules = new ArrayList<>();
-        shaderModuleDataList.forEach(s -> shaderModules.add(createShader(Utils.readFile(s.shaderFile), s.shaderType)));
+        for (int i = 0; i < sources.size(); i++) {
+            shaderModules.add(createShader(sources.get(i), shaderModuleDataList.get(i).shaderType));
+        }
+        if (cache != null) {
+            cache.prepare(this.programId);
+        }
         link(shaderModules);
+        if (cache != null) {
+            cache.store(this.programId, key, System.nanoTime() - start);
+        }
     }
 
     public void bind() {
@@ -0,0 +1,84 @@
+package org.game3d.dev.engine.graph;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Specialisations of one shader program for combinations of features. A combination is a bitmask with bit
+ * {@code i} standing for the feature {@code featureNames[i]}; the variant for a mask is compiled with a
+ * {@code #define} for each of its features the first time it is asked for, and kept from then on, together with
+ * the uniforms of type {@code U} its {@link UniformsFactory} resolved for it.
+ */
+public class ShaderVariants<U> {
+    private final List<ShaderProgram.ShaderModuleData> shaderModuleDataList;
+    private final String[] featureNames;
+    private final UniformsFactory<U> uniformsFactory;
+    private final ProgramBinaryCache cache;
+    private final Variant<U>[] variants;
+
+    public ShaderVariants(@NotNull List<ShaderProgram.ShaderModuleData> shaderModuleDataList,
+                          @Nullable ProgramBinaryCache cache, @NotNull UniformsFactory<U> uniformsFactory,
+                          String @NotNull ... featureNames) {
+        this.shaderModuleDataList = shaderModuleDataList;
+        this.cache = cache;
+        this.featureNames = featureNames;
+        this.uniformsFactory = uniformsFactory;
+        @SuppressWarnings("unchecked")
+        Variant<U>[] variants = new Variant[1 << featureNames.length];
+        this.variants = variants;
+    }
+
+    public @NotNull Variant<U> get(int features) {
+        if (features < 0 || features >= this.variants.length) {
+            throw new IllegalArgumentException(String.format("Unknown shader features %d", features));
+        }
+        Variant<U> variant = this.variants[features];
+        if (variant == null) {
+            List<String> defines = new ArrayList<>();
+            for (int i = 0; i < this.featureNames.length; i++) {
+                if ((features & 1 << i) != 0) {
+                    defines.add(this.featureNames[i]);
+                }
+            }
+            ShaderProgram shaderProgram = new ShaderProgram(this.shaderModuleDataList, defines, this.cache);
+            U uniforms = this.uniformsFactory.createUniforms(shaderProgram, features);
+            variant = new Variant<>(features, shaderProgram, uniforms);
+            this.variants[features] = variant;
+        }
+        return variant;
+    }
+
+    /**
+     * @return the number of variants compiled so far
+     */
+    public int getCompiledCount() {
+        int count = 0;
+        for (Variant<U> variant : this.variants) {
+            if (variant != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public void cleanup() {
+        for (Variant<U> variant : this.variants) {
+            if (variant != null) {
+                variant.shaderProgram().cleanup();
+            }
+        }
+    }
+
+    public record Variant<U>(int features, ShaderProgram shaderProgram, U uniforms) {}
+
+    @FunctionalInterface
+    public interface UniformsFactory<U> {
+        /**
+         * Resolves the uniforms the variant with the given features declares.
+         */
+        @NotNull U createUniforms(@NotNull ShaderProgram shaderProgram, int features);
+    }
+}
@@ -1,9 +1,10 @@
 package org.game3d.dev.engine.graph;
 
-import org.game3d.dev.engine.scene.Entity;
+import org.game3d.dev.engine.scene.EntityStore;
 import org.game3d.dev.engine.scene.Scene;
 import org.game3d.dev.engine.scene.SkyBox;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.joml.Matrix4f;
 
 import java.util.ArrayList;
@@ -15,13 +16,18 @@ import static org.lwjgl.opengl.GL30.*;
 public class SkyBoxRender {
     private final ShaderProgram shaderProgram;
     private UniformsMap uniformsMap;
+    private int projectionMatrixUniform;
+    private int viewMatrixUniform;
+    private int modelMatrixUniform;
+    private int diffuseUniform;
+    private int hasTextureUniform;
     private final Matrix4f viewMatrix;
 
-    public SkyBoxRender()  {
+    public SkyBoxRender(@Nullable ProgramBinaryCache cache) {
         List<ShaderProgram.ShaderModuleData> shaderModuleDataList = new ArrayList<>();
         shaderModuleDataList.add(new ShaderProgram.ShaderModuleData("resources/shaders/skybox.vert", GL_VERTEX_SHADER));
         shaderModuleDataList.add(new ShaderProgram.ShaderModuleData("resources/shaders/skybox.frag", GL_FRAGMENT_SHADER));
-        this.shaderProgram = new ShaderProgram(shaderModuleDataList);
+        this.shaderProgram = new ShaderProgram(shaderModuleDataList, cache);
         this.viewMatrix = new Matrix4f();
         this.createUniforms();
     }
@@ -32,12 +38,14 @@ public class SkyBoxRender {
 
     private void createUniforms() {
         this.uniformsMap = new UniformsMap(this.shaderProgram.getProgramId());
-        this.uniformsMap.createUniform("projectionMatrix");
-        this.uniformsMap.createUniform("viewMatrix");
-        this.uniformsMap.createUniform("modelMatrix");
-        this.uniformsMap.createUniform("diffuse");
-        this.uniformsMap.createUniform("txtSampler");
-        this.uniformsMap.createUniform("hasTexture");
+        this.projectionMatrixUniform = this.uniformsMap.createUniform("projectionMatrix");
+        this.viewMatrixUniform = this.uniformsMap.createUniform("viewMatrix");
+        this.modelMatrixUniform = this.uniformsMap.createUniform("modelMatrix");
+        this.diffuseUniform = this.uniformsMap.createUniform("diffuse");
+        this.hasTextureUniform = this.uniformsMap.createUniform("hasTexture");
+        this.shaderProgram.bind();
+        this.uniformsMap.setUniform(this.uniformsMap.createUniform("txtSampler"), 0);
+        this.shaderProgram.unbind();
     }
 
     public void render(@NotNull Scene scene) {
@@ -48,31 +56,33 @@ public class SkyBoxRender {
         this.shaderProgram.bind();
         glDepthMask(false);
 
-        this.uniformsMap.setUniform("projectionMatrix", scene.getProjection().getProjectionMatrix());
+        this.uniformsMap.setUniform(this.projectionMatrixUniform, scene.getProjection().getProjectionMatrix());
         this.viewMatrix.set(scene.getCamera().getViewMatrix());
         this.viewMatrix.m30(0);
         this.viewMatrix.m31(0);
         this.viewMatrix.m32(0);
-        this.uniformsMap.setUniform("viewMatrix", this.viewMatrix);
-        this.uniformsMap.setUniform("txtSampler", 0);
+        this.uniformsMap.setUniform(this.viewMatrixUniform, this.viewMatrix);
 
         Model skyboxModel = skyBox.getSkyBoxModel();
-        Entity skyBoxEntity = skyBox.getSkyBoxEntity();
+        EntityStore entities = scene.getEntities();
+        int skyBoxEntity = entities.index(skyBox.getSkyBoxEntity());
         TextureCache textureCache = scene.getTextureCache();
         for (Material material : skyboxModel.getMaterials()) {
             Texture texture = textureCache.getTexture(material.getTexturePath());
             glActiveTexture(GL_TEXTURE0);
             texture.bind();
 
-            this.uniformsMap.setUniform("diffuse", material.getDiffuseColor());
+            this.uniformsMap.setUniform(this.diffuseUniform, material.getDiffuseColor());
             this.uniformsMap.setUniform(
-                    "hasTexture",
+                    this.hasTextureUniform,
                     texture.getTexturePath().equals(TextureCache.DEFAULT_TEXTURE) ? 0 : 1
             );
 
             for (Mesh mesh : material.getMeshes()) {
                 glBindVertexArray(mesh.getVaoId());
-                this.uniformsMap.setUniform("modelMatrix", skyBoxEntity.getModelMatrix());
+                this.uniformsMap.setUniform(
+                        this.modelMatrixUniform, entities.getModelMatrices(), skyBoxEntity * EntityStore.MATRIX_SIZE
+                );
                 glDrawElements(GL_TRIANGLES, mesh.getNumVertices(), GL_UNSIGNED_INT, 0);
             }
         }
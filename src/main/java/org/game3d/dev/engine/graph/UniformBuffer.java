@@ -0,0 +1,88 @@
+package org.game3d.dev.engine.graph;
+
+import lombok.Getter;
+import org.jetbrains.annotations.NotNull;
+import org.joml.Matrix4f;
+import org.joml.Vector3f;
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteBuffer;
+
+import static org.lwjgl.opengl.GL31.*;
+
+/**
+ * A uniform buffer object holding one {@code std140} uniform block, bound to a fixed binding point that programs
+ * connect their block to with {@link UniformsMap#bindUniformBlock(String, UniformBuffer)}.
+ * <p>
+ * Values are written at their std140 offsets into a staging copy of the block; {@link #upload()} only sends it to
+ * the buffer when it differs from what was sent last, so blocks whose contents stay the same cost no upload.
+ */
+public class UniformBuffer {
+    @Getter private final int binding;
+    private final int bufferId;
+    private final ByteBuffer data;
+    private final ByteBuffer uploaded;
+    private boolean empty;
+    /**
+     * Uploads to the buffer so far.
+     */
+    @Getter private long uploadCount;
+
+    public UniformBuffer(int binding, int size) {
+        this.binding = binding;
+        this.data = MemoryUtil.memCalloc(size);
+        this.uploaded = MemoryUtil.memCalloc(size);
+        this.empty = true;
+        this.bufferId = glGenBuffers();
+        glBindBuffer(GL_UNIFORM_BUFFER, this.bufferId);
+        glBufferData(GL_UNIFORM_BUFFER, size, GL_DYNAMIC_DRAW);
+        glBindBuffer(GL_UNIFORM_BUFFER, 0);
+        glBindBufferBase(GL_UNIFORM_BUFFER, binding, this.bufferId);
+    }
+
+    public void putFloat(int offset, float value) {
+        this.data.putFloat(offset, value);
+    }
+
+    public void putInt(int offset, int value) {
+        this.data.putInt(offset, value);
+    }
+
+    public void putVec3(int offset, float x, float y, float z) {
+        this.data.putFloat(offset, x);
+        this.data.putFloat(offset + 4, y);
+        this.data.putFloat(offset + 8, z);
+    }
+
+    public void putVec3(int offset, @NotNull Vector3f value) {
+        this.putVec3(offset, value.x, value.y, value.z);
+    }
+
+    public void putMat4(int offset, @NotNull Matrix4f value) {
+        value.get(offset, this.data);
+    }
+
+    /**
+     * Sends the block to the buffer if it changed since the last upload.
+     *
+     * @return whether it was sent
+     */
+    public boolean upload() {
+        if (!this.empty && this.data.mismatch(this.uploaded) == -1) {
+            return false;
+        }
+        glBindBuffer(GL_UNIFORM_BUFFER, this.bufferId);
+        glBufferSubData(GL_UNIFORM_BUFFER, 0, this.data);
+        glBindBuffer(GL_UNIFORM_BUFFER, 0);
+        this.uploaded.put(0, this.data, 0, this.data.capacity());
+        this.empty = false;
+        this.uploadCount++;
+        return true;
+    }
+
+    public void cleanup() {
+        glDeleteBuffers(this.bufferId);
+        MemoryUtil.memFree(this.data);
+        MemoryUtil.memFree(this.uploaded);
+    }
+}
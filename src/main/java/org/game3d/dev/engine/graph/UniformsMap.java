@@ -11,8 +11,12 @@ import java.nio.FloatBuffer;
 import java.util.HashMap;
 import java.util.Map;
 
-import static org.lwjgl.opengl.GL20.*;
+import static org.lwjgl.opengl.GL31.*;
 
+/**
+ * The uniforms of one program. Uniforms are resolved to their location once, by {@link #createUniform(String)};
+ * the setters taking that location as a handle skip the lookup by name.
+ */
 public class UniformsMap {
     private final int programId;
     private final Map<String, Integer> uniforms;
@@ -22,12 +26,27 @@ public class UniformsMap {
         this.uniforms = new HashMap<>();
     }
 
-    public void createUniform(String uniformName) {
+    /**
+     * @return the handle to pass to the setters instead of the name
+     */
+    public int createUniform(String uniformName) {
         int uniformLocation = glGetUniformLocation(this.programId, uniformName);
         if (uniformLocation < 0) {
             throw new RuntimeException("Could not find uniform:" + uniformName);
         }
         this.uniforms.put(uniformName, uniformLocation);
+        return uniformLocation;
+    }
+
+    /**
+     * Makes the uniform block {@code blockName} of the program read from {@code buffer}.
+     */
+    public void bindUniformBlock(String blockName, @NotNull UniformBuffer buffer) {
+        int blockIndex = glGetUniformBlockIndex(this.programId, blockName);
+        if (blockIndex == GL_INVALID_INDEX) {
+            throw new RuntimeException(String.format("Uniform block %s not found", blockName));
+        }
+        glUniformBlockBinding(this.programId, blockIndex, buffer.getBinding());
     }
 
     private int getUniformLocation(String uniformName) {
@@ -39,43 +58,85 @@ public class UniformsMap {
     }
 
     public void setUniform(String uniformName, int value) {
-        glUniform1i(this.getUniformLocation(uniformName), value);
+        this.setUniform(this.getUniformLocation(uniformName), value);
     }
 
     public void setUniform(String uniformName, @NotNull Matrix4f value) {
-        try (MemoryStack stack = MemoryStack.stackPush()) {
-            glUniformMatrix4fv(
-                    this.getUniformLocation(uniformName),
-                    false,
-                    value.get(stack.mallocFloat(16))
-            );
-        }
+        this.setUniform(this.getUniformLocation(uniformName), value);
+    }
+
+    /**
+     * Sets a matrix uniform from the 16 floats at {@code offset}, column-major.
+     */
+    public void setUniform(String uniformName, float @NotNull [] matrices, int offset) {
+        this.setUniform(this.getUniformLocation(uniformName), matrices, offset);
     }
 
     public void setUniform(String uniformName, float value) {
-        glUniform1f(this.getUniformLocation(uniformName), value);
+        this.setUniform(this.getUniformLocation(uniformName), value);
     }
 
     public void setUniform(String uniformName, @NotNull Vector2f value) {
-        glUniform2f(this.getUniformLocation(uniformName), value.x, value.y);
+        this.setUniform(this.getUniformLocation(uniformName), value);
     }
 
     public void setUniform(String uniformName, @NotNull Vector3f value) {
-        glUniform3f(this.getUniformLocation(uniformName), value.x, value.y, value.z);
+        this.setUniform(this.getUniformLocation(uniformName), value);
     }
 
     public void setUniform(String uniformName, @NotNull Vector4f value) {
-        glUniform4f(this.getUniformLocation(uniformName), value.x, value.y, value.z, value.w);
+        this.setUniform(this.getUniformLocation(uniformName), value);
     }
 
     public void setUniform(String uniformName, Matrix4f[] matrices) {
+        this.setUniform(this.getUniformLocation(uniformName), matrices);
+    }
+
+    public void setUniform(int location, int value) {
+        glUniform1i(location, value);
+    }
+
+    public void setUniform(int location, float value) {
+        glUniform1f(location, value);
+    }
+
+    public void setUniform(int location, @NotNull Vector2f value) {
+        glUniform2f(location, value.x, value.y);
+    }
+
+    public void setUniform(int location, @NotNull Vector3f value) {
+        glUniform3f(location, value.x, value.y, value.z);
+    }
+
+    public void setUniform(int location, @NotNull Vector4f value) {
+        glUniform4f(location, value.x, value.y, value.z, value.w);
+    }
+
+    public void setUniform(int location, @NotNull Matrix4f value) {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            glUniformMatrix4fv(location, false, value.get(stack.mallocFloat(16)));
+        }
+    }
+
+    /**
+     * Sets a matrix uniform from the 16 floats at {@code offset}, column-major.
+     */
+    public void setUniform(int location, float @NotNull [] matrices, int offset) {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            FloatBuffer buffer = stack.mallocFloat(16);
+            buffer.put(0, matrices, offset, 16);
+            glUniformMatrix4fv(location, false, buffer);
+        }
+    }
+
+    public void setUniform(int location, Matrix4f[] matrices) {
         try (MemoryStack stack = MemoryStack.stackPush()) {
             int length = matrices != null ? matrices.length : 0;
             FloatBuffer floatBuffer = stack.mallocFloat(16 * length);
             for (int i = 0; i < length; i++) {
                 matrices[i].get(16 * i, floatBuffer);
             }
-            glUniformMatrix4fv(this.uniforms.get(uniformName), false, floatBuffer);
+            glUniformMatrix4fv(location, false, floatBuffer);
         }
     }
 }
@@ -37,6 +37,20 @@ public class Camera {
         return new Vector3f((float) x, 0, (float) z).negate();
     }
 
+    /**
+     * @return the direction the camera looks in, as a unit vector in world space
+     */
+    public Vector3f getViewDirection(Vector3f dest) {
+        return this.viewMatrix.positiveZ(dest).negate();
+    }
+
+    /**
+     * @return the direction the camera faces, flattened onto the ground plane
+     */
+    public Vector3f getHorizontalDirection(Vector3f dest) {
+        return dest.set((float) Math.sin(this.rotation.y), 0, (float) -Math.cos(this.rotation.y));
+    }
+
     public void moveForward(float distance) {
         this.position.add(this.getDirection().mul(distance));
         this.recalculate();
@@ -0,0 +1,625 @@
+package org.game3d.dev.engine.scene;
+
+import lombok.Getter;
+import org.game3d.dev.engine.graph.Model;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.joml.Matrix4f;
+import org.joml.Quaternionf;
+import org.joml.Vector3f;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * All entities of a scene, kept as structure of arrays: each component lives in its own flat array, indexed by
+ * the slot of the entity, so a pass over one component of many entities walks contiguous memory and allocates
+ * nothing.
+ * <p>
+ * Entities are referred to by int handles holding the slot in the low {@value #INDEX_BITS} bits and a
+ * generation above it. A slot is reused after its entity is destroyed, with the generation bumped, so a handle
+ * to the old entity is recognised as stale instead of silently pointing at the new one.
+ * <p>
+ * Changing a transform marks the entity dirty; {@link #updateModelMatrices()} rebuilds the model matrices of the
+ * dirty entities only, once per frame. Code writing the component arrays directly has to call
+ * {@link #markDirty(int)} itself.
+ * <p>
+ * An entity can be attached to a parent, which makes its transform relative to the parent's. The entities in a
+ * hierarchy are kept in depth-first order next to the slots, with the position of the parent of each, so a
+ * parent always comes before its children and every subtree is one contiguous range. Model matrices are then
+ * propagated in one linear pass over that order; marking an entity dirty also flags its ancestors, so subtrees
+ * without changes are skipped as a whole. Separate hierarchies do not share anything and are propagated in
+ * parallel when there are many entities in hierarchies.
+ */
+public class EntityStore {
+    public static final int NONE = -1;
+    public static final int MATRIX_SIZE = 16;
+    private static final int INDEX_BITS = 20;
+    public static final int MAX_ENTITIES = 1 << INDEX_BITS;
+    private static final int INDEX_MASK = MAX_ENTITIES - 1;
+    // Handles stay non-negative, so NONE never names an entity
+    private static final int GENERATION_MASK = (1 << (Integer.SIZE - 1 - INDEX_BITS)) - 1;
+    private static final int PARALLEL_THRESHOLD = 8192;
+    private static final int PARALLEL_BATCH = 2048;
+
+    @Getter private float[] positions;
+    @Getter private float[] rotations;
+    @Getter private float[] scales;
+    @Getter private float[] modelMatrices;
+    @Getter private AnimationData[] animationData;
+    // The model an entity is drawn with, and where in that model's entity list it sits
+    private Model[] models;
+    private int[] modelPositions;
+    private int[] generations;
+    private boolean[] alive;
+    private int[] nextFree;
+    private int freeList;
+    private int allocated;
+    @Getter private int count;
+
+    private boolean[] dirtyFlags;
+    private int[] dirty;
+    private int dirtyCount;
+    // Slots rebuilt by the last update, and the update that last rebuilt each slot
+    private int[] changed;
+    private int changedCount;
+    private long[] changedFrames;
+
+    private int[] parents;
+    private int[] firstChildren;
+    private int[] nextSiblings;
+    // Whether the entity or any of its descendants is dirty
+    private boolean[] subtreeDirty;
+    private boolean hierarchyChanged;
+    // Entities with a parent or children in depth-first order, and per position the position of the parent, the
+    // size of the subtree and whether the pass rebuilt the entity
+    private int[] order;
+    private int[] orderPositions;
+    private int[] orderParents;
+    private int[] subtreeSizes;
+    private boolean[] propagated;
+    private int orderCount;
+    private int[] roots;
+    private int rootCount;
+    // Traversal stack while sorting, the roots to propagate while updating
+    private int[] pending;
+    /**
+     * Number of {@link #updateModelMatrices()} passes so far.
+     */
+    @Getter private long frame;
+
+    public EntityStore() {
+        int capacity = 64;
+        this.positions = new float[capacity * 3];
+        this.rotations = new float[capacity * 4];
+        this.scales = new float[capacity];
+        this.modelMatrices = new float[capacity * MATRIX_SIZE];
+        this.animationData = new AnimationData[capacity];
+        this.models = new Model[capacity];
+        this.modelPositions = new int[capacity];
+        this.generations = new int[capacity];
+        this.alive = new boolean[capacity];
+        this.nextFree = new int[capacity];
+        this.dirtyFlags = new boolean[capacity];
+        this.dirty = new int[capacity];
+        this.changed = new int[capacity];
+        this.changedFrames = new long[capacity];
+        this.parents = new int[capacity];
+        this.firstChildren = new int[capacity];
+        this.nextSiblings = new int[capacity];
+        this.subtreeDirty = new boolean[capacity];
+        this.order = new int[capacity];
+        this.orderPositions = new int[capacity];
+        this.orderParents = new int[capacity];
+        this.subtreeSizes = new int[capacity];
+        this.propagated = new boolean[capacity];
+        this.roots = new int[capacity];
+        this.pending = new int[capacity];
+        this.freeList = NONE;
+    }
+
+    public int create() {
+        int index;
+        if (this.freeList != NONE) {
+            index = this.freeList;
+            this.freeList = this.nextFree[index];
+        } else {
+            if (this.allocated == MAX_ENTITIES) {
+                throw new IllegalStateException(String.format("Cannot create more than %d entities", MAX_ENTITIES));
+            }
+            if (this.allocated == this.scales.length) {
+                this.resize(this.allocated * 2);
+            }
+            index = this.allocated++;
+        }
+        this.alive[index] = true;
+        this.count++;
+        this.setAt(index, 0, 0, 0);
+        this.rotations[index * 4] = 0;
+        this.rotations[index * 4 + 1] = 0;
+        this.rotations[index * 4 + 2] = 0;
+        this.rotations[index * 4 + 3] = 1;
+        this.scales[index] = 1;
+        this.parents[index] = NONE;
+        this.firstChildren[index] = NONE;
+        this.orderPositions[index] = NONE;
+        this.markDirtyAt(index);
+        return this.generations[index] << INDEX_BITS | index;
+    }
+
+    /**
+     * Destroys an entity that is not drawn with a model; use {@link Scene#removeEntity(int)} for the others. Its
+     * children are detached and keep their transform, which is relative to the world from then on.
+     */
+    public void destroy(int handle) {
+        int index = this.index(handle);
+        if (this.models[index] != null) {
+            throw new IllegalStateException(
+                    String.format("Entity %d is drawn with model %s", handle, this.models[index].getId())
+            );
+        }
+        if (this.parents[index] != NONE || this.firstChildren[index] != NONE) {
+            this.unlink(index);
+            for (int child = this.firstChildren[index]; child != NONE; child = this.nextSiblings[child]) {
+                this.parents[child] = NONE;
+                this.markDirtyAt(child);
+            }
+            this.firstChildren[index] = NONE;
+            this.hierarchyChanged = true;
+        }
+        this.alive[index] = false;
+        this.animationData[index] = null;
+        this.generations[index] = (this.generations[index] + 1) & GENERATION_MASK;
+        this.nextFree[index] = this.freeList;
+        this.freeList = index;
+        this.count--;
+    }
+
+    public boolean isAlive(int handle) {
+        int index = handle & INDEX_MASK;
+        return handle >= 0 && index < this.allocated && this.alive[index]
+                && this.generations[index] == handle >>> INDEX_BITS;
+    }
+
+    /**
+     * @return the slot of a live entity, for indexing the component arrays
+     */
+    public int index(int handle) {
+        if (!this.isAlive(handle)) {
+            throw new IllegalArgumentException(String.format("Entity %d does not exist", handle));
+        }
+        return handle & INDEX_MASK;
+    }
+
+    /**
+     * @return the number of slots in use or free; every live entity has a slot below this
+     */
+    public int getSlotCount() {
+        return this.allocated;
+    }
+
+    public boolean isAliveAt(int index) {
+        return this.alive[index];
+    }
+
+    public void setPosition(int handle, float x, float y, float z) {
+        int index = this.index(handle);
+        this.setAt(index, x, y, z);
+        this.markDirtyAt(index);
+    }
+
+    public Vector3f getPosition(int handle, @NotNull Vector3f dest) {
+        int offset = this.index(handle) * 3;
+        return dest.set(this.positions[offset], this.positions[offset + 1], this.positions[offset + 2]);
+    }
+
+    /**
+     * Sets the rotation to {@code angle} radians around the axis ({@code x}, {@code y}, {@code z}).
+     */
+    public void setRotation(int handle, float x, float y, float z, float angle) {
+        int offset = this.index(handle) * 4;
+        float sin = (float) Math.sin(angle * 0.5f);
+        float length = (float) Math.sqrt(x * x + y * y + z * z);
+        this.rotations[offset] = x / length * sin;
+        this.rotations[offset + 1] = y / length * sin;
+        this.rotations[offset + 2] = z / length * sin;
+        this.rotations[offset + 3] = (float) Math.cos(angle * 0.5f);
+        this.markDirtyAt(offset / 4);
+    }
+
+    public void setRotation(int handle, @NotNull Quaternionf rotation) {
+        int offset = this.index(handle) * 4;
+        this.rotations[offset] = rotation.x;
+        this.rotations[offset + 1] = rotation.y;
+        this.rotations[offset + 2] = rotation.z;
+        this.rotations[offset + 3] = rotation.w;
+        this.markDirtyAt(offset / 4);
+    }
+
+    public Quaternionf getRotation(int handle, @NotNull Quaternionf dest) {
+        int offset = this.index(handle) * 4;
+        return dest.set(
+                this.rotations[offset], this.rotations[offset + 1], this.rotations[offset + 2],
+                this.rotations[offset + 3]
+        );
+    }
+
+    public void setScale(int handle, float scale) {
+        int index = this.index(handle);
+        this.scales[index] = scale;
+        this.markDirtyAt(index);
+    }
+
+    public float getScale(int handle) {
+        return this.scales[this.index(handle)];
+    }
+
+    public void setAnimationData(int handle, @Nullable AnimationData animationData) {
+        this.animationData[this.index(handle)] = animationData;
+    }
+
+    public @Nullable AnimationData getAnimationData(int handle) {
+        return this.animationData[this.index(handle)];
+    }
+
+    public @Nullable Model getModel(int handle) {
+        return this.models[this.index(handle)];
+    }
+
+    public @Nullable Model getModelAt(int index) {
+        return this.models[index];
+    }
+
+    /**
+     * @return where the entity in a slot sits in {@link Model#getEntities()} of its model
+     */
+    public int getModelPositionAt(int index) {
+        return this.modelPositions[index];
+    }
+
+    void setModelAt(int index, @Nullable Model model, int position) {
+        this.models[index] = model;
+        this.modelPositions[index] = position;
+    }
+
+    /**
+     * Attaches an entity to a parent entity, or detaches it when {@code parent} is {@link #NONE}. The transform
+     * of an attached entity is relative to its parent: its model matrix is the parent's times its own transform.
+     */
+    public void setParent(int handle, int parent) {
+        int index = this.index(handle);
+        int parentIndex = parent == NONE ? NONE : this.index(parent);
+        for (int ancestor = parentIndex; ancestor != NONE; ancestor = this.parents[ancestor]) {
+            if (ancestor == index) {
+                throw new IllegalArgumentException(
+                        String.format("Entity %d cannot be attached to its descendant %d", handle, parent)
+                );
+            }
+        }
+        if (this.parents[index] == parentIndex) {
+            return;
+        }
+        this.unlink(index);
+        this.parents[index] = parentIndex;
+        if (parentIndex != NONE) {
+            this.nextSiblings[index] = this.firstChildren[parentIndex];
+            this.firstChildren[parentIndex] = index;
+            // The new ancestors know nothing of dirty entities in the attached subtree yet
+            for (int ancestor = parentIndex; ancestor != NONE; ancestor = this.parents[ancestor]) {
+                this.subtreeDirty[ancestor] = true;
+            }
+        }
+        this.hierarchyChanged = true;
+        this.markDirtyAt(index);
+    }
+
+    /**
+     * @return the handle of the parent of an entity, or {@link #NONE}
+     */
+    public int getParent(int handle) {
+        int parent = this.parents[this.index(handle)];
+        return parent == NONE ? NONE : this.generations[parent] << INDEX_BITS | parent;
+    }
+
+    public Matrix4f getModelMatrix(int handle, @NotNull Matrix4f dest) {
+        return dest.set(this.modelMatrices, this.index(handle) * MATRIX_SIZE);
+    }
+
+    public void markDirty(int handle) {
+        this.markDirtyAt(this.index(handle));
+    }
+
+    /**
+     * Rebuilds the model matrices of the entities changed since the last call, and of all entities below them
+     * in a hierarchy. Large batches are split across the common fork-join pool.
+     */
+    public void updateModelMatrices() {
+        if (this.hierarchyChanged) {
+            this.sortHierarchy();
+            this.hierarchyChanged = false;
+        }
+        int count = this.dirtyCount;
+        long frame = this.frame + 1;
+        if (count >= PARALLEL_THRESHOLD) {
+            IntStream.range(0, (count + PARALLEL_BATCH - 1) / PARALLEL_BATCH).parallel().forEach(batch ->
+                    this.rebuild(batch * PARALLEL_BATCH, Math.min(count, (batch + 1) * PARALLEL_BATCH), frame)
+            );
+        } else {
+            this.rebuild(0, count, frame);
+        }
+        this.changedCount = 0;
+        for (int i = 0; i < count; i++) {
+            int index = this.dirty[i];
+            if (this.orderPositions[index] == NONE && this.alive[index]) {
+                this.changed[this.changedCount++] = index;
+            }
+        }
+        this.dirtyCount = 0;
+        this.propagateHierarchy(frame);
+        this.frame = frame;
+    }
+
+    /**
+     * Calls {@code consumer} with the slot of every live entity whose model matrix was rebuilt after update
+     * {@code since}, so a renderer that last synced at that update only has to patch those. Since the update
+     * before the last one this walks the changed entities only, for older updates all slots.
+     */
+    public void forEachChangedSince(long since, @NotNull IntConsumer consumer) {
+        if (since >= this.frame) {
+            return;
+        }
+        if (since == this.frame - 1) {
+            for (int i = 0; i < this.changedCount; i++) {
+                int index = this.changed[i];
+                if (this.alive[index]) {
+                    consumer.accept(index);
+                }
+            }
+            return;
+        }
+        for (int index = 0; index < this.allocated; index++) {
+            if (this.alive[index] && this.changedFrames[index] > since) {
+                consumer.accept(index);
+            }
+        }
+    }
+
+    public int getDirtyCount() {
+        return this.dirtyCount;
+    }
+
+    /**
+     * Rebuilds the dirty entities outside of hierarchies; those in hierarchies are left to the propagation.
+     */
+    private void rebuild(int from, int to, long frame) {
+        for (int i = from; i < to; i++) {
+            int index = this.dirty[i];
+            if (this.orderPositions[index] != NONE) {
+                continue;
+            }
+            this.dirtyFlags[index] = false;
+            this.subtreeDirty[index] = false;
+            if (this.alive[index]) {
+                this.updateModelMatrixAt(index);
+                this.changedFrames[index] = frame;
+            }
+        }
+    }
+
+    private void markDirtyAt(int index) {
+        if (!this.dirtyFlags[index]) {
+            this.dirtyFlags[index] = true;
+            this.dirty[this.dirtyCount++] = index;
+            int ancestor = index;
+            while (ancestor != NONE && !this.subtreeDirty[ancestor]) {
+                this.subtreeDirty[ancestor] = true;
+                ancestor = this.parents[ancestor];
+            }
+        }
+    }
+
+    private void unlink(int index) {
+        int parent = this.parents[index];
+        if (parent == NONE) {
+            return;
+        }
+        if (this.firstChildren[parent] == index) {
+            this.firstChildren[parent] = this.nextSiblings[index];
+            return;
+        }
+        int sibling = this.firstChildren[parent];
+        while (this.nextSiblings[sibling] != index) {
+            sibling = this.nextSiblings[sibling];
+        }
+        this.nextSiblings[sibling] = this.nextSiblings[index];
+    }
+
+    /**
+     * Lays out all entities with a parent or children in depth-first order, one root after another.
+     */
+    private void sortHierarchy() {
+        int count = 0;
+        this.rootCount = 0;
+        Arrays.fill(this.orderPositions, 0, this.allocated, NONE);
+        for (int root = 0; root < this.allocated; root++) {
+            if (!this.alive[root] || this.parents[root] != NONE || this.firstChildren[root] == NONE) {
+                continue;
+            }
+            this.roots[this.rootCount++] = count;
+            int top = 0;
+            this.pending[top++] = root;
+            while (top > 0) {
+                int index = this.pending[--top];
+                int parent = this.parents[index];
+                this.order[count] = index;
+                this.orderPositions[index] = count;
+                this.orderParents[count] = parent == NONE ? NONE : this.orderPositions[parent];
+                this.subtreeSizes[count] = 1;
+                count++;
+                for (int child = this.firstChildren[index]; child != NONE; child = this.nextSiblings[child]) {
+                    this.pending[top++] = child;
+                }
+            }
+        }
+        // Children come after their parent, so one backwards pass sums up the subtrees
+        for (int position = count - 1; position > 0; position--) {
+            int parent = this.orderParents[position];
+            if (parent != NONE) {
+                this.subtreeSizes[parent] += this.subtreeSizes[position];
+            }
+        }
+        this.orderCount = count;
+    }
+
+    private void propagateHierarchy(long frame) {
+        int count = 0;
+        for (int i = 0; i < this.rootCount; i++) {
+            int root = this.roots[i];
+            if (this.subtreeDirty[this.order[root]]) {
+                this.pending[count++] = root;
+            }
+        }
+        int[] dirtyRoots = this.pending;
+        if (count > 1 && this.orderCount >= PARALLEL_THRESHOLD) {
+            IntStream.range(0, count).parallel().forEach(i -> this.propagate(dirtyRoots[i], frame));
+        } else {
+            for (int i = 0; i < count; i++) {
+                this.propagate(dirtyRoots[i], frame);
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            int root = dirtyRoots[i];
+            int end = root + this.subtreeSizes[root];
+            for (int position = root; position < end; position++) {
+                int index = this.order[position];
+                if (this.changedFrames[index] == frame) {
+                    this.changed[this.changedCount++] = index;
+                }
+            }
+        }
+    }
+
+    /**
+     * Propagates model matrices through the subtree at {@code root}, rebuilding every entity that is dirty or
+     * whose parent was rebuilt. Only touches the subtree, so separate roots can be propagated at the same time.
+     */
+    private void propagate(int root, long frame) {
+        int end = root + this.subtreeSizes[root];
+        int position = root;
+        while (position < end) {
+            int index = this.order[position];
+            int parent = this.orderParents[position];
+            boolean update = this.dirtyFlags[index] || parent != NONE && this.propagated[parent];
+            if (!update && !this.subtreeDirty[index]) {
+                position += this.subtreeSizes[position];
+                continue;
+            }
+            this.dirtyFlags[index] = false;
+            this.subtreeDirty[index] = false;
+            this.propagated[position] = update;
+            if (update) {
+                this.updateModelMatrixAt(index);
+                if (parent != NONE) {
+                    this.applyParent(index, this.order[parent]);
+                }
+                this.changedFrames[index] = frame;
+            }
+            position++;
+        }
+    }
+
+    private void setAt(int index, float x, float y, float z) {
+        this.positions[index * 3] = x;
+        this.positions[index * 3 + 1] = y;
+        this.positions[index * 3 + 2] = z;
+    }
+
+    /**
+     * Writes translation * rotation * scale into the model matrix of a slot, column-major.
+     */
+    private void updateModelMatrixAt(int index) {
+        float[] r = this.rotations;
+        int q = index * 4;
+        float qx = r[q];
+        float qy = r[q + 1];
+        float qz = r[q + 2];
+        float qw = r[q + 3];
+        float s = this.scales[index];
+        float xx = 2 * qx * qx;
+        float yy = 2 * qy * qy;
+        float zz = 2 * qz * qz;
+        float xy = 2 * qx * qy;
+        float xz = 2 * qx * qz;
+        float xw = 2 * qx * qw;
+        float yz = 2 * qy * qz;
+        float yw = 2 * qy * qw;
+        float zw = 2 * qz * qw;
+
+        float[] m = this.modelMatrices;
+        int o = index * MATRIX_SIZE;
+        m[o] = (1 - yy - zz) * s;
+        m[o + 1] = (xy + zw) * s;
+        m[o + 2] = (xz - yw) * s;
+        m[o + 3] = 0;
+        m[o + 4] = (xy - zw) * s;
+        m[o + 5] = (1 - zz - xx) * s;
+        m[o + 6] = (yz + xw) * s;
+        m[o + 7] = 0;
+        m[o + 8] = (xz + yw) * s;
+        m[o + 9] = (yz - xw) * s;
+        m[o + 10] = (1 - yy - xx) * s;
+        m[o + 11] = 0;
+        m[o + 12] = this.positions[index * 3];
+        m[o + 13] = this.positions[index * 3 + 1];
+        m[o + 14] = this.positions[index * 3 + 2];
+        m[o + 15] = 1;
+    }
+
+    /**
+     * Multiplies the model matrix of a slot by the one of its parent, from the left.
+     */
+    private void applyParent(int index, int parent) {
+        float[] m = this.modelMatrices;
+        int p = parent * MATRIX_SIZE;
+        for (int column = 0; column < 4; column++) {
+            int c = index * MATRIX_SIZE + column * 4;
+            float x = m[c];
+            float y = m[c + 1];
+            float z = m[c + 2];
+            float w = m[c + 3];
+            m[c] = m[p] * x + m[p + 4] * y + m[p + 8] * z + m[p + 12] * w;
+            m[c + 1] = m[p + 1] * x + m[p + 5] * y + m[p + 9] * z + m[p + 13] * w;
+            m[c + 2] = m[p + 2] * x + m[p + 6] * y + m[p + 10] * z + m[p + 14] * w;
+            m[c + 3] = m[p + 3] * x + m[p + 7] * y + m[p + 11] * z + m[p + 15] * w;
+        }
+    }
+
+    private void resize(int capacity) {
+        this.positions = Arrays.copyOf(this.positions, capacity * 3);
+        this.rotations = Arrays.copyOf(this.rotations, capacity * 4);
+        this.scales = Arrays.copyOf(this.scales, capacity);
+        this.modelMatrices = Arrays.copyOf(this.modelMatrices, capacity * MATRIX_SIZE);
+        this.animationData = Arrays.copyOf(this.animationData, capacity);
+        this.models = Arrays.copyOf(this.models, capacity);
+        this.modelPositions = Arrays.copyOf(this.modelPositions, capacity);
+        this.generations = Arrays.copyOf(this.generations, capacity);
+        this.alive = Arrays.copyOf(this.alive, capacity);
+        this.nextFree = Arrays.copyOf(this.nextFree, capacity);
+        this.dirtyFlags = Arrays.copyOf(this.dirtyFlags, capacity);
+        this.dirty = Arrays.copyOf(this.dirty, capacity);
+        this.changed = Arrays.copyOf(this.changed, capacity);
+        this.changedFrames = Arrays.copyOf(this.changedFrames, capacity);
+        this.parents = Arrays.copyOf(this.parents, capacity);
+        this.firstChildren = Arrays.copyOf(this.firstChildren, capacity);
+        this.nextSiblings = Arrays.copyOf(this.nextSiblings, capacity);
+        this.subtreeDirty = Arrays.copyOf(this.subtreeDirty, capacity);
+        this.order = Arrays.copyOf(this.order, capacity);
+        this.orderPositions = Arrays.copyOf(this.orderPositions, capacity);
+        this.orderParents = Arrays.copyOf(this.orderParents, capacity);
+        this.subtreeSizes = Arrays.copyOf(this.subtreeSizes, capacity);
+        this.propagated = Arrays.copyOf(this.propagated, capacity);
+        this.roots = Arrays.copyOf(this.roots, capacity);
+        this.pending = Arrays.copyOf(this.pending, capacity);
+    }
+}
@@ -17,6 +17,7 @@ public class Scene {
     private final Projection projection;
     private final TextureCache textureCache;
     private final Camera camera;
+    private final EntityStore entities;
     @Setter private SceneLights sceneLights;
     @Setter private IGuiInstance guiInstance;
     @Setter private SkyBox skyBox;
@@ -27,16 +28,66 @@ public class Scene {
         this.projection = new Projection(width, height);
         this.textureCache = new TextureCache();
         this.camera = new Camera();
+        this.entities = new EntityStore();
         this.fog = new Fog();
     }
 
-    public void addEntity(@NotNull Entity entity) {
-        String modelId = entity.getModelId();
+    /**
+     * Creates an entity drawn with the given model.
+     *
+     * @return the handle of the entity in {@link #getEntities()}
+     */
+    public int createEntity(@NotNull String modelId) {
+        Model model = this.getModel(modelId);
+        int entity = this.entities.create();
+        int index = this.entities.index(entity);
+        this.entities.setModelAt(index, model, model.addEntity(index));
+        return entity;
+    }
+
+    /**
+     * Removes an entity from its model and destroys it, in constant time.
+     */
+    public void removeEntity(int entity) {
+        this.detach(this.entities.index(entity));
+        this.entities.destroy(entity);
+    }
+
+    /**
+     * Draws an entity with another model from now on, in constant time.
+     */
+    public void moveEntity(int entity, @NotNull String modelId) {
+        Model model = this.getModel(modelId);
+        int index = this.entities.index(entity);
+        this.detach(index);
+        this.entities.setModelAt(index, model, model.addEntity(index));
+    }
+
+    /**
+     * @return the number of live entities drawn with the given model
+     */
+    public int getEntityCount(@NotNull String modelId) {
+        return this.getModel(modelId).getEntityCount();
+    }
+
+    private void detach(int index) {
+        Model model = this.entities.getModelAt(index);
+        if (model == null) {
+            return;
+        }
+        int moved = model.removeEntityAt(this.entities.getModelPositionAt(index));
+        if (moved >= 0) {
+            this.entities.setModelAt(moved, model, this.entities.getModelPositionAt(index));
+        }
+        this.entities.setModelAt(index, null, 0);
+    }
+
+    private @NotNull Model getModel(@NotNull String modelId) {
         Model model = this.modelMap.get(modelId);
         if (model == null) {
             throw new RuntimeException(String.format("Model %s not found", modelId));
         }
-        model.getEntities().add(entity);
+        return model;
     }
 
     public void addModel(@NotNull Model model) {
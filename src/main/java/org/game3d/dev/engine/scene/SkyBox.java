@@ -2,15 +2,18 @@ package org.game3d.dev.engine.scene;
 
 import lombok.Getter;
 import org.game3d.dev.engine.graph.Model;
-import org.game3d.dev.engine.graph.TextureCache;
+import org.jetbrains.annotations.NotNull;
 
 @Getter
 public class SkyBox {
-    private final Entity skyBoxEntity;
+    /**
+     * Handle in the entity store of the scene; the sky box is not drawn with the scene's models.
+     */
+    private final int skyBoxEntity;
     private final Model skyBoxModel;
 
-    public SkyBox(String skyBoxModelPath, TextureCache textureCache) {
-        this.skyBoxModel = ModelLoader.loadModel("skybox-model", skyBoxModelPath, textureCache, false);
-        this.skyBoxEntity = new Entity("skybox-entity", this.skyBoxModel.getId());
+    public SkyBox(String skyBoxModelPath, @NotNull Scene scene) {
+        this.skyBoxModel = ModelLoader.loadModel("skybox-model", skyBoxModelPath, scene.getTextureCache(), false);
+        this.skyBoxEntity = scene.getEntities().create();
     }
 }
@@ -7,21 +7,43 @@ import org.game3d.dev.engine.Window;
 import org.game3d.dev.engine.graph.*;
 import org.game3d.dev.engine.scene.*;
 import org.game3d.dev.engine.scene.lights.SceneLights;
-import org.game3d.dev.game.scene.Chunk;
+import org.game3d.dev.game.scene.Block;
+import org.game3d.dev.game.world.BlockBehaviours;
+import org.game3d.dev.game.world.PlayerPhysics;
+import org.game3d.dev.game.world.Raycast;
+import org.game3d.dev.game.world.RaycastHit;
+import org.game3d.dev.game.world.World;
 import org.jetbrains.annotations.NotNull;
 import org.joml.Vector2f;
-import org.joml.Vector2i;
+import org.joml.Vector3f;
+
+import java.nio.file.Path;
 
 import static org.lwjgl.glfw.GLFW.*;
 
 public class Main implements IAppLogic {
-    private static final int CHUNK_SIZE = 16;
+    private static final int WORLD_HEIGHT = 256;
+    private static final long WORLD_SEED = 20240613L;
+    private static final Path SAVE_DIRECTORY = Path.of("saves", "world");
     private static final int RENDER_DISTANCE = 4;
 
-    private Chunk[][] chunks;
+    private static final long UPLOAD_BUDGET_NANOS = 4_000_000L;
+
+    private World world;
+    private PlayerPhysics player;
 
     private static final float MOUSE_SENSITIVITY = 0.05f;
-    private static final float MOVEMENT_SPEED = 0.05f;
+    private static final float REACH = 8.0f;
+    private static final int[] PLACEABLE_BLOCKS = {Block.STONE, Block.SAND, Block.LAMP, Block.WATER, Block.LAVA};
+
+    private final RaycastHit pick = new RaycastHit();
+    private final Vector3f viewDirection = new Vector3f();
+    private final Vector3f walkDirection = new Vector3f();
+    private final Vector3f eyePosition = new Vector3f();
+    private float moveX;
+    private float moveZ;
+    private boolean jump;
+    private int placedBlock = Block.STONE;
 
     private AnimationData animationData;
 
@@ -39,92 +61,131 @@ public class Main implements IAppLogic {
 
     @Override
     public void cleanup() {
-        // TODO: add logic
+        this.world.cleanup();
     }
 
     @Override
     public void init(Window window, @NotNull Scene scene, Render render) {
-        String cubeModelId = "cube-model";
-        Model cubeModel = ModelLoader.loadModel(
-                cubeModelId,
-                "resources/models/cube/cube.obj",
-                scene.getTextureCache(),
-                false
+        this.world = new World(
+                scene, WORLD_SEED, SAVE_DIRECTORY, WORLD_HEIGHT, RENDER_DISTANCE,
+                Math.max(1, Runtime.getRuntime().availableProcessors() - 1)
         );
-        scene.addModel(cubeModel);
-
-        this.chunks = new Chunk[RENDER_DISTANCE * 2 + 1][RENDER_DISTANCE * 2 + 1];
-        for (int i = 0; i < RENDER_DISTANCE * 2 + 1; i++) {
-            for (int j = 0; j < RENDER_DISTANCE * 2 + 1; j++) {
-                int positionX = (i - RENDER_DISTANCE) * CHUNK_SIZE;
-                int positionZ = (j - RENDER_DISTANCE) * CHUNK_SIZE;
-                this.chunks[j][i] = new Chunk(CHUNK_SIZE, 1, new Vector2i(positionX, positionZ), i * CHUNK_SIZE + j);
-                this.chunks[j][i].init();
-
-                for (Entity entity : this.chunks[j][i].getBlocks()) {
-                    scene.addEntity(entity);
-                }
-            }
-        }
+        BlockBehaviours.register(this.world);
 
         String bobModelId = "bobModel";
         Model bobModel = ModelLoader.loadModel(bobModelId, "resources/models/bob/boblamp.md5mesh",
                 scene.getTextureCache(), true);
         scene.addModel(bobModel);
-        Entity bobEntity = new Entity("bobEntity", bobModelId);
-        bobEntity.setScale(0.05f);
-        bobEntity.updateModelMatrix();
+        EntityStore entities = scene.getEntities();
+        int bobEntity = scene.createEntity(bobModelId);
+        int surface = this.world.getGenerator().getSurfaceHeight(0, 0) + 1;
+        entities.setPosition(bobEntity, 0.5f, surface, 0.5f);
+        entities.setScale(bobEntity, 0.05f);
         animationData = new AnimationData(bobModel.getAnimations().getFirst());
-        bobEntity.setAnimationData(animationData);
-        scene.addEntity(bobEntity);
+        entities.setAnimationData(bobEntity, animationData);
 
         SceneLights sceneLights = new SceneLights();
         sceneLights.getAmbientLight().setIntensity(0.3f);
         scene.setSceneLights(sceneLights);
         scene.setFog(new Fog(true, CONST.SKY_COLOR, 0.01f));
 
-//        SkyBox skyBox = new SkyBox("resources/models/skybox/skybox.obj", scene.getTextureCache());
-//        skyBox.getSkyBoxEntity().setScale(500);
+//        SkyBox skyBox = new SkyBox("resources/models/skybox/skybox.obj", scene);
+//        entities.setScale(skyBox.getSkyBoxEntity(), 500);
 //        scene.setSkyBox(skyBox);
-        scene.getCamera().moveUp(1);
+        // Looking at Bob from two blocks away
+        this.player = new PlayerPhysics(0.5f, this.world.getGenerator().getSurfaceHeight(0, 2) + 1, 2.5f);
+        this.updateCamera(scene.getCamera());
         this.updateTerrain(scene);
     }
 
     @Override
     public void input(@NotNull Window window, @NotNull Scene scene, long diffTimeMillis, boolean inputConsumed) {
         if (inputConsumed) {
+            this.moveX = 0;
+            this.moveZ = 0;
+            this.jump = false;
             return;
         }
 
-        float move = diffTimeMillis * MOVEMENT_SPEED;
+        // Only the walking direction is taken here; the player is moved on the update tick
         Camera camera = scene.getCamera();
+        float forward = 0;
+        float strafe = 0;
         if (window.isKeyPressed(GLFW_KEY_W)) {
-            camera.moveForward(move);
+            forward = 1;
         } else if (window.isKeyPressed(GLFW_KEY_S)) {
-            camera.moveBackwards(move);
+            forward = -1;
         }
         if (window.isKeyPressed(GLFW_KEY_A)) {
-            camera.moveLeft(move);
+            strafe = -1;
         } else if (window.isKeyPressed(GLFW_KEY_D)) {
-            camera.moveRight(move);
+            strafe = 1;
+        }
+        Vector3f direction = camera.getHorizontalDirection(this.walkDirection);
+        float length = (float) Math.sqrt(forward * forward + strafe * strafe);
+        if (length > 0) {
+            forward /= length;
+            strafe /= length;
         }
-        if (window.isKeyPressed(GLFW_KEY_SPACE)) {
-            camera.moveUp(move);
-        } else if (window.isKeyPressed(GLFW_KEY_LEFT_CONTROL)) {
-            camera.moveDown(move);
+        this.moveX = forward * direction.x - strafe * direction.z;
+        this.moveZ = forward * direction.z + strafe * direction.x;
+        this.jump = window.isKeyPressed(GLFW_KEY_SPACE);
+        for (int i = 0; i < PLACEABLE_BLOCKS.length; i++) {
+            if (window.isKeyPressed(GLFW_KEY_1 + i)) {
+                this.placedBlock = PLACEABLE_BLOCKS[i];
+            }
         }
 
         MouseInput mouseInput = window.getMouseInput();
         Vector2f displayVec = mouseInput.getDisplayVec();
         camera.addRotation((float) Math.toRadians(-displayVec.x * MOUSE_SENSITIVITY),
                 (float) Math.toRadians(-displayVec.y * MOUSE_SENSITIVITY));
+
+        if (mouseInput.isLeftButtonClicked() || mouseInput.isRightButtonClicked()) {
+            this.pickBlock(camera, mouseInput.isLeftButtonClicked());
+        }
+    }
+
+    /**
+     * Breaks the block the camera looks at, or places one against the face it looks at.
+     */
+    private void pickBlock(@NotNull Camera camera, boolean breakBlock) {
+        Vector3f position = camera.getPosition();
+        if (!Raycast.cast(this.world, position, camera.getViewDirection(this.viewDirection), REACH,
+                Raycast.SOLID, this.pick)) {
+            return;
+        }
+        if (breakBlock) {
+            this.world.setBlock(this.pick.getX(), this.pick.getY(), this.pick.getZ(), Block.AIR);
+            return;
+        }
+        int x = this.pick.getAdjacentX();
+        int y = this.pick.getAdjacentY();
+        int z = this.pick.getAdjacentZ();
+        if (!this.player.intersects(x, y, z)) {
+            this.world.setBlock(x, y, z, this.placedBlock);
+        }
     }
 
     @Override
     public void update(Window window, Scene scene, long diffTimeMillis) {
         this.animationData.nextFrame();
+        this.world.tick();
+        Vector3f position = this.player.getPosition();
+        // Hold the player in place until the blocks around it exist, otherwise it would fall through
+        if (this.world.isLoaded((int) Math.floor(position.x), (int) Math.floor(position.z))) {
+            this.player.update(this.world, this.moveX, this.moveZ, this.jump, diffTimeMillis / 1000.0f);
+        }
+        this.updateCamera(scene.getCamera());
+        this.updateTerrain(scene);
+    }
+
+    private void updateCamera(@NotNull Camera camera) {
+        Vector3f eye = this.player.getEyePosition(this.eyePosition);
+        camera.setPosition(eye.x, eye.y, eye.z);
     }
 
     public void updateTerrain(@NotNull Scene scene) {
+        this.world.update(scene.getCamera().getPosition(), UPLOAD_BUDGET_NANOS);
     }
 }
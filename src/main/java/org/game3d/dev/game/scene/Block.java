@@ -1,22 +1,268 @@
 package org.game3d.dev.game.scene;
 
-import lombok.Getter;
-import lombok.Setter;
-import org.game3d.dev.engine.scene.Entity;
+import org.jetbrains.annotations.NotNull;
 
-@Setter
-@Getter
-public class Block extends Entity {
-    private Type type;
-    private static final String MODEL_ID = "cube-model";
+import java.util.HashMap;
+import java.util.Map;
 
-    public Block(String id, Type type) {
-        super(id, MODEL_ID);
-        this.type = type;
+/**
+ * Registry of all block types. A block type is only a dense id; its properties live in flat arrays indexed by
+ * that id, so hot loops (meshing, lighting, collision) read a primitive instead of following a reference.
+ * The arrays are allocated for {@value #MAX_TYPES} types up front and never grow, so registering more types
+ * does not change the cost of a lookup.
+ */
+public final class Block {
+    public static final int MAX_TYPES = 4096;
+
+    public static final int COLLISION_NONE = 0;
+    public static final int COLLISION_FULL = 1;
+
+    public static final int TICK_NONE = 0;
+    public static final int TICK_RANDOM = 1;
+    public static final int TICK_SCHEDULED = 1 << 1;
+
+    public static final int FLUID_NONE = 0;
+    public static final int FLUID_WATER = 1;
+    public static final int FLUID_LAVA = 2;
+    /**
+     * Fluid level of a source block; flowing fluid has levels 1 to {@code FLUID_SOURCE - 1}.
+     */
+    public static final int FLUID_SOURCE = 8;
+    private static final int FLUID_TYPES = 3;
+
+    private static final String[] NAMES = new String[MAX_TYPES];
+    private static final boolean[] VISIBLE = new boolean[MAX_TYPES];
+    private static final boolean[] OPAQUE = new boolean[MAX_TYPES];
+    private static final byte[] LIGHT_EMISSION = new byte[MAX_TYPES];
+    private static final short[] TOP_TILE = new short[MAX_TYPES];
+    private static final short[] SIDE_TILE = new short[MAX_TYPES];
+    private static final short[] BOTTOM_TILE = new short[MAX_TYPES];
+    private static final byte[] COLLISION = new byte[MAX_TYPES];
+    private static final byte[] TICKS = new byte[MAX_TYPES];
+    private static final short[] TICK_DELAY = new short[MAX_TYPES];
+    private static final byte[] FLUID = new byte[MAX_TYPES];
+    private static final byte[] FLUID_LEVEL = new byte[MAX_TYPES];
+    private static final int[] FLUID_BLOCKS = new int[FLUID_TYPES * (FLUID_SOURCE + 1)];
+    private static final Map<String, Integer> IDS = new HashMap<>();
+    private static int count;
+
+    public static final int AIR = register("air", new Properties().invisible().collision(COLLISION_NONE));
+    public static final int DIRT = register("dirt", new Properties().tile(1));
+    public static final int GRASS = register("grass", new Properties().tiles(2, 0, 1).ticks(TICK_RANDOM));
+    public static final int STONE = register("stone", new Properties().tile(3));
+    public static final int SAND = register("sand", new Properties().tile(4).ticks(TICK_SCHEDULED).tickDelay(2));
+    public static final int BEDROCK = register("bedrock", new Properties().tile(5));
+    public static final int LAMP = register("lamp", new Properties().tile(8).lightEmission(15));
+    public static final int WATER = registerFluid("water", FLUID_WATER, new Properties().tile(6));
+    public static final int LAVA = registerFluid("lava", FLUID_LAVA, new Properties().tile(7).lightEmission(15));
+
+    private Block() {
     }
 
-    public enum Type {
-        DIRT,
-        AIR
+    /**
+     * Adds a block type. Must happen before any world is created, since storage and meshes refer to blocks by id.
+     *
+     * @return the id of the new type
+     */
+    public static synchronized int register(@NotNull String name, @NotNull Properties properties) {
+        if (IDS.containsKey(name)) {
+            throw new IllegalArgumentException(String.format("Block %s is already registered", name));
+        }
+        if (count == MAX_TYPES) {
+            throw new IllegalStateException(String.format("Cannot register more than %d block types", MAX_TYPES));
+        }
+        int id = count++;
+        NAMES[id] = name;
+        VISIBLE[id] = properties.visible;
+        OPAQUE[id] = properties.opaque;
+        LIGHT_EMISSION[id] = (byte) properties.lightEmission;
+        TOP_TILE[id] = (short) properties.topTile;
+        SIDE_TILE[id] = (short) properties.sideTile;
+        BOTTOM_TILE[id] = (short) properties.bottomTile;
+        COLLISION[id] = (byte) properties.collision;
+        TICKS[id] = (byte) properties.ticks;
+        TICK_DELAY[id] = (short) properties.tickDelay;
+        FLUID[id] = (byte) properties.fluid;
+        FLUID_LEVEL[id] = (byte) properties.fluidLevel;
+        if (properties.fluid != FLUID_NONE) {
+            FLUID_BLOCKS[properties.fluid * (FLUID_SOURCE + 1) + properties.fluidLevel] = id;
+        }
+        IDS.put(name, id);
+        return id;
+    }
+
+    /**
+     * Adds a fluid: a source block under {@code name} and a flowing block for every lower level.
+     *
+     * @return the id of the source block
+     */
+    public static synchronized int registerFluid(@NotNull String name, int fluid, @NotNull Properties properties) {
+        if (fluid <= FLUID_NONE || fluid >= FLUID_TYPES) {
+            throw new IllegalArgumentException(String.format("Fluid %d is not within 1..%d", fluid, FLUID_TYPES - 1));
+        }
+        int source = register(name, properties.fluid(fluid, FLUID_SOURCE));
+        for (int level = 1; level < FLUID_SOURCE; level++) {
+            register(String.format("%s_%d", name, level), properties.fluid(fluid, level));
+        }
+        return source;
+    }
+
+    public static int count() {
+        return count;
+    }
+
+    public static int byName(@NotNull String name) {
+        Integer id = IDS.get(name);
+        if (id == null) {
+            throw new IllegalArgumentException(String.format("Unknown block %s", name));
+        }
+        return id;
+    }
+
+    public static String getName(int id) {
+        return NAMES[id];
+    }
+
+    public static boolean isOpaque(int id) {
+        return OPAQUE[id];
+    }
+
+    /**
+     * @return whether the face of block {@code id} towards block {@code neighbour} is drawn: faces are hidden
+     * by opaque blocks, and fluid faces by the same fluid
+     */
+    public static boolean isFaceVisible(int id, int neighbour) {
+        return VISIBLE[id] && !OPAQUE[neighbour] && (FLUID[id] == FLUID_NONE || FLUID[id] != FLUID[neighbour]);
+    }
+
+    public static int getLightEmission(int id) {
+        return LIGHT_EMISSION[id];
+    }
+
+    public static int getTopTile(int id) {
+        return TOP_TILE[id];
+    }
+
+    public static int getSideTile(int id) {
+        return SIDE_TILE[id];
+    }
+
+    public static int getBottomTile(int id) {
+        return BOTTOM_TILE[id];
+    }
+
+    public static int getCollision(int id) {
+        return COLLISION[id];
+    }
+
+    public static boolean ticks(int id, int tick) {
+        return (TICKS[id] & tick) != 0;
+    }
+
+    public static int getFluid(int id) {
+        return FLUID[id];
+    }
+
+    public static int getFluidLevel(int id) {
+        return FLUID_LEVEL[id];
+    }
+
+    /**
+     * @return the block of the given fluid at the given level, from 1 to {@link #FLUID_SOURCE}
+     */
+    public static int getFluidBlock(int fluid, int level) {
+        return FLUID_BLOCKS[fluid * (FLUID_SOURCE + 1) + level];
+    }
+
+    /**
+     * @return world ticks between a neighbouring change and the scheduled tick it causes
+     */
+    public static int getTickDelay(int id) {
+        return TICK_DELAY[id];
+    }
+
+    /**
+     * Properties of a block type that is about to be registered. Defaults to an opaque, full-collision block
+     * without light, ticks or fluid, textured with atlas tile 0.
+     */
+    public static class Properties {
+        private boolean visible = true;
+        private boolean opaque = true;
+        private int lightEmission;
+        private int topTile;
+        private int sideTile;
+        private int bottomTile;
+        private int collision = COLLISION_FULL;
+        private int ticks = TICK_NONE;
+        private int tickDelay = 1;
+        private int fluid = FLUID_NONE;
+        private int fluidLevel;
+
+        public Properties transparent() {
+            this.opaque = false;
+            return this;
+        }
+
+        /**
+         * Not drawn at all, like air.
+         */
+        public Properties invisible() {
+            this.visible = false;
+            this.opaque = false;
+            return this;
+        }
+
+        /**
+         * Makes this a fluid block: see-through and without collision. Fluids are registered through
+         * {@link Block#registerFluid(String, int, Properties)}.
+         */
+        private Properties fluid(int fluid, int fluidLevel) {
+            this.fluid = fluid;
+            this.fluidLevel = fluidLevel;
+            this.opaque = false;
+            this.collision = COLLISION_NONE;
+            return this;
+        }
+
+        public Properties lightEmission(int lightEmission) {
+            if (lightEmission < 0 || lightEmission > 15) {
+                throw new IllegalArgumentException(
+                        String.format("Light emission %d is not within 0..15", lightEmission)
+                );
+            }
+            this.lightEmission = lightEmission;
+            return this;
+        }
+
+        public Properties tile(int tile) {
+            return this.tiles(tile, tile, tile);
+        }
+
+        public Properties tiles(int topTile, int sideTile, int bottomTile) {
+            this.topTile = topTile;
+            this.sideTile = sideTile;
+            this.bottomTile = bottomTile;
+            return this;
+        }
+
+        public Properties collision(int collision) {
+            this.collision = collision;
+            return this;
+        }
+
+        public Properties ticks(int ticks) {
+            this.ticks = ticks;
+            return this;
+        }
+
+        public Properties tickDelay(int tickDelay) {
+            if (tickDelay < 1 || tickDelay > Short.MAX_VALUE) {
+                throw new IllegalArgumentException(
+                        String.format("Tick delay %d is not within 1..%d", tickDelay, Short.MAX_VALUE)
+                );
+            }
+            this.tickDelay = tickDelay;
+            return this;
+        }
     }
 }
@@ -0,0 +1,15 @@
+package org.game3d.dev.game.scene;
+
+@FunctionalInterface
+public interface BlockAccess {
+    int FULL_SKY_LIGHT = 0xF0;
+
+    int getBlockId(int x, int y, int z);
+
+    /**
+     * @return sky light in the high and block light in the low four bits
+     */
+    default int getLight(int x, int y, int z) {
+        return FULL_SKY_LIGHT;
+    }
+}
@@ -0,0 +1,413 @@
+package org.game3d.dev.game.scene;
+
+import lombok.Getter;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * Block ids of a box of voxels, stored as bit-packed indices into a palette.
+ * A uniform storage (e.g. all air) keeps no index data at all; the bit width grows when new
+ * block ids are added and shrinks again once enough ids disappear from the palette.
+ */
+public class BlockStorage {
+    private static final int MAX_BITS = 16;
+
+    @Getter private final int xSize;
+    @Getter private final int ySize;
+    @Getter private final int zSize;
+    @Getter private final int volume;
+
+    private int[] palette;
+    private int[] counts;
+    private int[] reverse;
+    private int paletteUsed;
+
+    @Getter private int bitsPerEntry;
+    private int entriesPerLong;
+    private long mask;
+    private long[] data;
+
+    public BlockStorage(int xSize, int ySize, int zSize) {
+        this(xSize, ySize, zSize, 0);
+    }
+
+    public BlockStorage(int xSize, int ySize, int zSize, int blockId) {
+        this.xSize = xSize;
+        this.ySize = ySize;
+        this.zSize = zSize;
+        this.volume = xSize * ySize * zSize;
+        this.reverse = new int[0];
+        this.fill(blockId);
+    }
+
+    private BlockStorage(BlockStorage other) {
+        this.xSize = other.xSize;
+        this.ySize = other.ySize;
+        this.zSize = other.zSize;
+        this.volume = other.volume;
+        this.palette = other.palette.clone();
+        this.counts = other.counts.clone();
+        this.reverse = other.reverse.clone();
+        this.paletteUsed = other.paletteUsed;
+        this.resize(other.bitsPerEntry);
+        this.data = other.data == null ? null : other.data.clone();
+    }
+
+    public BlockStorage copy() {
+        return new BlockStorage(this);
+    }
+
+    public int get(int x, int y, int z) {
+        return this.getAt(this.index(x, y, z));
+    }
+
+    public int getAt(int index) {
+        if (this.bitsPerEntry == 0) {
+            return this.palette[0];
+        }
+        return this.palette[this.readIndex(index)];
+    }
+
+    public int set(int x, int y, int z, int blockId) {
+        return this.setAt(this.index(x, y, z), blockId);
+    }
+
+    public int setAt(int index, int blockId) {
+        int oldSlot = this.bitsPerEntry == 0 ? 0 : this.readIndex(index);
+        int oldId = this.palette[oldSlot];
+        if (oldId == blockId) {
+            return oldId;
+        }
+
+        int newSlot = this.slotOf(blockId);
+        if (newSlot < 0) {
+            newSlot = this.addToPalette(blockId);
+            // adding may have re-packed the data with a different bit width
+            oldSlot = this.readIndex(index);
+        }
+        this.writeIndex(index, newSlot);
+        this.counts[newSlot]++;
+        this.release(oldSlot);
+        return oldId;
+    }
+
+    public void fill(int blockId) {
+        this.checkBlockId(blockId);
+        Arrays.fill(this.reverse, -1);
+        this.palette = new int[]{blockId};
+        this.counts = new int[]{this.volume};
+        this.paletteUsed = 1;
+        this.ensureReverse(blockId);
+        this.reverse[blockId] = 0;
+        this.resize(0);
+        this.data = null;
+    }
+
+    public void fill(int minX, int minY, int minZ, int maxX, int maxY, int maxZ, int blockId) {
+        if (minX <= 0 && minY <= 0 && minZ <= 0
+                && maxX >= this.xSize - 1 && maxY >= this.ySize - 1 && maxZ >= this.zSize - 1) {
+            this.fill(blockId);
+            return;
+        }
+        for (int y = Math.max(minY, 0); y <= Math.min(maxY, this.ySize - 1); y++) {
+            for (int z = Math.max(minZ, 0); z <= Math.min(maxZ, this.zSize - 1); z++) {
+                for (int x = Math.max(minX, 0); x <= Math.min(maxX, this.xSize - 1); x++) {
+                    this.set(x, y, z, blockId);
+                }
+            }
+        }
+    }
+
+    /**
+     * Replaces the whole content with {@code blockIds}, given in {@link #index(int, int, int)} order.
+     * Builds the palette and packs the data in one pass instead of growing it through {@link #setAt(int, int)}.
+     */
+    public void load(int @NotNull [] blockIds) {
+        if (blockIds.length < this.volume) {
+            throw new IllegalArgumentException(
+                    String.format("Expected %d block ids but got %d", this.volume, blockIds.length)
+            );
+        }
+        Arrays.fill(this.reverse, -1);
+        int[] newPalette = new int[4];
+        int[] newCounts = new int[4];
+        int used = 0;
+        for (int i = 0; i < this.volume; i++) {
+            int blockId = blockIds[i];
+            this.checkBlockId(blockId);
+            this.ensureReverse(blockId);
+            int slot = this.reverse[blockId];
+            if (slot < 0) {
+                if (used == newPalette.length) {
+                    newPalette = Arrays.copyOf(newPalette, used * 2);
+                    newCounts = Arrays.copyOf(newCounts, used * 2);
+                }
+                slot = used++;
+                newPalette[slot] = blockId;
+                this.reverse[blockId] = slot;
+            }
+            newCounts[slot]++;
+        }
+        if (used == 1) {
+            this.fill(newPalette[0]);
+            return;
+        }
+
+        this.palette = Arrays.copyOf(newPalette, used);
+        this.counts = Arrays.copyOf(newCounts, used);
+        this.paletteUsed = used;
+        this.resize(bitsFor(used));
+        this.data = new long[(this.volume + this.entriesPerLong - 1) / this.entriesPerLong];
+        for (int i = 0; i < this.volume; i++) {
+            this.writeIndex(i, this.reverse[blockIds[i]]);
+        }
+    }
+
+    public boolean isUniform() {
+        return this.paletteUsed == 1;
+    }
+
+    public int getPaletteSize() {
+        return this.paletteUsed;
+    }
+
+    public int count(int blockId) {
+        int slot = this.slotOf(blockId);
+        return slot < 0 ? 0 : this.counts[slot];
+    }
+
+    public boolean contains(int blockId) {
+        return this.slotOf(blockId) >= 0;
+    }
+
+    /**
+     * Tests every distinct block in the storage, which is usually far fewer than the number of block types.
+     */
+    public boolean anyMatch(@NotNull IntPredicate predicate) {
+        for (int i = 0; i < this.counts.length; i++) {
+            if (this.counts[i] > 0 && predicate.test(this.palette[i])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public long getMemoryUsage() {
+        long bytes = 4L * (this.palette.length + this.counts.length + this.reverse.length);
+        if (this.data != null) {
+            bytes += 8L * this.data.length;
+        }
+        return bytes;
+    }
+
+    public int getSerializedSize() {
+        return 8 + 4 * this.palette.length + (this.data == null ? 0 : 8 * this.data.length);
+    }
+
+    public void write(@NotNull ByteBuffer buffer) {
+        buffer.putInt(this.bitsPerEntry);
+        buffer.putInt(this.palette.length);
+        for (int i = 0; i < this.palette.length; i++) {
+            buffer.putInt(this.counts[i] > 0 ? this.palette[i] : -1);
+        }
+        if (this.data != null) {
+            for (long word : this.data) {
+                buffer.putLong(word);
+            }
+        }
+    }
+
+    /**
+     * Replaces the content with what {@link #write(ByteBuffer)} produced for a storage of the same size.
+     */
+    public void read(@NotNull ByteBuffer buffer) {
+        int bits = buffer.getInt();
+        int length = buffer.getInt();
+        if (bits < 0 || bits > MAX_BITS || length < 1 || (bits > 0 && bitsFor(length) > bits)) {
+            throw new IllegalStateException(String.format("Corrupt block storage: %d bits, %d ids", bits, length));
+        }
+        int[] newPalette = new int[length];
+        for (int i = 0; i < length; i++) {
+            newPalette[i] = buffer.getInt();
+        }
+        if (bits == 0) {
+            this.fill(newPalette[0]);
+            return;
+        }
+
+        this.resize(bits);
+        this.data = new long[(this.volume + this.entriesPerLong - 1) / this.entriesPerLong];
+        for (int i = 0; i < this.data.length; i++) {
+            this.data[i] = buffer.getLong();
+        }
+        this.counts = new int[length];
+        for (int i = 0; i < this.volume; i++) {
+            int slot = this.readIndex(i);
+            if (slot >= length || newPalette[slot] < 0) {
+                throw new IllegalStateException(String.format("Corrupt block storage: unknown slot %d", slot));
+            }
+            this.counts[slot]++;
+        }
+
+        Arrays.fill(this.reverse, -1);
+        this.paletteUsed = 0;
+        for (int i = 0; i < length; i++) {
+            if (this.counts[i] == 0) {
+                newPalette[i] = 0;
+                continue;
+            }
+            this.ensureReverse(newPalette[i]);
+            this.reverse[newPalette[i]] = i;
+            this.paletteUsed++;
+        }
+        this.palette = newPalette;
+        if (this.paletteUsed == 1) {
+            this.fill(this.palette[this.readIndex(0)]);
+        }
+    }
+
+    public int index(int x, int y, int z) {
+        return (y * this.zSize + z) * this.xSize + x;
+    }
+
+    private int readIndex(int index) {
+        int word = index / this.entriesPerLong;
+        int shift = (index - word * this.entriesPerLong) * this.bitsPerEntry;
+        return (int) ((this.data[word] >>> shift) & this.mask);
+    }
+
+    private void writeIndex(int index, int slot) {
+        if (this.bitsPerEntry == 0) {
+            return;
+        }
+        int word = index / this.entriesPerLong;
+        int shift = (index - word * this.entriesPerLong) * this.bitsPerEntry;
+        this.data[word] = (this.data[word] & ~(this.mask << shift)) | ((long) slot << shift);
+    }
+
+    private int slotOf(int blockId) {
+        if (blockId < 0 || blockId >= this.reverse.length) {
+            return -1;
+        }
+        return this.reverse[blockId];
+    }
+
+    private int addToPalette(int blockId) {
+        this.checkBlockId(blockId);
+        int slot = -1;
+        for (int i = 0; i < this.palette.length; i++) {
+            if (this.counts[i] == 0) {
+                slot = i;
+                break;
+            }
+        }
+        if (slot < 0) {
+            slot = this.palette.length;
+            this.palette = Arrays.copyOf(this.palette, slot + 1);
+            this.counts = Arrays.copyOf(this.counts, slot + 1);
+        }
+
+        int requiredBits = bitsFor(slot + 1);
+        if (requiredBits > this.bitsPerEntry) {
+            this.repack(requiredBits, null);
+        }
+        this.palette[slot] = blockId;
+        this.ensureReverse(blockId);
+        this.reverse[blockId] = slot;
+        this.paletteUsed++;
+        return slot;
+    }
+
+    private void release(int slot) {
+        if (--this.counts[slot] > 0) {
+            return;
+        }
+        this.reverse[this.palette[slot]] = -1;
+        this.paletteUsed--;
+
+        if (this.paletteUsed == 1) {
+            for (int i = 0; i < this.palette.length; i++) {
+                if (this.counts[i] > 0) {
+                    this.fill(this.palette[i]);
+                    return;
+                }
+            }
+        }
+        // Hysteresis: only shrink once a quarter of the addressable slots is in use, so a block
+        // toggling between two ids does not re-pack the whole storage on every edit.
+        if (this.bitsPerEntry > 1 && this.paletteUsed <= (1 << this.bitsPerEntry) / 4) {
+            this.compact();
+        }
+    }
+
+    private void compact() {
+        int[] remap = new int[this.palette.length];
+        int[] newPalette = new int[this.paletteUsed];
+        int[] newCounts = new int[this.paletteUsed];
+        int next = 0;
+        for (int i = 0; i < this.palette.length; i++) {
+            if (this.counts[i] > 0) {
+                remap[i] = next;
+                newPalette[next] = this.palette[i];
+                newCounts[next] = this.counts[i];
+                this.reverse[this.palette[i]] = next;
+                next++;
+            }
+        }
+        this.repack(bitsFor(this.paletteUsed), remap);
+        this.palette = newPalette;
+        this.counts = newCounts;
+    }
+
+    private void repack(int newBits, int[] remap) {
+        long[] oldData = this.data;
+        int oldBits = this.bitsPerEntry;
+        int oldPerLong = this.entriesPerLong;
+        long oldMask = this.mask;
+
+        this.resize(newBits);
+        this.data = new long[(this.volume + this.entriesPerLong - 1) / this.entriesPerLong];
+        for (int i = 0; i < this.volume; i++) {
+            int slot = 0;
+            if (oldBits > 0) {
+                int word = i / oldPerLong;
+                slot = (int) ((oldData[word] >>> ((i - word * oldPerLong) * oldBits)) & oldMask);
+            }
+            this.writeIndex(i, remap == null ? slot : remap[slot]);
+        }
+    }
+
+    private void resize(int bits) {
+        this.bitsPerEntry = bits;
+        this.entriesPerLong = bits == 0 ? 0 : 64 / bits;
+        this.mask = (1L << bits) - 1;
+    }
+
+    private void ensureReverse(int blockId) {
+        if (blockId >= this.reverse.length) {
+            int oldLength = this.reverse.length;
+            this.reverse = Arrays.copyOf(this.reverse, Math.max(blockId + 1, oldLength * 2));
+            Arrays.fill(this.reverse, oldLength, this.reverse.length, -1);
+        }
+    }
+
+    private void checkBlockId(int blockId) {
+        if (blockId < 0) {
+            throw new IllegalArgumentException("Invalid block id: " + blockId);
+        }
+    }
+
+    private static int bitsFor(int paletteLength) {
+        if (paletteLength <= 1) {
+            return 0;
+        }
+        int bits = 32 - Integer.numberOfLeadingZeros(paletteLength - 1);
+        if (bits > MAX_BITS) {
+            throw new IllegalStateException("Block palette exceeds " + (1 << MAX_BITS) + " entries");
+        }
+        return bits;
+    }
+}
@@ -2,45 +2,228 @@ package org.game3d.dev.game.scene;
 
 import lombok.Getter;
 import lombok.Setter;
-import org.game3d.dev.engine.scene.Entity;
+import org.game3d.dev.engine.graph.Material;
+import org.game3d.dev.engine.graph.Mesh;
+import org.game3d.dev.engine.graph.Model;
+import org.game3d.dev.engine.scene.EntityStore;
+import org.game3d.dev.engine.scene.Scene;
+import org.jetbrains.annotations.NotNull;
 import org.joml.Vector2i;
+import org.joml.Vector4f;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 
 @Getter
 public class Chunk {
-    @Setter private Vector2i position;
-    private final Block[][][] entities;
+    public static final int SIZE = Section.SIZE;
+    public static final String TEXTURE_PATH = "resources/textures/blocks.png";
+    private static final Vector4f AMBIENT_COLOR = new Vector4f(0.59f, 0.45f, 0.35f, 1.0f);
+
+    private final Vector2i position;
+    private final Section[] sections;
+    private final int height;
     private final int id;
+    @Setter private State state;
+    @Setter private boolean unsaved;
+    private int pins;
+    private Model model;
+    private int entity = EntityStore.NONE;
 
-    public Chunk(int xzSize, int ySize, Vector2i position, int id) {
-        this.entities = new Block[xzSize][ySize][xzSize];
+    public Chunk(int sectionCount, Vector2i position, int id) {
+        this.sections = new Section[sectionCount];
+        for (int i = 0; i < sectionCount; i++) {
+            this.sections[i] = new Section(i);
+        }
+        this.height = sectionCount * Section.SIZE;
         this.position = position;
         this.id = id;
+        this.state = State.EMPTY;
+    }
+
+    public void reset(int positionX, int positionZ) {
+        if (this.pins > 0) {
+            throw new IllegalStateException(String.format("Chunk %d is still in use", this.id));
+        }
+        this.position.set(positionX, positionZ);
+        for (Section section : this.sections) {
+            section.getStorage().fill(Block.AIR);
+            section.getSkyLight().fill(0);
+            section.getBlockLight().fill(0);
+            section.setDirty(false);
+            section.setMesh(null);
+        }
+        this.state = State.EMPTY;
+        this.unsaved = false;
+        if (this.model != null) {
+            Material material = this.model.getMaterials().getFirst();
+            material.cleanup();
+            material.getMeshes().clear();
+        }
+    }
+
+    public int getChunkX() {
+        return Math.floorDiv(this.position.x, SIZE);
+    }
+
+    public int getChunkZ() {
+        return Math.floorDiv(this.position.y, SIZE);
+    }
+
+    public void pin() {
+        this.pins++;
+        for (Section section : this.sections) {
+            section.setShared(true);
+        }
+    }
+
+    public void unpin() {
+        if (--this.pins == 0) {
+            for (Section section : this.sections) {
+                section.setShared(false);
+            }
+        }
+    }
+
+    public boolean isPinned() {
+        return this.pins > 0;
+    }
+
+    public Section getSection(int index) {
+        return this.sections[index];
+    }
+
+    public int getBlockId(int x, int y, int z) {
+        return this.sections[y >> Section.SHIFT].getStorage().get(x, y & Section.MASK, z);
+    }
+
+    public int getLight(int x, int y, int z) {
+        return this.sections[y >> Section.SHIFT].getPackedLight(Section.index(x, y & Section.MASK, z));
+    }
+
+    /**
+     * Changes one block and marks its section dirty, along with the section above or below when the block
+     * sits on that border. Neighbouring chunks are left to the caller.
+     */
+    public int setBlock(int x, int y, int z, int blockId) {
+        int old = this.sections[y >> Section.SHIFT].setBlock(x, y & Section.MASK, z, blockId);
+        if (old != blockId) {
+            this.markDirtyAround(y);
+            this.unsaved = true;
+        }
+        return old;
+    }
+
+    /**
+     * Marks the sections whose meshes can see the blocks at height {@code y}.
+     */
+    public void markDirtyAround(int y) {
+        int min = Math.max(0, (y - 1) >> Section.SHIFT);
+        int max = Math.min(this.sections.length - 1, (y + 1) >> Section.SHIFT);
+        for (int i = min; i <= max; i++) {
+            this.sections[i].setDirty(true);
+        }
+    }
+
+    public void markDirty() {
+        for (Section section : this.sections) {
+            section.setDirty(true);
+        }
     }
 
-    public void init() {
-        for (int x = 0; x < this.entities.length; x++) {
-            for (int y = 0; y < this.entities[0].length; y++) {
-                for (int z = 0; z < this.entities[0][0].length; z++) {
-                    Block entity = new Block(String.format("cube-%d-%d-%d-%d", this.id, x, y, z), Block.Type.DIRT);
-                    entity.setPosition((x + this.position.x), y, (z + this.position.y));
-                    entity.getModelMatrix().identity().translate(entity.getPosition());
-                    this.entities[x][y][z] = entity;
-                }
+    public boolean isMeshDirty() {
+        for (Section section : this.sections) {
+            if (section.isDirty()) {
+                return true;
             }
         }
+        return false;
     }
 
-    public List<Block> getBlocks() {
-        List<Block> blocks = new ArrayList<>();
-        for (Block[][] entities : this.entities) {
-            for (Block[] entity : entities) {
-                blocks.addAll(Arrays.asList(entity));
+    /**
+     * Clears the dirty flags and returns the indices of the sections that had them set.
+     */
+    public int[] takeDirtySections() {
+        int count = 0;
+        for (Section section : this.sections) {
+            if (section.isDirty()) {
+                count++;
+            }
+        }
+        int[] dirty = new int[count];
+        count = 0;
+        for (Section section : this.sections) {
+            if (section.isDirty()) {
+                section.setDirty(false);
+                dirty[count++] = section.getIndex();
             }
         }
-        return blocks;
+        return dirty;
+    }
+
+    public void markDirty(int @NotNull [] sections) {
+        for (int section : sections) {
+            this.sections[section].setDirty(true);
+        }
+    }
+
+    public ChunkMesher.MeshData[] buildMeshes(@NotNull ChunkMesher mesher, BlockAccess neighbours, int @NotNull [] sections) {
+        ChunkMesher.MeshData[] meshData = new ChunkMesher.MeshData[sections.length];
+        for (int i = 0; i < sections.length; i++) {
+            Section section = this.sections[sections[i]];
+            meshData[i] = mesher.mesh(section, this.position.x, this.position.y, neighbours);
+        }
+        return meshData;
+    }
+
+    public void uploadMeshes(@NotNull Scene scene, int @NotNull [] sections, ChunkMesher.MeshData @NotNull [] meshData) {
+        Material material;
+        if (this.model == null) {
+            material = new Material();
+            material.setTexturePath(TEXTURE_PATH);
+            material.setAtlas(true);
+            material.setAmbientColor(AMBIENT_COLOR);
+            material.setSpecularColor(AMBIENT_COLOR);
+            scene.getTextureCache().createTexture(TEXTURE_PATH);
+
+            this.model = new Model("chunk-model-" + this.id, List.of(material), new ArrayList<>());
+            scene.addModel(this.model);
+            this.entity = scene.createEntity(this.model.getId());
+        } else {
+            material = this.model.getMaterials().getFirst();
+        }
+        scene.getEntities().setPosition(this.entity, this.position.x, 0, this.position.y);
+
+        for (int i = 0; i < sections.length; i++) {
+            Section section = this.sections[sections[i]];
+            Mesh old = section.getMesh();
+            if (old != null) {
+                material.getMeshes().remove(old);
+                old.cleanup();
+                section.setMesh(null);
+            }
+
+            ChunkMesher.MeshData data = meshData[i];
+            if (data.isEmpty()) {
+                continue;
+            }
+            Mesh mesh = new Mesh(
+                    data.positions(), data.normals(), data.tangents(), data.biTangents(),
+                    data.textCoords(), data.indices(),
+                    new int[Mesh.MAX_WEIGHTS * data.positions().length / 3],
+                    new float[Mesh.MAX_WEIGHTS * data.positions().length / 3],
+                    data.atlasTiles()
+            );
+            material.getMeshes().add(mesh);
+            section.setMesh(mesh);
+        }
+    }
+
+    public enum State {
+        EMPTY,
+        GENERATING,
+        GENERATED,
+        MESHING,
+        READY
     }
 }
@@ -0,0 +1,447 @@
+package org.game3d.dev.game.scene;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * Turns the blocks of a chunk section into a single triangle mesh. Faces hidden by the block in front of them
+ * (see {@link Block#isFaceVisible(int, int)}) are dropped and coplanar faces of the same block type are merged into
+ * larger quads (greedy meshing).
+ * Every vertex carries an ambient occlusion shade from the three blocks touching its corner on the open side
+ * of the face, scaled by the sky and block light of the block the face looks into; only faces with the same
+ * shades and light are merged.
+ * A mesher keeps its scratch buffers between calls, so use one instance per thread.
+ */
+public class ChunkMesher {
+    public static final int ATLAS_TILES = 4;
+    public static final float TILE_SIZE = 1.0f / ATLAS_TILES;
+
+    private static final int AO_SHIFT = 12;
+    private static final int LIGHT_SHIFT = 20;
+    private static final int BLOCK_MASK = Block.MAX_TYPES - 1;
+    private static final float[] AO_SHADES = {0.45f, 0.65f, 0.82f, 1.0f};
+    private static final float[] LIGHT_SHADES = new float[16];
+    /**
+     * The packed corner levels of every combination of opaque blocks around the block a face looks into, indexed
+     * by one bit per block: the sides at low u, high u, low v and high v, then the corners at (low u, low v),
+     * (high u, low v), (low u, high v) and (high u, high v).
+     */
+    private static final int[] OCCLUSION = new int[256];
+
+    static {
+        for (int level = 0; level < LIGHT_SHADES.length; level++) {
+            LIGHT_SHADES[level] = 0.04f + 0.96f * (float) Math.pow(0.8, 15 - level);
+        }
+        for (int bits = 0; bits < OCCLUSION.length; bits++) {
+            boolean lowU = (bits & 1) != 0;
+            boolean highU = (bits & 2) != 0;
+            boolean lowV = (bits & 4) != 0;
+            boolean highV = (bits & 8) != 0;
+            OCCLUSION[bits] = occlusion(lowU, lowV, (bits & 16) != 0)
+                    | occlusion(highU, lowV, (bits & 32) != 0) << 2
+                    | occlusion(lowU, highV, (bits & 64) != 0) << 4
+                    | occlusion(highU, highV, (bits & 128) != 0) << 6;
+        }
+    }
+
+    private final int[] position = new int[3];
+    private final int[] dims = new int[3];
+    private final int[] levels = new int[4];
+    private int[] padded = new int[0];
+    private int[] paddedLight = new int[0];
+    private int[] mask = new int[0];
+    private int paddedX;
+    private int paddedZ;
+    private int offsetY;
+
+    private float[] positions = new float[1024];
+    private float[] normals = new float[1024];
+    private float[] tangents = new float[1024];
+    private float[] biTangents = new float[1024];
+    private float[] textCoords = new float[1024];
+    private float[] atlasTiles = new float[1024];
+    private int[] indices = new int[1024];
+    private int vertexCount;
+    private int indexCount;
+
+    /**
+     * Meshes one section. Positions are relative to ({@code originX}, 0, {@code originZ}), so every section
+     * of a chunk column can share the column's model matrix.
+     */
+    public MeshData mesh(@NotNull Section section, int originX, int originZ, @NotNull BlockAccess neighbours) {
+        BlockStorage storage = section.getStorage();
+        int originY = section.getOriginY();
+        boolean uniform = storage.isUniform();
+        if (uniform && !Block.isFaceVisible(storage.getAt(0), Block.AIR)) {
+            // Faces are only emitted for visible blocks inside the section
+            return MeshData.EMPTY;
+        }
+        boolean enclosed = this.copyBorder(storage, originX, originY, originZ, neighbours);
+        if (uniform && enclosed) {
+            return MeshData.EMPTY;
+        }
+        this.copyInterior(storage, section);
+        this.offsetY = originY;
+        this.vertexCount = 0;
+        this.indexCount = 0;
+
+        int[] x = this.position;
+        for (int d = 0; d < 3; d++) {
+            int u = (d + 1) % 3;
+            int v = (d + 2) % 3;
+            int sizeU = this.dims[u];
+            int sizeV = this.dims[v];
+            int step = this.stride(d);
+            int strideU = this.stride(u);
+            int strideV = this.stride(v);
+
+            for (x[d] = -1; x[d] < this.dims[d]; ) {
+                boolean inside = x[d] >= 0;
+                boolean nextInside = x[d] < this.dims[d] - 1;
+                x[u] = 0;
+                x[v] = 0;
+                // Walk the slice by strides instead of recomputing every padded index
+                int rowStart = this.paddedIndex(x[0], x[1], x[2]);
+                int rowEnd = rowStart + sizeU * strideU;
+                int n = 0;
+                for (int j = 0; j < sizeV; j++, rowStart += strideV, rowEnd += strideV) {
+                    for (int index = rowStart; index != rowEnd; index += strideU) {
+                        int a = this.padded[index];
+                        int b = this.padded[index + step];
+                        int face = 0;
+                        // Two different see-through blocks would both want a face here; the first one gets it
+                        if (a != b) {
+                            if (inside && Block.isFaceVisible(a, b)) {
+                                face = this.faceKey(a, index + step, strideU, strideV);
+                            } else if (nextInside && Block.isFaceVisible(b, a)) {
+                                face = -this.faceKey(b, index, strideU, strideV);
+                            }
+                        }
+                        this.mask[n++] = face;
+                    }
+                }
+                x[d]++;
+
+                n = 0;
+                for (int j = 0; j < sizeV; j++) {
+                    for (int i = 0; i < sizeU; ) {
+                        int face = this.mask[n];
+                        if (face == 0) {
+                            i++;
+                            n++;
+                            continue;
+                        }
+
+                        int width = 1;
+                        while (i + width < sizeU && this.mask[n + width] == face) {
+                            width++;
+                        }
+                        int height = 1;
+                        grow:
+                        while (j + height < sizeV) {
+                            int row = n + height * sizeU;
+                            for (int k = 0; k < width; k++) {
+                                if (this.mask[row + k] != face) {
+                                    break grow;
+                                }
+                            }
+                            height++;
+                        }
+
+                        x[u] = i;
+                        x[v] = j;
+                        this.addQuad(d, u, v, x, width, height, face);
+                        for (int h = 0; h < height; h++) {
+                            Arrays.fill(this.mask, n + h * sizeU, n + h * sizeU + width, 0);
+                        }
+                        i += width;
+                        n += width;
+                    }
+                }
+            }
+        }
+
+        return new MeshData(
+                Arrays.copyOf(this.positions, this.vertexCount * 3),
+                Arrays.copyOf(this.normals, this.vertexCount * 3),
+                Arrays.copyOf(this.tangents, this.vertexCount * 3),
+                Arrays.copyOf(this.biTangents, this.vertexCount * 3),
+                Arrays.copyOf(this.textCoords, this.vertexCount * 2),
+                Arrays.copyOf(this.atlasTiles, this.vertexCount * 4),
+                Arrays.copyOf(this.indices, this.indexCount)
+        );
+    }
+
+    /**
+     * Sizes the scratch buffers and copies the one block wide border around the storage from
+     * {@code neighbours}. Light is only copied where the border shares a face with the storage.
+     *
+     * @return whether every block sharing a face with the storage is opaque
+     */
+    private boolean copyBorder(@NotNull BlockStorage storage, int originX, int originY, int originZ,
+                               @NotNull BlockAccess neighbours) {
+        int sizeX = storage.getXSize();
+        int sizeY = storage.getYSize();
+        int sizeZ = storage.getZSize();
+        this.dims[0] = sizeX;
+        this.dims[1] = sizeY;
+        this.dims[2] = sizeZ;
+        this.paddedX = sizeX + 2;
+        this.paddedZ = sizeZ + 2;
+
+        int paddedVolume = this.paddedX * (sizeY + 2) * this.paddedZ;
+        if (this.padded.length < paddedVolume) {
+            this.padded = new int[paddedVolume];
+            this.paddedLight = new int[paddedVolume];
+        }
+        int maskSize = Math.max(sizeX * sizeY, Math.max(sizeY * sizeZ, sizeZ * sizeX));
+        if (this.mask.length < maskSize) {
+            this.mask = new int[maskSize];
+        }
+
+        boolean enclosed = true;
+        for (int y = -1; y <= sizeY; y++) {
+            boolean borderY = y < 0 || y == sizeY;
+            for (int z = -1; z <= sizeZ; z++) {
+                boolean borderZ = z < 0 || z == sizeZ;
+                for (int x = -1; x <= sizeX; x++) {
+                    boolean borderX = x < 0 || x == sizeX;
+                    if (!borderX && !borderY && !borderZ) {
+                        x = sizeX - 1;
+                        continue;
+                    }
+                    int block = neighbours.getBlockId(originX + x, originY + y, originZ + z);
+                    int index = this.paddedIndex(x, y, z);
+                    this.padded[index] = block;
+                    // Edges and corners never share a face with the storage
+                    if (!Block.isOpaque(block) && (borderX ? 1 : 0) + (borderY ? 1 : 0) + (borderZ ? 1 : 0) == 1) {
+                        enclosed = false;
+                        this.paddedLight[index] = neighbours.getLight(originX + x, originY + y, originZ + z);
+                    }
+                }
+            }
+        }
+        return enclosed;
+    }
+
+    private void copyInterior(@NotNull BlockStorage storage, @NotNull Section section) {
+        int sizeX = this.dims[0];
+        int sizeY = this.dims[1];
+        int sizeZ = this.dims[2];
+        if (section.getSkyLight().isUniform() && section.getBlockLight().isUniform()) {
+            int light = section.getPackedLight(0);
+            for (int y = 0; y < sizeY; y++) {
+                for (int z = 0; z < sizeZ; z++) {
+                    int row = this.paddedIndex(0, y, z);
+                    Arrays.fill(this.paddedLight, row, row + sizeX, light);
+                }
+            }
+        } else {
+            int lightIndex = 0;
+            for (int y = 0; y < sizeY; y++) {
+                for (int z = 0; z < sizeZ; z++) {
+                    int row = this.paddedIndex(0, y, z);
+                    for (int x = 0; x < sizeX; x++) {
+                        this.paddedLight[row + x] = section.getPackedLight(lightIndex++);
+                    }
+                }
+            }
+        }
+
+        if (storage.isUniform()) {
+            int block = storage.getAt(0);
+            for (int y = 0; y < sizeY; y++) {
+                for (int z = 0; z < sizeZ; z++) {
+                    int row = this.paddedIndex(0, y, z);
+                    Arrays.fill(this.padded, row, row + sizeX, block);
+                }
+            }
+            return;
+        }
+        int storageIndex = 0;
+        for (int y = 0; y < sizeY; y++) {
+            for (int z = 0; z < sizeZ; z++) {
+                int row = this.paddedIndex(0, y, z);
+                for (int x = 0; x < sizeX; x++) {
+                    this.padded[row + x] = storage.getAt(storageIndex++);
+                }
+            }
+        }
+    }
+
+    /**
+     * Packs the block, the occlusion level of the four face corners (3 is unoccluded) and the light of the
+     * transparent block the face looks into into a mask value. {@code open} is the padded index of that block.
+     * Only visible blocks have faces, and air is id 0 and invisible, so a face key is never 0.
+     */
+    private int faceKey(int block, int open, int strideU, int strideV) {
+        int[] padded = this.padded;
+        int bits = opaqueBit(padded[open - strideU])
+                | opaqueBit(padded[open + strideU]) << 1
+                | opaqueBit(padded[open - strideV]) << 2
+                | opaqueBit(padded[open + strideV]) << 3
+                | opaqueBit(padded[open - strideU - strideV]) << 4
+                | opaqueBit(padded[open + strideU - strideV]) << 5
+                | opaqueBit(padded[open - strideU + strideV]) << 6
+                | opaqueBit(padded[open + strideU + strideV]) << 7;
+        return (this.paddedLight[open] << LIGHT_SHIFT) | (OCCLUSION[bits] << AO_SHIFT) | block;
+    }
+
+    private static int opaqueBit(int block) {
+        return Block.isOpaque(block) ? 1 : 0;
+    }
+
+    private static int occlusion(boolean side1, boolean side2, boolean corner) {
+        if (side1 && side2) {
+            return 0;
+        }
+        return 3 - ((side1 ? 1 : 0) + (side2 ? 1 : 0) + (corner ? 1 : 0));
+    }
+
+    private void addQuad(int d, int u, int v, int @NotNull [] base, int width, int height, int face) {
+        int key = Math.abs(face);
+        int block = key & BLOCK_MASK;
+        int ao = (key >>> AO_SHIFT) & 0xFF;
+        int light = key >>> LIGHT_SHIFT;
+        float lightShade = LIGHT_SHADES[Math.max(light >>> 4, light & 0xF)];
+        boolean positive = face > 0;
+
+        int tile;
+        if (d == 1) {
+            tile = positive ? Block.getTopTile(block) : Block.getBottomTile(block);
+        } else {
+            tile = Block.getSideTile(block);
+        }
+        float tileU = (tile % ATLAS_TILES) * TILE_SIZE;
+        float tileV = (float) (tile / ATLAS_TILES) * TILE_SIZE;
+
+        this.ensureCapacity(4, 6);
+        // Everything but the corner offsets is the same for all four vertices
+        float normal = positive ? 1 : -1;
+        float normalX = d == 0 ? normal : 0;
+        float normalY = d == 1 ? normal : 0;
+        float normalZ = d == 2 ? normal : 0;
+        float tangentX = u == 0 ? 1 : 0;
+        float tangentY = u == 1 ? 1 : 0;
+        float tangentZ = u == 2 ? 1 : 0;
+        float biTangentX = v == 0 ? 1 : 0;
+        float biTangentY = v == 1 ? 1 : 0;
+        float biTangentZ = v == 2 ? 1 : 0;
+        int baseX = base[0];
+        int baseY = this.offsetY + base[1];
+        int baseZ = base[2];
+
+        float[] positions = this.positions;
+        float[] normals = this.normals;
+        float[] tangents = this.tangents;
+        float[] biTangents = this.biTangents;
+        float[] textCoords = this.textCoords;
+        float[] atlasTiles = this.atlasTiles;
+        int first = this.vertexCount;
+        int p = first * 3;
+        int t = first * 2;
+        int a = first * 4;
+        int[] levels = this.levels;
+        for (int corner = 0; corner < 4; corner++, p += 3, t += 2, a += 4) {
+            // Corners run counter-clockwise when seen from the side the face points to
+            boolean highU = (corner == 1 || corner == 2) == positive;
+            boolean highV = corner >= 2;
+            int cu = highU ? width : 0;
+            int cv = highV ? height : 0;
+            levels[corner] = (ao >>> (((highU ? 1 : 0) | (highV ? 2 : 0)) * 2)) & 3;
+
+            float px = baseX + (u == 0 ? cu : 0) + (v == 0 ? cv : 0);
+            float py = baseY + (u == 1 ? cu : 0) + (v == 1 ? cv : 0);
+            float pz = baseZ + (u == 2 ? cu : 0) + (v == 2 ? cv : 0);
+
+            positions[p] = px;
+            positions[p + 1] = py;
+            positions[p + 2] = pz;
+            normals[p] = normalX;
+            normals[p + 1] = normalY;
+            normals[p + 2] = normalZ;
+            tangents[p] = tangentX;
+            tangents[p + 1] = tangentY;
+            tangents[p + 2] = tangentZ;
+            biTangents[p] = biTangentX;
+            biTangents[p + 1] = biTangentY;
+            biTangents[p + 2] = biTangentZ;
+
+            // Texture coordinates are in block units; the shader wraps them into the atlas tile
+            if (d == 1) {
+                textCoords[t] = px;
+                textCoords[t + 1] = pz;
+            } else {
+                textCoords[t] = d == 0 ? pz : px;
+                textCoords[t + 1] = -py;
+            }
+
+            atlasTiles[a] = tileU;
+            atlasTiles[a + 1] = tileV;
+            atlasTiles[a + 2] = TILE_SIZE;
+            atlasTiles[a + 3] = AO_SHADES[levels[corner]] * lightShade;
+        }
+        this.vertexCount = first + 4;
+
+        // Split along the diagonal joining the brighter corners, otherwise the interpolated shade leans
+        // towards one side of the quad
+        int start = levels[0] + levels[2] >= levels[1] + levels[3] ? 0 : 1;
+        this.indices[this.indexCount++] = first + start;
+        this.indices[this.indexCount++] = first + start + 1;
+        this.indices[this.indexCount++] = first + start + 2;
+        this.indices[this.indexCount++] = first + start + 2;
+        this.indices[this.indexCount++] = first + (start + 3) % 4;
+        this.indices[this.indexCount++] = first + start;
+    }
+
+    private void ensureCapacity(int vertices, int indices) {
+        int requiredVertices = this.vertexCount + vertices;
+        if (requiredVertices * 4 > this.atlasTiles.length) {
+            int capacity = Math.max(requiredVertices, this.atlasTiles.length / 2);
+            this.positions = Arrays.copyOf(this.positions, capacity * 3);
+            this.normals = Arrays.copyOf(this.normals, capacity * 3);
+            this.tangents = Arrays.copyOf(this.tangents, capacity * 3);
+            this.biTangents = Arrays.copyOf(this.biTangents, capacity * 3);
+            this.textCoords = Arrays.copyOf(this.textCoords, capacity * 2);
+            this.atlasTiles = Arrays.copyOf(this.atlasTiles, capacity * 4);
+        }
+        if (this.indexCount + indices > this.indices.length) {
+            this.indices = Arrays.copyOf(this.indices, Math.max(this.indexCount + indices, this.indices.length * 2));
+        }
+    }
+
+    private int paddedIndex(int x, int y, int z) {
+        return ((y + 1) * this.paddedZ + (z + 1)) * this.paddedX + (x + 1);
+    }
+
+    private int stride(int axis) {
+        return switch (axis) {
+            case 0 -> 1;
+            case 1 -> this.paddedX * this.paddedZ;
+            default -> this.paddedX;
+        };
+    }
+
+    public record MeshData(
+            float[] positions,
+            float[] normals,
+            float[] tangents,
+            float[] biTangents,
+            float[] textCoords,
+            float[] atlasTiles,
+            int[] indices
+    ) {
+        public static final MeshData EMPTY = new MeshData(
+                new float[0], new float[0], new float[0], new float[0], new float[0], new float[0], new int[0]
+        );
+
+        public int getQuadCount() {
+            return this.indices.length / 6;
+        }
+
+        public boolean isEmpty() {
+            return this.indices.length == 0;
+        }
+    }
+}
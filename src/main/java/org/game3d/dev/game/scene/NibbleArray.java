@@ -0,0 +1,48 @@
+package org.game3d.dev.game.scene;
+
+import java.util.Arrays;
+
+/**
+ * 4-bit values packed two per byte. Until a value differs from the fill value no array is allocated.
+ */
+public class NibbleArray {
+    private final int size;
+    private byte[] data;
+    private int uniform;
+
+    public NibbleArray(int size, int value) {
+        this.size = size;
+        this.uniform = value;
+    }
+
+    public int get(int index) {
+        byte[] data = this.data;
+        if (data == null) {
+            return this.uniform;
+        }
+        return (data[index >> 1] >> ((index & 1) << 2)) & 0xF;
+    }
+
+    public void set(int index, int value) {
+        if (this.data == null) {
+            if (value == this.uniform) {
+                return;
+            }
+            byte[] data = new byte[(this.size + 1) >> 1];
+            Arrays.fill(data, (byte) (this.uniform | this.uniform << 4));
+            this.data = data;
+        }
+        int shift = (index & 1) << 2;
+        int i = index >> 1;
+        this.data[i] = (byte) ((this.data[i] & ~(0xF << shift)) | (value & 0xF) << shift);
+    }
+
+    public void fill(int value) {
+        this.data = null;
+        this.uniform = value;
+    }
+
+    public boolean isUniform() {
+        return this.data == null;
+    }
+}
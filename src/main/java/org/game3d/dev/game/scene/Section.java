@@ -0,0 +1,72 @@
+package org.game3d.dev.game.scene;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.game3d.dev.engine.graph.Mesh;
+
+/**
+ * A {@value #SIZE}^3 slice of a chunk column with its own block storage, light levels and mesh.
+ * While a worker may be reading the storage the section is marked shared, and every edit replaces the storage
+ * with an edited copy instead of changing it under the reader. The section stays shared until the chunk is
+ * unpinned, since the reader may have fetched any of the copies made in between.
+ */
+@Getter
+public class Section {
+    public static final int SIZE = 16;
+    public static final int SHIFT = 4;
+    public static final int MASK = SIZE - 1;
+    public static final int VOLUME = SIZE * SIZE * SIZE;
+
+    private final int index;
+    private volatile BlockStorage storage;
+    private final NibbleArray skyLight;
+    private final NibbleArray blockLight;
+    @Setter private boolean shared;
+    @Setter private boolean dirty;
+    @Setter private Mesh mesh;
+
+    public Section(int index) {
+        this.index = index;
+        this.storage = new BlockStorage(SIZE, SIZE, SIZE, Block.AIR);
+        this.skyLight = new NibbleArray(VOLUME, 0);
+        this.blockLight = new NibbleArray(VOLUME, 0);
+    }
+
+    public int getOriginY() {
+        return this.index << SHIFT;
+    }
+
+    public static int index(int x, int y, int z) {
+        return (y << SHIFT | z) << SHIFT | x;
+    }
+
+    public NibbleArray getLight(boolean sky) {
+        return sky ? this.skyLight : this.blockLight;
+    }
+
+    /**
+     * @return sky light in the high and block light in the low four bits
+     */
+    public int getPackedLight(int index) {
+        return this.skyLight.get(index) << 4 | this.blockLight.get(index);
+    }
+
+    public boolean isEmpty() {
+        BlockStorage storage = this.storage;
+        return storage.isUniform() && storage.getAt(0) == Block.AIR;
+    }
+
+    public int setBlock(int x, int y, int z, int blockId) {
+        if (this.shared) {
+            int old = this.storage.get(x, y, z);
+            if (old == blockId) {
+                return old;
+            }
+            BlockStorage copy = this.storage.copy();
+            copy.set(x, y, z, blockId);
+            this.storage = copy;
+            return old;
+        }
+        return this.storage.set(x, y, z, blockId);
+    }
+}
@@ -0,0 +1,51 @@
+package org.game3d.dev.game.world;
+
+import org.game3d.dev.game.scene.Block;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Tick handlers of the built-in block types.
+ */
+public final class BlockBehaviours {
+    private static final int GRASS_MIN_LIGHT = 9;
+
+    private BlockBehaviours() {
+    }
+
+    public static void register(@NotNull World world) {
+        world.setTickHandler(Block.GRASS, BlockBehaviours::tickGrass);
+        world.setTickHandler(Block.SAND, BlockBehaviours::tickFalling);
+    }
+
+    /**
+     * Grass dies when covered and otherwise spreads to a random dirt block nearby that is lit and uncovered.
+     */
+    private static void tickGrass(@NotNull World world, int x, int y, int z, int block) {
+        if (Block.isOpaque(world.getBlockId(x, y + 1, z))) {
+            world.setBlock(x, y, z, Block.DIRT);
+            return;
+        }
+        int targetX = x + world.nextRandom(3) - 1;
+        int targetY = y + world.nextRandom(5) - 3;
+        int targetZ = z + world.nextRandom(3) - 1;
+        if (world.getBlockId(targetX, targetY, targetZ) != Block.DIRT
+                || Block.isOpaque(world.getBlockId(targetX, targetY + 1, targetZ))) {
+            return;
+        }
+        int light = world.getLight(targetX, targetY + 1, targetZ);
+        if (Math.max(light >> 4, light & 0xF) >= GRASS_MIN_LIGHT) {
+            world.setBlock(targetX, targetY, targetZ, block);
+        }
+    }
+
+    /**
+     * Falls one block down when there is nothing underneath; the move schedules the next fall.
+     */
+    private static void tickFalling(@NotNull World world, int x, int y, int z, int block) {
+        if (y == 0 || world.getBlockId(x, y - 1, z) != Block.AIR) {
+            return;
+        }
+        world.setBlock(x, y, z, Block.AIR);
+        world.setBlock(x, y - 1, z, block);
+    }
+}
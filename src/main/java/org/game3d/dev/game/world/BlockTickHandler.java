@@ -0,0 +1,11 @@
+package org.game3d.dev.game.world;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Behaviour of a block type on a random or scheduled tick. Runs on the update thread and may change the world.
+ */
+@FunctionalInterface
+public interface BlockTickHandler {
+    void tick(@NotNull World world, int x, int y, int z, int block);
+}
@@ -0,0 +1,277 @@
+package org.game3d.dev.game.world;
+
+import lombok.Getter;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * Block ticks scheduled for a future world tick, kept in a hierarchical timing wheel: {@value #LEVELS} wheels of
+ * {@value #WHEEL_SIZE} slots, where each slot of wheel {@code n} spans {@code WHEEL_SIZE^n} ticks. A tick is
+ * filed in the wheel of the highest digit in which its due tick differs from the current one, and moves down one
+ * wheel whenever the current tick enters its slot. Scheduling and expiring are O(1) and only touch the slots that
+ * are due, however many ticks are waiting.
+ * <p>
+ * Expired ticks are run in order of expiry, at most {@code budget} per world tick; the rest stay ready and run
+ * first on the next world tick. A position has at most one pending tick.
+ */
+public class BlockTicks {
+    private static final int WHEEL_BITS = 6;
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    private static final int LEVELS = 4;
+    public static final long MAX_DELAY = (1L << (WHEEL_BITS * LEVELS)) - 1;
+    private static final int NONE = -1;
+
+    private final int budget;
+    private final int[] slotHeads;
+    private final int[] slotTails;
+    @Getter private long currentTick;
+
+    // Entry pool; entries are linked into a wheel slot or the ready queue through next
+    private long[] positions;
+    private long[] due;
+    private int[] next;
+    private int freeList;
+    private int allocated;
+    @Getter private int pendingCount;
+
+    private int readyHead;
+    private int readyTail;
+    @Getter private int readyCount;
+    @Getter private int lastRunCount;
+
+    // Pending positions, to drop duplicates: open addressing from position to entry
+    private long[] tableKeys;
+    private int[] tableEntries;
+    private int tableMask;
+
+    public BlockTicks(int budget) {
+        this.budget = budget;
+        this.slotHeads = new int[LEVELS * WHEEL_SIZE];
+        this.slotTails = new int[LEVELS * WHEEL_SIZE];
+        Arrays.fill(this.slotHeads, NONE);
+        this.positions = new long[256];
+        this.due = new long[256];
+        this.next = new int[256];
+        this.freeList = NONE;
+        this.readyHead = NONE;
+        this.readyTail = NONE;
+        this.tableKeys = new long[512];
+        this.tableEntries = new int[512];
+        Arrays.fill(this.tableEntries, NONE);
+        this.tableMask = 511;
+    }
+
+    public static long pack(int x, int y, int z) {
+        return ((long) (x & 0x3FFFFFF) << 38) | ((long) (z & 0x3FFFFFF) << 12) | (y & 0xFFF);
+    }
+
+    public static int unpackX(long position) {
+        return (int) (position >> 38);
+    }
+
+    public static int unpackY(long position) {
+        return (int) (position & 0xFFF);
+    }
+
+    public static int unpackZ(long position) {
+        return (int) (position << 26 >> 38);
+    }
+
+    /**
+     * Schedules a tick {@code delay} world ticks from now, unless the position already has one pending.
+     *
+     * @return whether the tick was scheduled
+     */
+    public boolean schedule(int x, int y, int z, long delay) {
+        if (delay < 1 || delay > MAX_DELAY) {
+            throw new IllegalArgumentException(String.format("Tick delay %d is not within 1..%d", delay, MAX_DELAY));
+        }
+        long position = pack(x, y, z);
+        int slot = this.find(position);
+        if (this.tableEntries[slot] != NONE) {
+            return false;
+        }
+        int entry = this.allocate();
+        this.positions[entry] = position;
+        this.due[entry] = this.currentTick + delay;
+        this.tableKeys[slot] = position;
+        this.tableEntries[slot] = entry;
+        this.pendingCount++;
+        if (this.pendingCount * 2 > this.tableEntries.length) {
+            this.growTable();
+        }
+        this.file(entry);
+        return true;
+    }
+
+    public boolean isScheduled(int x, int y, int z) {
+        return this.tableEntries[this.find(pack(x, y, z))] != NONE;
+    }
+
+    /**
+     * Advances to the next world tick and runs the ticks that are due, up to the budget. Ticks due on the same
+     * world tick run in the order they were scheduled.
+     */
+    public void tick(@NotNull Consumer consumer) {
+        this.currentTick++;
+        // Higher wheels first, so their ticks can cascade all the way down in one go
+        for (int level = LEVELS - 1; level > 0; level--) {
+            int shift = level * WHEEL_BITS;
+            if ((this.currentTick & ((1L << shift) - 1)) == 0) {
+                int index = level * WHEEL_SIZE + (int) ((this.currentTick >>> shift) & (WHEEL_SIZE - 1));
+                int entry = this.slotHeads[index];
+                this.slotHeads[index] = NONE;
+                while (entry != NONE) {
+                    int following = this.next[entry];
+                    this.file(entry);
+                    entry = following;
+                }
+            }
+        }
+        int index = (int) (this.currentTick & (WHEEL_SIZE - 1));
+        int entry = this.slotHeads[index];
+        this.slotHeads[index] = NONE;
+        if (entry != NONE) {
+            // The whole slot is due: splice it onto the ready queue
+            if (this.readyTail == NONE) {
+                this.readyHead = entry;
+            } else {
+                this.next[this.readyTail] = entry;
+            }
+            this.readyTail = this.slotTails[index];
+            while (entry != NONE) {
+                this.readyCount++;
+                entry = this.next[entry];
+            }
+        }
+
+        int run = 0;
+        while (this.readyHead != NONE && run < this.budget) {
+            int ready = this.readyHead;
+            this.readyHead = this.next[ready];
+            if (this.readyHead == NONE) {
+                this.readyTail = NONE;
+            }
+            this.readyCount--;
+            long position = this.positions[ready];
+            this.remove(position);
+            this.release(ready);
+            consumer.tick(unpackX(position), unpackY(position), unpackZ(position));
+            run++;
+        }
+        this.lastRunCount = run;
+    }
+
+    public void clear() {
+        Arrays.fill(this.slotHeads, NONE);
+        Arrays.fill(this.tableEntries, NONE);
+        this.readyHead = NONE;
+        this.readyTail = NONE;
+        this.readyCount = 0;
+        this.pendingCount = 0;
+        this.allocated = 0;
+        this.freeList = NONE;
+    }
+
+    private void file(int entry) {
+        long due = this.due[entry];
+        if (due <= this.currentTick) {
+            this.enqueueReady(entry);
+            return;
+        }
+        // A tick crossing a top wheel revolution lands in a slot the top wheel reaches again before it is due
+        int level = Math.min((63 - Long.numberOfLeadingZeros(due ^ this.currentTick)) / WHEEL_BITS, LEVELS - 1);
+        int index = level * WHEEL_SIZE + (int) ((due >>> (level * WHEEL_BITS)) & (WHEEL_SIZE - 1));
+        this.next[entry] = NONE;
+        if (this.slotHeads[index] == NONE) {
+            this.slotHeads[index] = entry;
+        } else {
+            this.next[this.slotTails[index]] = entry;
+        }
+        this.slotTails[index] = entry;
+    }
+
+    private void enqueueReady(int entry) {
+        this.next[entry] = NONE;
+        if (this.readyTail == NONE) {
+            this.readyHead = entry;
+        } else {
+            this.next[this.readyTail] = entry;
+        }
+        this.readyTail = entry;
+        this.readyCount++;
+    }
+
+    private int allocate() {
+        if (this.freeList != NONE) {
+            int entry = this.freeList;
+            this.freeList = this.next[entry];
+            return entry;
+        }
+        if (this.allocated == this.positions.length) {
+            int capacity = this.allocated * 2;
+            this.positions = Arrays.copyOf(this.positions, capacity);
+            this.due = Arrays.copyOf(this.due, capacity);
+            this.next = Arrays.copyOf(this.next, capacity);
+        }
+        return this.allocated++;
+    }
+
+    private void release(int entry) {
+        this.next[entry] = this.freeList;
+        this.freeList = entry;
+        this.pendingCount--;
+    }
+
+    /**
+     * @return the table slot holding {@code position}, or the empty slot where it would go
+     */
+    private int find(long position) {
+        int i = ChunkMap.hash(position) & this.tableMask;
+        while (this.tableEntries[i] != NONE && this.tableKeys[i] != position) {
+            i = (i + 1) & this.tableMask;
+        }
+        return i;
+    }
+
+    private void remove(long position) {
+        int gap = this.find(position);
+        int i = gap;
+        while (true) {
+            i = (i + 1) & this.tableMask;
+            int entry = this.tableEntries[i];
+            if (entry == NONE) {
+                break;
+            }
+            int home = ChunkMap.hash(this.tableKeys[i]) & this.tableMask;
+            if (((i - home) & this.tableMask) >= ((i - gap) & this.tableMask)) {
+                this.tableKeys[gap] = this.tableKeys[i];
+                this.tableEntries[gap] = entry;
+                gap = i;
+            }
+        }
+        this.tableEntries[gap] = NONE;
+    }
+
+    private void growTable() {
+        long[] oldKeys = this.tableKeys;
+        int[] oldEntries = this.tableEntries;
+        this.tableKeys = new long[oldKeys.length * 2];
+        this.tableEntries = new int[oldEntries.length * 2];
+        Arrays.fill(this.tableEntries, NONE);
+        this.tableMask = this.tableKeys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldEntries[i] != NONE) {
+                int slot = this.find(oldKeys[i]);
+                this.tableKeys[slot] = oldKeys[i];
+                this.tableEntries[slot] = oldEntries[i];
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface Consumer {
+        void tick(int x, int y, int z);
+    }
+}
@@ -0,0 +1,152 @@
+package org.game3d.dev.game.world;
+
+import org.game3d.dev.game.scene.Chunk;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * Chunks by chunk coordinate, with both coordinates packed into one {@code long} key. Open addressing with
+ * linear probing over plain arrays, so lookups neither box keys nor allocate.
+ */
+public class ChunkMap {
+    private static final float MAX_LOAD = 0.5f;
+
+    private long[] keys;
+    private Chunk[] values;
+    private int mask;
+    private int size;
+
+    public ChunkMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, (int) Math.ceil(expectedSize / MAX_LOAD)) - 1) << 1;
+        this.keys = new long[capacity];
+        this.values = new Chunk[capacity];
+        this.mask = capacity - 1;
+    }
+
+    public static long key(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+
+    public static int keyX(long key) {
+        return (int) (key >> 32);
+    }
+
+    public static int keyZ(long key) {
+        return (int) key;
+    }
+
+    public @Nullable Chunk get(int chunkX, int chunkZ) {
+        return this.get(key(chunkX, chunkZ));
+    }
+
+    public @Nullable Chunk get(long key) {
+        for (int i = hash(key) & this.mask; ; i = (i + 1) & this.mask) {
+            Chunk value = this.values[i];
+            if (value == null || this.keys[i] == key) {
+                return value;
+            }
+        }
+    }
+
+    public @Nullable Chunk put(long key, @NotNull Chunk chunk) {
+        int i = hash(key) & this.mask;
+        while (this.values[i] != null) {
+            if (this.keys[i] == key) {
+                Chunk old = this.values[i];
+                this.values[i] = chunk;
+                return old;
+            }
+            i = (i + 1) & this.mask;
+        }
+        this.keys[i] = key;
+        this.values[i] = chunk;
+        if (++this.size > this.keys.length * MAX_LOAD) {
+            this.rehash(this.keys.length << 1);
+        }
+        return null;
+    }
+
+    public @Nullable Chunk remove(long key) {
+        int i = hash(key) & this.mask;
+        while (this.values[i] != null) {
+            if (this.keys[i] == key) {
+                Chunk old = this.values[i];
+                this.shiftBack(i);
+                this.size--;
+                return old;
+            }
+            i = (i + 1) & this.mask;
+        }
+        return null;
+    }
+
+    /**
+     * Removes the entry for {@code key} only if it still maps to {@code chunk}.
+     */
+    public boolean remove(long key, @NotNull Chunk chunk) {
+        if (this.get(key) != chunk) {
+            return false;
+        }
+        this.remove(key);
+        return true;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public void clear() {
+        Arrays.fill(this.values, null);
+        this.size = 0;
+    }
+
+    /**
+     * Closes the gap left at {@code gap} by moving later entries of the probe sequence back, so lookups
+     * never need tombstones.
+     */
+    private void shiftBack(int gap) {
+        int i = gap;
+        while (true) {
+            i = (i + 1) & this.mask;
+            Chunk value = this.values[i];
+            if (value == null) {
+                break;
+            }
+            int home = hash(this.keys[i]) & this.mask;
+            // Move the entry only if its home slot is not cyclically within (gap, i]
+            if (((i - home) & this.mask) >= ((i - gap) & this.mask)) {
+                this.keys[gap] = this.keys[i];
+                this.values[gap] = value;
+                gap = i;
+            }
+        }
+        this.values[gap] = null;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = this.keys;
+        Chunk[] oldValues = this.values;
+        this.keys = new long[capacity];
+        this.values = new Chunk[capacity];
+        this.mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] == null) {
+                continue;
+            }
+            int j = hash(oldKeys[i]) & this.mask;
+            while (this.values[j] != null) {
+                j = (j + 1) & this.mask;
+            }
+            this.keys[j] = oldKeys[i];
+            this.values[j] = oldValues[i];
+        }
+    }
+
+    static int hash(long key) {
+        key = (key ^ (key >>> 33)) * 0xFF51AFD7ED558CCDL;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+}
@@ -0,0 +1,202 @@
+package org.game3d.dev.game.world;
+
+import lombok.Getter;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Runs chunk work (generation, lighting, meshing) on a pool of worker threads, nearest chunks first.
+ * Results are handed back through a queue that the GL thread drains with {@link #processUploads(long)}.
+ * Every job passes through that queue exactly once, whether it ran, failed or was cancelled, so its release
+ * callback always runs on the GL thread.
+ */
+public class ChunkScheduler {
+    private final PriorityBlockingQueue<Job<?>> pending;
+    private final ConcurrentLinkedQueue<Job<?>> completed;
+    private final List<Thread> workers;
+    private final AtomicLong sequence;
+    private volatile boolean running;
+    @Getter private int centerX;
+    @Getter private int centerZ;
+
+    public ChunkScheduler(int workerCount) {
+        this.pending = new PriorityBlockingQueue<>();
+        this.completed = new ConcurrentLinkedQueue<>();
+        this.workers = new ArrayList<>();
+        this.sequence = new AtomicLong();
+        this.running = true;
+
+        ThreadFactory threadFactory = Thread.ofPlatform().daemon().name("chunk-worker-", 0).factory();
+        for (int i = 0; i < workerCount; i++) {
+            Thread worker = threadFactory.newThread(this::work);
+            worker.setPriority(Thread.NORM_PRIORITY - 1);
+            this.workers.add(worker);
+            worker.start();
+        }
+    }
+
+    public <T> Job<T> submit(int chunkX, int chunkZ, Supplier<T> task, Consumer<T> upload) {
+        return this.submit(chunkX, chunkZ, task, upload, null);
+    }
+
+    public <T> Job<T> submit(int chunkX, int chunkZ, Supplier<T> task, Consumer<T> upload, Runnable release) {
+        Job<T> job = new Job<>(chunkX, chunkZ, this.sequence.getAndIncrement(), task, upload, release);
+        job.priority = this.distance(chunkX, chunkZ);
+        this.pending.add(job);
+        return job;
+    }
+
+    public void recenter(int chunkX, int chunkZ, int radius) {
+        this.centerX = chunkX;
+        this.centerZ = chunkZ;
+
+        List<Job<?>> jobs = new ArrayList<>(this.pending.size());
+        this.pending.drainTo(jobs);
+        for (Job<?> job : jobs) {
+            if (Math.abs(job.chunkX - chunkX) > radius || Math.abs(job.chunkZ - chunkZ) > radius) {
+                job.cancel();
+                this.completed.add(job);
+                continue;
+            }
+            job.priority = this.distance(job.chunkX, job.chunkZ);
+            this.pending.add(job);
+        }
+    }
+
+    public int processUploads(long budgetNanos) {
+        long deadline = System.nanoTime() + budgetNanos;
+        int uploads = 0;
+        Job<?> job;
+        while ((job = this.completed.poll()) != null) {
+            try {
+                if (!job.isCancelled()) {
+                    job.upload();
+                    uploads++;
+                }
+            } finally {
+                job.release();
+            }
+            if (System.nanoTime() >= deadline) {
+                break;
+            }
+        }
+        return uploads;
+    }
+
+    public int getPendingCount() {
+        return this.pending.size();
+    }
+
+    public int getCompletedCount() {
+        return this.completed.size();
+    }
+
+    /**
+     * Stops the workers and waits for the jobs they are running to finish, so nothing writes to a chunk after
+     * this returns.
+     */
+    public void cleanup() {
+        this.running = false;
+        this.pending.forEach(Job::cancel);
+        this.pending.clear();
+        this.workers.forEach(Thread::interrupt);
+        for (Thread worker : this.workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        this.completed.clear();
+    }
+
+    private int distance(int chunkX, int chunkZ) {
+        int dx = chunkX - this.centerX;
+        int dz = chunkZ - this.centerZ;
+        return dx * dx + dz * dz;
+    }
+
+    private void work() {
+        while (this.running) {
+            Job<?> job;
+            try {
+                job = this.pending.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (!job.isCancelled()) {
+                job.run();
+            }
+            this.completed.add(job);
+        }
+    }
+
+    public static class Job<T> implements Comparable<Job<?>> {
+        @Getter private final int chunkX;
+        @Getter private final int chunkZ;
+        private final long sequence;
+        private final Supplier<T> task;
+        private final Consumer<T> upload;
+        private final Runnable release;
+        private volatile boolean cancelled;
+        private int priority;
+        private T result;
+        private Throwable error;
+
+        private Job(int chunkX, int chunkZ, long sequence, Supplier<T> task, Consumer<T> upload, Runnable release) {
+            this.chunkX = chunkX;
+            this.chunkZ = chunkZ;
+            this.sequence = sequence;
+            this.task = task;
+            this.upload = upload;
+            this.release = release;
+        }
+
+        public void cancel() {
+            this.cancelled = true;
+        }
+
+        public boolean isCancelled() {
+            return this.cancelled;
+        }
+
+        private void run() {
+            try {
+                this.result = this.task.get();
+            } catch (Throwable e) {
+                // Errors too: a worker that dies here would never hand the job back, and its chunks stay pinned
+                this.error = e;
+            }
+        }
+
+        private void upload() {
+            if (this.error != null) {
+                throw new RuntimeException(
+                        String.format("Chunk job at [%d, %d] failed", this.chunkX, this.chunkZ), this.error
+                );
+            }
+            this.upload.accept(this.result);
+        }
+
+        private void release() {
+            if (this.release != null) {
+                this.release.run();
+            }
+        }
+
+        @Override
+        public int compareTo(@NotNull Job<?> other) {
+            int compare = Integer.compare(this.priority, other.priority);
+            return compare != 0 ? compare : Long.compare(this.sequence, other.sequence);
+        }
+    }
+}
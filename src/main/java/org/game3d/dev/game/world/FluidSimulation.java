@@ -0,0 +1,365 @@
+package org.game3d.dev.game.world;
+
+import lombok.Getter;
+import org.game3d.dev.game.scene.Block;
+import org.game3d.dev.game.scene.Chunk;
+import org.game3d.dev.game.scene.Section;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.IntPredicate;
+
+/**
+ * Flowing water and lava as a cellular automaton on the block grid. The next state of a cell only depends on the
+ * cells around it: fluid falls into the cell from above at the highest flowing level, and flows in from the side
+ * one level (lava: two levels) lower than the neighbour it comes from, as long as that neighbour rests on
+ * something. Flowing fluid that nothing feeds dries up; sources never change, except that lava touching water
+ * turns to stone.
+ * <p>
+ * Only active cells are simulated: the cells around a block that changed since the last step. Active cells are
+ * grouped by section; a step first works out the next state of every active cell from the current blocks,
+ * writing changes to the section's own buffer, so sections can be simulated in parallel, and then applies all
+ * changes through {@link World#setBlock(int, int, int, int)}, which re-meshes the sections they touch and marks
+ * the cells around them active for the next step.
+ * <p>
+ * Cells in chunks that are not loaded wait until their chunk is, as long as it is within range; a chunk that is
+ * loaded wakes its own fluid and the fluid next to it, which saw its blocks as bedrock until then.
+ */
+public class FluidSimulation {
+    /**
+     * World ticks between two steps.
+     */
+    public static final int STEP_INTERVAL = 5;
+    private static final int PARALLEL_REGIONS = 8;
+    private static final int[] DECAY = {0, 1, 2};
+    // A change holds the index of the cell within its section in the high bits and the new block in the low bits
+    private static final int CHANGE_SHIFT = 12;
+    private static final int CHANGE_BLOCK_MASK = Block.MAX_TYPES - 1;
+    private static final IntPredicate FLUID = block -> Block.getFluid(block) != Block.FLUID_NONE;
+
+    private final int height;
+    private final LightEngine.ChunkSource chunks;
+    private final ChunkRange range;
+    private final BlockChanger blocks;
+    private Map<Long, Region> active;
+    private Map<Long, Region> stepping;
+    private final ArrayDeque<Region> unused;
+    private Region lastMarked;
+    private long ticks;
+    @Getter private int lastActiveCount;
+    @Getter private int lastChangedCount;
+
+    public FluidSimulation(int height, @NotNull LightEngine.ChunkSource chunks, @NotNull ChunkRange range,
+                           @NotNull BlockChanger blocks) {
+        this.height = height;
+        this.chunks = chunks;
+        this.range = range;
+        this.blocks = blocks;
+        this.active = new HashMap<>();
+        this.stepping = new HashMap<>();
+        this.unused = new ArrayDeque<>();
+    }
+
+    /**
+     * Marks the cells whose next state may depend on the block at the given position: the block itself, the six
+     * blocks touching it and the four blocks diagonally above it, which check whether their side neighbours rest
+     * on something.
+     */
+    public void markActive(int x, int y, int z) {
+        this.mark(x, y, z);
+        this.mark(x - 1, y, z);
+        this.mark(x + 1, y, z);
+        this.mark(x, y - 1, z);
+        this.mark(x, y + 1, z);
+        this.mark(x, y, z - 1);
+        this.mark(x, y, z + 1);
+        this.mark(x - 1, y + 1, z);
+        this.mark(x + 1, y + 1, z);
+        this.mark(x, y + 1, z - 1);
+        this.mark(x, y + 1, z + 1);
+    }
+
+    /**
+     * Marks the fluid of a chunk that was just loaded active, and the fluid in the border columns of the loaded
+     * chunks facing it. Only sections whose palette holds a fluid are looked at.
+     */
+    public void activate(@NotNull Chunk chunk) {
+        this.markFluid(chunk, 0, Chunk.SIZE, 0, Chunk.SIZE);
+        int chunkX = chunk.getChunkX();
+        int chunkZ = chunk.getChunkZ();
+        this.markFluid(this.loadedChunk(chunkX - 1, chunkZ), Chunk.SIZE - 1, Chunk.SIZE, 0, Chunk.SIZE);
+        this.markFluid(this.loadedChunk(chunkX + 1, chunkZ), 0, 1, 0, Chunk.SIZE);
+        this.markFluid(this.loadedChunk(chunkX, chunkZ - 1), 0, Chunk.SIZE, Chunk.SIZE - 1, Chunk.SIZE);
+        this.markFluid(this.loadedChunk(chunkX, chunkZ + 1), 0, Chunk.SIZE, 0, 1);
+    }
+
+    public void tick() {
+        if (++this.ticks % STEP_INTERVAL != 0) {
+            return;
+        }
+        Map<Long, Region> regions = this.active;
+        this.active = this.stepping;
+        this.stepping = regions;
+        this.lastMarked = null;
+
+        int cells = 0;
+        for (Iterator<Map.Entry<Long, Region>> it = regions.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Long, Region> entry = it.next();
+            Region region = entry.getValue();
+            if (this.loadedChunk(region.chunkX, region.chunkZ) != null) {
+                cells += region.cellCount;
+                continue;
+            }
+            // Nothing was marked since the swap, so the region cannot be in the new map yet
+            it.remove();
+            if (this.range.isInRange(region.chunkX, region.chunkZ)) {
+                this.active.put(entry.getKey(), region);
+            } else {
+                region.clear();
+                this.unused.add(region);
+            }
+        }
+        if (regions.size() >= PARALLEL_REGIONS) {
+            regions.values().parallelStream().forEach(this::simulate);
+        } else {
+            regions.values().forEach(this::simulate);
+        }
+
+        int changed = 0;
+        for (Region region : regions.values()) {
+            int originX = region.chunkX << Section.SHIFT;
+            int originY = region.sectionY << Section.SHIFT;
+            int originZ = region.chunkZ << Section.SHIFT;
+            for (int i = 0; i < region.changeCount; i++) {
+                int change = region.changes[i];
+                int index = change >>> CHANGE_SHIFT;
+                this.blocks.setBlock(
+                        originX + (index & Section.MASK),
+                        originY + (index >> (Section.SHIFT * 2)),
+                        originZ + ((index >> Section.SHIFT) & Section.MASK),
+                        change & CHANGE_BLOCK_MASK
+                );
+            }
+            changed += region.changeCount;
+            region.clear();
+            this.unused.add(region);
+        }
+        regions.clear();
+        this.lastActiveCount = cells;
+        this.lastChangedCount = changed;
+    }
+
+    private void mark(int x, int y, int z) {
+        if (y < 0 || y >= this.height) {
+            return;
+        }
+        int chunkX = x >> Section.SHIFT;
+        int sectionY = y >> Section.SHIFT;
+        int chunkZ = z >> Section.SHIFT;
+        Region region = this.lastMarked;
+        if (region == null || region.chunkX != chunkX || region.sectionY != sectionY || region.chunkZ != chunkZ) {
+            long key = BlockTicks.pack(chunkX, sectionY, chunkZ);
+            region = this.active.get(key);
+            if (region == null) {
+                region = this.unused.isEmpty() ? new Region() : this.unused.poll();
+                region.chunkX = chunkX;
+                region.sectionY = sectionY;
+                region.chunkZ = chunkZ;
+                this.active.put(key, region);
+            }
+            this.lastMarked = region;
+        }
+        region.add(Section.index(x & Section.MASK, y & Section.MASK, z & Section.MASK));
+    }
+
+    /**
+     * Marks the fluid blocks of the given columns of a chunk active.
+     */
+    private void markFluid(@Nullable Chunk chunk, int minX, int maxX, int minZ, int maxZ) {
+        if (chunk == null) {
+            return;
+        }
+        int originX = chunk.getPosition().x;
+        int originZ = chunk.getPosition().y;
+        for (int i = 0; i < this.height >> Section.SHIFT; i++) {
+            Section section = chunk.getSection(i);
+            if (section.isEmpty() || !section.getStorage().anyMatch(FLUID)) {
+                continue;
+            }
+            for (int y = 0; y < Section.SIZE; y++) {
+                for (int z = minZ; z < maxZ; z++) {
+                    for (int x = minX; x < maxX; x++) {
+                        if (FLUID.test(section.getStorage().getAt(Section.index(x, y, z)))) {
+                            this.markActive(originX + x, section.getOriginY() + y, originZ + z);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Works out the next state of the active cells of one region, whose chunk is loaded. Only reads blocks, so
+     * regions can be simulated at the same time.
+     */
+    private void simulate(@NotNull Region region) {
+        Chunk chunk = Objects.requireNonNull(this.loadedChunk(region.chunkX, region.chunkZ));
+        int originX = region.chunkX << Section.SHIFT;
+        int originY = region.sectionY << Section.SHIFT;
+        int originZ = region.chunkZ << Section.SHIFT;
+        for (int i = 0; i < region.cellCount; i++) {
+            int index = region.cells[i];
+            int x = originX + (index & Section.MASK);
+            int y = originY + (index >> (Section.SHIFT * 2));
+            int z = originZ + ((index >> Section.SHIFT) & Section.MASK);
+            int block = chunk.getBlockId(x & Section.MASK, y, z & Section.MASK);
+            int next = this.nextBlock(chunk, block, x, y, z);
+            if (next != block) {
+                region.addChange(index << CHANGE_SHIFT | next);
+            }
+        }
+    }
+
+    private int nextBlock(@NotNull Chunk chunk, int block, int x, int y, int z) {
+        int fluid = Block.getFluid(block);
+        if (fluid == Block.FLUID_NONE && block != Block.AIR) {
+            return block;
+        }
+        if (fluid == Block.FLUID_LAVA && this.touchesFluid(chunk, x, y, z, Block.FLUID_WATER)) {
+            return Block.STONE;
+        }
+        if (Block.getFluidLevel(block) == Block.FLUID_SOURCE) {
+            return block;
+        }
+
+        int nextFluid = Block.FLUID_NONE;
+        int nextLevel = 0;
+        int above = this.blockAt(chunk, x, y + 1, z);
+        if (Block.getFluid(above) != Block.FLUID_NONE) {
+            nextFluid = Block.getFluid(above);
+            nextLevel = Block.FLUID_SOURCE - 1;
+        }
+        for (int side = 0; side < 4; side++) {
+            int sideX = x + (side == 0 ? -1 : side == 1 ? 1 : 0);
+            int sideZ = z + (side == 2 ? -1 : side == 3 ? 1 : 0);
+            int neighbour = this.blockAt(chunk, sideX, y, sideZ);
+            int neighbourFluid = Block.getFluid(neighbour);
+            if (neighbourFluid == Block.FLUID_NONE) {
+                continue;
+            }
+            int level = Block.getFluidLevel(neighbour) - DECAY[neighbourFluid];
+            if (level > nextLevel && this.isResting(chunk, sideX, y, sideZ)) {
+                nextFluid = neighbourFluid;
+                nextLevel = level;
+            }
+        }
+        return nextLevel > 0 ? Block.getFluidBlock(nextFluid, nextLevel) : Block.AIR;
+    }
+
+    /**
+     * @return whether the fluid at the given position lies on a block or on a source, so it spreads sideways
+     * instead of only falling
+     */
+    private boolean isResting(@NotNull Chunk chunk, int x, int y, int z) {
+        int below = this.blockAt(chunk, x, y - 1, z);
+        return below != Block.AIR
+                && (Block.getFluid(below) == Block.FLUID_NONE || Block.getFluidLevel(below) == Block.FLUID_SOURCE);
+    }
+
+    private boolean touchesFluid(@NotNull Chunk chunk, int x, int y, int z, int fluid) {
+        return Block.getFluid(this.blockAt(chunk, x - 1, y, z)) == fluid
+                || Block.getFluid(this.blockAt(chunk, x + 1, y, z)) == fluid
+                || Block.getFluid(this.blockAt(chunk, x, y - 1, z)) == fluid
+                || Block.getFluid(this.blockAt(chunk, x, y + 1, z)) == fluid
+                || Block.getFluid(this.blockAt(chunk, x, y, z - 1)) == fluid
+                || Block.getFluid(this.blockAt(chunk, x, y, z + 1)) == fluid;
+    }
+
+    /**
+     * Reads a block without going through the world's lookup cache, which is not safe to share between threads.
+     * Below the world and in chunks that are not loaded reads bedrock, so fluid neither drains nor spreads there.
+     */
+    private int blockAt(@NotNull Chunk chunk, int x, int y, int z) {
+        if (y < 0) {
+            return Block.BEDROCK;
+        }
+        if (y >= this.height) {
+            return Block.AIR;
+        }
+        int chunkX = x >> Section.SHIFT;
+        int chunkZ = z >> Section.SHIFT;
+        if (chunkX != chunk.getChunkX() || chunkZ != chunk.getChunkZ()) {
+            chunk = this.loadedChunk(chunkX, chunkZ);
+            if (chunk == null) {
+                return Block.BEDROCK;
+            }
+        }
+        return chunk.getBlockId(x & Section.MASK, y, z & Section.MASK);
+    }
+
+    private @Nullable Chunk loadedChunk(int chunkX, int chunkZ) {
+        Chunk chunk = this.chunks.getChunk(chunkX, chunkZ);
+        if (chunk == null || chunk.getState().compareTo(Chunk.State.GENERATED) < 0) {
+            return null;
+        }
+        return chunk;
+    }
+
+    @FunctionalInterface
+    public interface ChunkRange {
+        boolean isInRange(int chunkX, int chunkZ);
+    }
+
+    @FunctionalInterface
+    public interface BlockChanger {
+        /**
+         * Changes a block and marks the cells around it active, as {@link World#setBlock(int, int, int, int)} does.
+         */
+        int setBlock(int x, int y, int z, int blockId);
+    }
+
+    /**
+     * The active cells of one section, and the changes a step found for them.
+     */
+    private static final class Region {
+        private final long[] marked = new long[Section.VOLUME / Long.SIZE];
+        private int chunkX;
+        private int sectionY;
+        private int chunkZ;
+        private int[] cells = new int[64];
+        private int cellCount;
+        private int[] changes = new int[64];
+        private int changeCount;
+
+        private void add(int index) {
+            long bit = 1L << index;
+            if ((this.marked[index >> 6] & bit) != 0) {
+                return;
+            }
+            this.marked[index >> 6] |= bit;
+            if (this.cellCount == this.cells.length) {
+                this.cells = Arrays.copyOf(this.cells, this.cellCount * 2);
+            }
+            this.cells[this.cellCount++] = index;
+        }
+
+        private void addChange(int change) {
+            if (this.changeCount == this.changes.length) {
+                this.changes = Arrays.copyOf(this.changes, this.changeCount * 2);
+            }
+            this.changes[this.changeCount++] = change;
+        }
+
+        private void clear() {
+            Arrays.fill(this.marked, 0);
+            this.cellCount = 0;
+            this.changeCount = 0;
+        }
+    }
+}
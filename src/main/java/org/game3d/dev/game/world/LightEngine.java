@@ -0,0 +1,394 @@
+package org.game3d.dev.game.world;
+
+import org.game3d.dev.game.scene.Block;
+import org.game3d.dev.game.scene.Chunk;
+import org.game3d.dev.game.scene.NibbleArray;
+import org.game3d.dev.game.scene.Section;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * Flood-fill propagation of sky light and block light. Light drops by one per block through transparent
+ * blocks; full sky light travels straight down without loss. Raising light runs a BFS from the brighter cells,
+ * lowering it first clears everything that was lit from the removed light (remove queue) and then refills the
+ * hole from the light left around it (add queue).
+ * <p>
+ * An engine either lights a single chunk in isolation ({@link #initialise(Chunk)}, safe on a worker for a chunk
+ * nobody else touches) or works on the loaded world through a {@link ChunkSource} on the game thread.
+ */
+public class LightEngine {
+    public static final int MAX_LIGHT = 15;
+    private static final int[][] DIRECTIONS = {{1, 0, 0}, {-1, 0, 0}, {0, 0, 1}, {0, 0, -1}, {0, 1, 0}, {0, -1, 0}};
+
+    private final int height;
+    private final @Nullable ChunkSource chunks;
+    private final @Nullable ChangeListener listener;
+    private final Queue addQueue;
+    private final Queue removeQueue;
+    private final int[] columnTops;
+    private Chunk bound;
+    private Chunk cached;
+
+    public LightEngine(int height, @Nullable ChunkSource chunks, @Nullable ChangeListener listener) {
+        this.height = height;
+        this.chunks = chunks;
+        this.listener = listener;
+        this.addQueue = new Queue();
+        this.removeQueue = new Queue();
+        this.columnTops = new int[Chunk.SIZE * Chunk.SIZE];
+    }
+
+    /**
+     * Computes the light of a freshly generated or loaded chunk from its own blocks only. Light coming in from
+     * the neighbours is added later by {@link #connect(Chunk)}.
+     */
+    public void initialise(@NotNull Chunk chunk) {
+        this.bound = chunk;
+        this.cached = null;
+        try {
+            this.initialiseSkyLight(chunk);
+            this.propagate(true);
+            this.initialiseBlockLight(chunk);
+            this.propagate(false);
+        } finally {
+            this.bound = null;
+        }
+    }
+
+    /**
+     * Lets light flow across the borders between {@code chunk} and its loaded neighbours, in both directions.
+     */
+    public void connect(@NotNull Chunk chunk) {
+        this.cached = null;
+        this.connect(chunk, true);
+        this.connect(chunk, false);
+    }
+
+    private void connect(@NotNull Chunk chunk, boolean sky) {
+        for (int[] direction : DIRECTIONS) {
+            if (direction[1] != 0) {
+                continue;
+            }
+            Chunk neighbour = this.chunkAt(chunk.getPosition().x + direction[0] * Chunk.SIZE,
+                    chunk.getPosition().y + direction[2] * Chunk.SIZE);
+            if (neighbour != null) {
+                this.queueBorder(chunk, neighbour, direction[0], direction[2], sky);
+            }
+        }
+        this.propagate(sky);
+    }
+
+    /**
+     * Updates the light around a block that has just been changed to {@code block}.
+     */
+    public void update(int x, int y, int z, int block) {
+        this.cached = null;
+        Chunk chunk = this.chunkAt(x, z);
+        if (chunk == null) {
+            return;
+        }
+        this.updateChannel(chunk, x, y, z, block, true);
+        this.updateChannel(chunk, x, y, z, block, false);
+    }
+
+    private void updateChannel(@NotNull Chunk chunk, int x, int y, int z, int block, boolean sky) {
+        int old = this.getLight(chunk, x, y, z, sky);
+        if (old > 0) {
+            this.setLight(chunk, x, y, z, 0, sky);
+            this.removeQueue.push(x, y, z, old);
+            this.unpropagate(sky);
+        }
+
+        boolean opaque = Block.isOpaque(block);
+        int emission = sky ? 0 : Block.getLightEmission(block);
+        if (sky && y == this.height - 1 && !opaque) {
+            emission = MAX_LIGHT;
+        }
+        if (emission > 0) {
+            this.setLight(chunk, x, y, z, emission, sky);
+            this.addQueue.push(x, y, z, emission);
+        }
+        if (!opaque) {
+            // Let the surrounding light flow back into the changed block
+            for (int[] direction : DIRECTIONS) {
+                int nx = x + direction[0];
+                int ny = y + direction[1];
+                int nz = z + direction[2];
+                if (ny < 0 || ny >= this.height) {
+                    continue;
+                }
+                Chunk neighbour = this.chunkAt(nx, nz);
+                if (neighbour != null && this.getLight(neighbour, nx, ny, nz, sky) > 0) {
+                    this.addQueue.push(nx, ny, nz, 0);
+                }
+            }
+        }
+        this.propagate(sky);
+    }
+
+    private void initialiseSkyLight(@NotNull Chunk chunk) {
+        Section[] sections = chunk.getSections();
+        int top = sections.length - 1;
+        while (top >= 0 && sections[top].isEmpty()) {
+            sections[top].getSkyLight().fill(MAX_LIGHT);
+            top--;
+        }
+        for (int i = 0; i <= top; i++) {
+            sections[i].getSkyLight().fill(0);
+        }
+
+        // Full light down every column until the first opaque block
+        int startY = (top + 1) << Section.SHIFT;
+        for (int z = 0; z < Chunk.SIZE; z++) {
+            for (int x = 0; x < Chunk.SIZE; x++) {
+                int y = startY - 1;
+                while (y >= 0 && !Block.isOpaque(chunk.getBlockId(x, y, z))) {
+                    sections[y >> Section.SHIFT].getSkyLight()
+                            .set(Section.index(x, y & Section.MASK, z), MAX_LIGHT);
+                    y--;
+                }
+                this.columnTops[z * Chunk.SIZE + x] = y + 1;
+            }
+        }
+
+        // Only the lit cells next to a darker column can spread light sideways
+        int originX = chunk.getPosition().x;
+        int originZ = chunk.getPosition().y;
+        for (int z = 0; z < Chunk.SIZE; z++) {
+            for (int x = 0; x < Chunk.SIZE; x++) {
+                int columnTop = this.columnTops[z * Chunk.SIZE + x];
+                int neighbourTop = columnTop;
+                for (int[] direction : DIRECTIONS) {
+                    int nx = x + direction[0];
+                    int nz = z + direction[2];
+                    if (direction[1] == 0 && nx >= 0 && nx < Chunk.SIZE && nz >= 0 && nz < Chunk.SIZE) {
+                        neighbourTop = Math.max(neighbourTop, this.columnTops[nz * Chunk.SIZE + nx]);
+                    }
+                }
+                for (int y = columnTop; y < neighbourTop; y++) {
+                    this.addQueue.push(originX + x, y, originZ + z, MAX_LIGHT);
+                }
+            }
+        }
+    }
+
+    private void initialiseBlockLight(@NotNull Chunk chunk) {
+        int originX = chunk.getPosition().x;
+        int originZ = chunk.getPosition().y;
+        for (Section section : chunk.getSections()) {
+            NibbleArray light = section.getBlockLight();
+            light.fill(0);
+            if (!section.getStorage().anyMatch(block -> Block.getLightEmission(block) > 0)) {
+                continue;
+            }
+            int index = 0;
+            for (int y = 0; y < Section.SIZE; y++) {
+                for (int z = 0; z < Section.SIZE; z++) {
+                    for (int x = 0; x < Section.SIZE; x++, index++) {
+                        int emission = Block.getLightEmission(section.getStorage().getAt(index));
+                        if (emission > 0) {
+                            light.set(index, emission);
+                            this.addQueue.push(originX + x, section.getOriginY() + y, originZ + z, emission);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private void queueBorder(@NotNull Chunk chunk, @NotNull Chunk neighbour, int dx, int dz, boolean sky) {
+        int x = dx > 0 ? Chunk.SIZE - 1 : 0;
+        int z = dz > 0 ? Chunk.SIZE - 1 : 0;
+        int neighbourX = dx > 0 ? 0 : Chunk.SIZE - 1;
+        int neighbourZ = dz > 0 ? 0 : Chunk.SIZE - 1;
+        for (int s = 0; s < chunk.getSections().length; s++) {
+            NibbleArray light = chunk.getSection(s).getLight(sky);
+            NibbleArray neighbourLight = neighbour.getSection(s).getLight(sky);
+            if (light.isUniform() && neighbourLight.isUniform()
+                    && Math.abs(light.get(0) - neighbourLight.get(0)) <= 1) {
+                continue;
+            }
+            for (int y = 0; y < Section.SIZE; y++) {
+                for (int i = 0; i < Chunk.SIZE; i++) {
+                    int index = dx != 0 ? Section.index(x, y, i) : Section.index(i, y, z);
+                    int neighbourIndex = dx != 0 ? Section.index(neighbourX, y, i) : Section.index(i, y, neighbourZ);
+                    int level = light.get(index);
+                    int neighbourLevel = neighbourLight.get(neighbourIndex);
+                    int worldY = (s << Section.SHIFT) + y;
+                    if (level > neighbourLevel + 1) {
+                        this.addQueue.push(chunk.getPosition().x + (dx != 0 ? x : i), worldY,
+                                chunk.getPosition().y + (dx != 0 ? i : z), level);
+                    } else if (neighbourLevel > level + 1) {
+                        this.addQueue.push(neighbour.getPosition().x + (dx != 0 ? neighbourX : i), worldY,
+                                neighbour.getPosition().y + (dx != 0 ? i : neighbourZ), neighbourLevel);
+                    }
+                }
+            }
+        }
+    }
+
+    private void propagate(boolean sky) {
+        Queue queue = this.addQueue;
+        while (queue.poll()) {
+            int x = queue.x;
+            int y = queue.y;
+            int z = queue.z;
+            Chunk chunk = this.chunkAt(x, z);
+            if (chunk == null) {
+                continue;
+            }
+            int level = this.getLight(chunk, x, y, z, sky);
+            if (level <= 1) {
+                continue;
+            }
+            for (int[] direction : DIRECTIONS) {
+                int nx = x + direction[0];
+                int ny = y + direction[1];
+                int nz = z + direction[2];
+                if (ny < 0 || ny >= this.height) {
+                    continue;
+                }
+                Chunk neighbour = this.chunkAt(nx, nz);
+                if (neighbour == null
+                        || Block.isOpaque(neighbour.getBlockId(nx & Section.MASK, ny, nz & Section.MASK))) {
+                    continue;
+                }
+                int target = sky && level == MAX_LIGHT && direction[1] < 0 ? MAX_LIGHT : level - 1;
+                if (this.getLight(neighbour, nx, ny, nz, sky) < target) {
+                    this.setLight(neighbour, nx, ny, nz, target, sky);
+                    queue.push(nx, ny, nz, target);
+                }
+            }
+        }
+    }
+
+    private void unpropagate(boolean sky) {
+        Queue queue = this.removeQueue;
+        while (queue.poll()) {
+            int x = queue.x;
+            int y = queue.y;
+            int z = queue.z;
+            int level = queue.level;
+            for (int[] direction : DIRECTIONS) {
+                int nx = x + direction[0];
+                int ny = y + direction[1];
+                int nz = z + direction[2];
+                if (ny < 0 || ny >= this.height) {
+                    continue;
+                }
+                Chunk neighbour = this.chunkAt(nx, nz);
+                if (neighbour == null) {
+                    continue;
+                }
+                int neighbourLevel = this.getLight(neighbour, nx, ny, nz, sky);
+                if (neighbourLevel == 0) {
+                    continue;
+                }
+                boolean litFromHere = neighbourLevel < level
+                        || sky && level == MAX_LIGHT && neighbourLevel == MAX_LIGHT && direction[1] < 0;
+                if (!litFromHere) {
+                    // Lit by something else: spread that light back into the cleared area afterwards
+                    this.addQueue.push(nx, ny, nz, neighbourLevel);
+                    continue;
+                }
+                this.setLight(neighbour, nx, ny, nz, 0, sky);
+                queue.push(nx, ny, nz, neighbourLevel);
+                int block = neighbour.getBlockId(nx & Section.MASK, ny, nz & Section.MASK);
+                int emission = sky ? 0 : Block.getLightEmission(block);
+                if (emission > 0) {
+                    this.setLight(neighbour, nx, ny, nz, emission, sky);
+                    this.addQueue.push(nx, ny, nz, emission);
+                }
+            }
+        }
+    }
+
+    private @Nullable Chunk chunkAt(int x, int z) {
+        int chunkX = x >> Section.SHIFT;
+        int chunkZ = z >> Section.SHIFT;
+        Chunk chunk = this.cached;
+        if (chunk != null && chunk.getChunkX() == chunkX && chunk.getChunkZ() == chunkZ) {
+            return chunk;
+        }
+        if (this.bound != null) {
+            chunk = this.bound.getChunkX() == chunkX && this.bound.getChunkZ() == chunkZ ? this.bound : null;
+        } else {
+            chunk = this.chunks == null ? null : this.chunks.getChunk(chunkX, chunkZ);
+            if (chunk != null && chunk.getState().compareTo(Chunk.State.GENERATED) < 0) {
+                chunk = null;
+            }
+        }
+        if (chunk != null) {
+            this.cached = chunk;
+        }
+        return chunk;
+    }
+
+    private int getLight(@NotNull Chunk chunk, int x, int y, int z, boolean sky) {
+        return chunk.getSection(y >> Section.SHIFT).getLight(sky)
+                .get(Section.index(x & Section.MASK, y & Section.MASK, z & Section.MASK));
+    }
+
+    private void setLight(@NotNull Chunk chunk, int x, int y, int z, int level, boolean sky) {
+        chunk.getSection(y >> Section.SHIFT).getLight(sky)
+                .set(Section.index(x & Section.MASK, y & Section.MASK, z & Section.MASK), level);
+        if (this.listener != null) {
+            this.listener.onLightChanged(chunk, x & Section.MASK, y, z & Section.MASK);
+        }
+    }
+
+    @FunctionalInterface
+    public interface ChunkSource {
+        @Nullable Chunk getChunk(int chunkX, int chunkZ);
+    }
+
+    @FunctionalInterface
+    public interface ChangeListener {
+        void onLightChanged(@NotNull Chunk chunk, int localX, int y, int localZ);
+    }
+
+    /**
+     * FIFO of (x, y, z, level) entries in one growable int array; reset to the start whenever it runs empty.
+     */
+    private static class Queue {
+        private int[] entries = new int[4096];
+        private int head;
+        private int tail;
+        private int x;
+        private int y;
+        private int z;
+        private int level;
+
+        private void push(int x, int y, int z, int level) {
+            if (this.tail + 4 > this.entries.length) {
+                if (this.head > 0) {
+                    System.arraycopy(this.entries, this.head, this.entries, 0, this.tail - this.head);
+                    this.tail -= this.head;
+                    this.head = 0;
+                }
+                if (this.tail + 4 > this.entries.length) {
+                    this.entries = Arrays.copyOf(this.entries, this.entries.length * 2);
+                }
+            }
+            this.entries[this.tail++] = x;
+            this.entries[this.tail++] = y;
+            this.entries[this.tail++] = z;
+            this.entries[this.tail++] = level;
+        }
+
+        private boolean poll() {
+            if (this.head == this.tail) {
+                this.head = 0;
+                this.tail = 0;
+                return false;
+            }
+            this.x = this.entries[this.head++];
+            this.y = this.entries[this.head++];
+            this.z = this.entries[this.head++];
+            this.level = this.entries[this.head++];
+            return true;
+        }
+    }
+}
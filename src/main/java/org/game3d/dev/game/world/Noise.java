@@ -0,0 +1,113 @@
+package org.game3d.dev.game.world;
+
+/**
+ * Seeded gradient noise. Lattice gradients are picked by hashing the seed with the lattice coordinates,
+ * so there is no permutation table or other mutable state: every call is a pure function of its arguments
+ * and instances can be shared between threads.
+ */
+public final class Noise {
+    private static final double[] GRADIENTS_2D = {
+            1, 0, -1, 0, 0, 1, 0, -1,
+            0.70710678118654752, 0.70710678118654752, -0.70710678118654752, 0.70710678118654752,
+            0.70710678118654752, -0.70710678118654752, -0.70710678118654752, -0.70710678118654752
+    };
+    private static final double[] GRADIENTS_3D = {
+            1, 1, 0, -1, 1, 0, 1, -1, 0, -1, -1, 0,
+            1, 0, 1, -1, 0, 1, 1, 0, -1, -1, 0, -1,
+            0, 1, 1, 0, -1, 1, 0, 1, -1, 0, -1, -1,
+            1, 1, 0, -1, 1, 0, 0, -1, 1, 0, -1, -1
+    };
+
+    private final long seed;
+
+    public Noise(long seed) {
+        this.seed = mix(seed);
+    }
+
+    public double noise(double x, double z) {
+        int x0 = (int) Math.floor(x);
+        int z0 = (int) Math.floor(z);
+        double fx = x - x0;
+        double fz = z - z0;
+        double u = fade(fx);
+        double w = fade(fz);
+
+        double n00 = this.gradient(x0, z0, fx, fz);
+        double n10 = this.gradient(x0 + 1, z0, fx - 1, fz);
+        double n01 = this.gradient(x0, z0 + 1, fx, fz - 1);
+        double n11 = this.gradient(x0 + 1, z0 + 1, fx - 1, fz - 1);
+        return lerp(w, lerp(u, n00, n10), lerp(u, n01, n11));
+    }
+
+    public double noise(double x, double y, double z) {
+        int x0 = (int) Math.floor(x);
+        int y0 = (int) Math.floor(y);
+        int z0 = (int) Math.floor(z);
+        double fx = x - x0;
+        double fy = y - y0;
+        double fz = z - z0;
+        double u = fade(fx);
+        double v = fade(fy);
+        double w = fade(fz);
+
+        double n000 = this.gradient(x0, y0, z0, fx, fy, fz);
+        double n100 = this.gradient(x0 + 1, y0, z0, fx - 1, fy, fz);
+        double n010 = this.gradient(x0, y0 + 1, z0, fx, fy - 1, fz);
+        double n110 = this.gradient(x0 + 1, y0 + 1, z0, fx - 1, fy - 1, fz);
+        double n001 = this.gradient(x0, y0, z0 + 1, fx, fy, fz - 1);
+        double n101 = this.gradient(x0 + 1, y0, z0 + 1, fx - 1, fy, fz - 1);
+        double n011 = this.gradient(x0, y0 + 1, z0 + 1, fx, fy - 1, fz - 1);
+        double n111 = this.gradient(x0 + 1, y0 + 1, z0 + 1, fx - 1, fy - 1, fz - 1);
+        return lerp(w,
+                lerp(v, lerp(u, n000, n100), lerp(u, n010, n110)),
+                lerp(v, lerp(u, n001, n101), lerp(u, n011, n111))
+        );
+    }
+
+    /**
+     * Fractal sum of {@code octaves} layers, each at twice the frequency and {@code gain} times the amplitude
+     * of the previous one, normalised back to roughly [-1, 1].
+     */
+    public double fractal(double x, double z, int octaves, double gain) {
+        double sum = 0;
+        double amplitude = 1;
+        double total = 0;
+        for (int i = 0; i < octaves; i++) {
+            // Shift every octave so their lattice points do not line up at the origin
+            sum += this.noise(x + i * 31.7, z - i * 17.3) * amplitude;
+            total += amplitude;
+            amplitude *= gain;
+            x *= 2;
+            z *= 2;
+        }
+        return sum / total;
+    }
+
+    private double gradient(int x, int z, double dx, double dz) {
+        int g = (int) (this.hash(x, 0, z) & 7) * 2;
+        return GRADIENTS_2D[g] * dx + GRADIENTS_2D[g + 1] * dz;
+    }
+
+    private double gradient(int x, int y, int z, double dx, double dy, double dz) {
+        int g = (int) (this.hash(x, y, z) & 15) * 3;
+        return GRADIENTS_3D[g] * dx + GRADIENTS_3D[g + 1] * dy + GRADIENTS_3D[g + 2] * dz;
+    }
+
+    private long hash(int x, int y, int z) {
+        return mix(this.seed ^ x * 0x9E3779B97F4A7C15L ^ y * 0xC2B2AE3D27D4EB4FL ^ z * 0x165667B19E3779F9L);
+    }
+
+    private static long mix(long h) {
+        h = (h ^ (h >>> 33)) * 0xFF51AFD7ED558CCDL;
+        h = (h ^ (h >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return h ^ (h >>> 33);
+    }
+
+    private static double fade(double t) {
+        return t * t * t * (t * (t * 6 - 15) + 10);
+    }
+
+    private static double lerp(double t, double a, double b) {
+        return a + t * (b - a);
+    }
+}
@@ -0,0 +1,202 @@
+package org.game3d.dev.game.world;
+
+import lombok.Getter;
+import org.game3d.dev.game.scene.Block;
+import org.game3d.dev.game.scene.BlockAccess;
+import org.jetbrains.annotations.NotNull;
+import org.joml.Vector3f;
+
+/**
+ * Moves an axis-aligned player box through the block grid. Each tick the movement is swept one axis at a time
+ * (up/down first, then x, then z); a sweep only looks at the blocks between where the box is and where it would
+ * end up, so the cost depends on the speed of the player, not on the size of the world.
+ * When the player walks into a ledge while standing, the box is lifted onto it instead of stopping; all blocks are
+ * full cubes, so the step height is one block.
+ */
+public class PlayerPhysics {
+    public static final float HALF_WIDTH = 0.3f;
+    public static final float HEIGHT = 1.8f;
+    public static final float EYE_HEIGHT = 1.62f;
+    public static final float STEP_HEIGHT = 1.0f;
+
+    private static final float WALK_SPEED = 4.3f;
+    private static final float GRAVITY = 32.0f;
+    private static final float TERMINAL_VELOCITY = 60.0f;
+    private static final float JUMP_VELOCITY = 9.0f;
+    private static final float MAX_TICK_SECONDS = 0.1f;
+    // Gap left between the box and the faces it stops against, so it never lies exactly on a block boundary
+    private static final float SKIN = 1.0e-3f;
+
+    /**
+     * Centre of the bottom face of the box.
+     */
+    @Getter private final Vector3f position;
+    @Getter private final Vector3f velocity;
+    @Getter private boolean grounded;
+
+    public PlayerPhysics(float x, float y, float z) {
+        this.position = new Vector3f(x, y, z);
+        this.velocity = new Vector3f();
+    }
+
+    /**
+     * Advances the player by one update tick.
+     *
+     * @param moveX horizontal walking direction, at most unit length
+     * @param moveZ horizontal walking direction, at most unit length
+     */
+    public void update(@NotNull BlockAccess blocks, float moveX, float moveZ, boolean jump, float seconds) {
+        float dt = Math.min(seconds, MAX_TICK_SECONDS);
+        this.velocity.x = moveX * WALK_SPEED;
+        this.velocity.z = moveZ * WALK_SPEED;
+        if (jump && this.grounded) {
+            this.velocity.y = JUMP_VELOCITY;
+        }
+        this.velocity.y = Math.max(this.velocity.y - GRAVITY * dt, -TERMINAL_VELOCITY);
+
+        float dx = this.velocity.x * dt;
+        float dy = this.velocity.y * dt;
+        float dz = this.velocity.z * dt;
+
+        float movedY = this.sweep(blocks, 1, dy);
+        boolean wasGrounded = this.grounded;
+        this.grounded = dy < 0 && movedY > dy;
+        if (movedY != dy) {
+            this.velocity.y = 0;
+        }
+
+        float startX = this.position.x;
+        float startY = this.position.y;
+        float startZ = this.position.z;
+        float movedX = this.sweep(blocks, 0, dx);
+        float movedZ = this.sweep(blocks, 2, dz);
+        if ((wasGrounded || this.grounded) && (movedX != dx || movedZ != dz)) {
+            this.stepUp(blocks, startX, startY, startZ, dx, dz, movedX, movedZ);
+        }
+    }
+
+    public void setPosition(float x, float y, float z) {
+        this.position.set(x, y, z);
+        this.velocity.zero();
+        this.grounded = false;
+    }
+
+    public Vector3f getEyePosition(@NotNull Vector3f dest) {
+        return dest.set(this.position.x, this.position.y + EYE_HEIGHT, this.position.z);
+    }
+
+    /**
+     * @return whether the player box overlaps the block at the given position
+     */
+    public boolean intersects(int x, int y, int z) {
+        return x + 1 > this.position.x - HALF_WIDTH && x < this.position.x + HALF_WIDTH
+                && y + 1 > this.position.y && y < this.position.y + HEIGHT
+                && z + 1 > this.position.z - HALF_WIDTH && z < this.position.z + HALF_WIDTH;
+    }
+
+    /**
+     * Retries a blocked horizontal move from {@link #STEP_HEIGHT} higher up and keeps it if the player got
+     * further that way.
+     */
+    private void stepUp(@NotNull BlockAccess blocks, float startX, float startY, float startZ, float dx, float dz,
+                        float movedX, float movedZ) {
+        float endX = this.position.x;
+        float endY = this.position.y;
+        float endZ = this.position.z;
+
+        this.position.set(startX, startY, startZ);
+        float lifted = this.sweep(blocks, 1, STEP_HEIGHT);
+        float stepX = this.sweep(blocks, 0, dx);
+        float stepZ = this.sweep(blocks, 2, dz);
+        this.sweep(blocks, 1, -lifted);
+
+        if (stepX * stepX + stepZ * stepZ > movedX * movedX + movedZ * movedZ) {
+            this.grounded = true;
+        } else {
+            this.position.set(endX, endY, endZ);
+        }
+    }
+
+    /**
+     * Moves the box along one axis until it would enter a solid block.
+     *
+     * @return the distance actually moved
+     */
+    private float sweep(@NotNull BlockAccess blocks, int axis, float distance) {
+        if (distance == 0) {
+            return 0;
+        }
+        float minX = this.position.x - HALF_WIDTH;
+        float maxX = this.position.x + HALF_WIDTH;
+        float minY = this.position.y;
+        float maxY = this.position.y + HEIGHT;
+        float minZ = this.position.z - HALF_WIDTH;
+        float maxZ = this.position.z + HALF_WIDTH;
+
+        // Cells covered by the box across the sweep, and the layers of cells it passes through along it
+        int fromX = floor(minX);
+        int toX = ceil(maxX) - 1;
+        int fromY = floor(minY);
+        int toY = ceil(maxY) - 1;
+        int fromZ = floor(minZ);
+        int toZ = ceil(maxZ) - 1;
+        float face = switch (axis) {
+            case 0 -> distance > 0 ? maxX : minX;
+            case 1 -> distance > 0 ? maxY : minY;
+            default -> distance > 0 ? maxZ : minZ;
+        };
+        int step = distance > 0 ? 1 : -1;
+        int first = distance > 0 ? ceil(face) : floor(face) - 1;
+        int last = floor(face + distance);
+
+        float moved = distance;
+        for (int layer = first; distance > 0 ? layer <= last : layer >= last; layer += step) {
+            if (this.isLayerSolid(blocks, axis, layer, fromX, toX, fromY, toY, fromZ, toZ)) {
+                float boundary = distance > 0 ? layer : layer + 1;
+                moved = boundary - face - step * SKIN;
+                // Never get pushed backwards when already closer than the skin
+                moved = distance > 0 ? Math.max(moved, 0) : Math.min(moved, 0);
+                break;
+            }
+        }
+
+        switch (axis) {
+            case 0 -> this.position.x += moved;
+            case 1 -> this.position.y += moved;
+            default -> this.position.z += moved;
+        }
+        return moved;
+    }
+
+    private boolean isLayerSolid(@NotNull BlockAccess blocks, int axis, int layer, int fromX, int toX,
+                                 int fromY, int toY, int fromZ, int toZ) {
+        if (axis == 0) {
+            fromX = layer;
+            toX = layer;
+        } else if (axis == 1) {
+            fromY = layer;
+            toY = layer;
+        } else {
+            fromZ = layer;
+            toZ = layer;
+        }
+        for (int y = fromY; y <= toY; y++) {
+            for (int z = fromZ; z <= toZ; z++) {
+                for (int x = fromX; x <= toX; x++) {
+                    if (Block.getCollision(blocks.getBlockId(x, y, z)) != Block.COLLISION_NONE) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private static int floor(float value) {
+        return (int) Math.floor(value);
+    }
+
+    private static int ceil(float value) {
+        return (int) Math.ceil(value);
+    }
+}
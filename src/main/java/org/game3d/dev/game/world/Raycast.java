@@ -0,0 +1,124 @@
+package org.game3d.dev.game.world;
+
+import org.game3d.dev.game.scene.Block;
+import org.game3d.dev.game.scene.BlockAccess;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.joml.Vector3f;
+
+import java.util.function.IntPredicate;
+
+/**
+ * Ray casts through the block grid with a 3D DDA (Amanatides and Woo): the ray visits every block it passes
+ * through in order, stepping across one block boundary at a time, so a cast costs one block lookup per block
+ * travelled no matter how many blocks are loaded.
+ */
+public final class Raycast {
+    public static final IntPredicate SOLID = block -> Block.getCollision(block) != Block.COLLISION_NONE;
+    public static final IntPredicate OPAQUE = Block::isOpaque;
+
+    private Raycast() {
+    }
+
+    /**
+     * Finds the first block matching {@code stopsAt} along a ray.
+     *
+     * @param direction need not be normalised
+     * @return whether a block was hit within {@code maxDistance}; {@code hit} is only written if so
+     */
+    public static boolean cast(@NotNull BlockAccess blocks, @NotNull Vector3f origin, @NotNull Vector3f direction,
+                               float maxDistance, @NotNull IntPredicate stopsAt, @NotNull RaycastHit hit) {
+        return trace(blocks, origin.x, origin.y, origin.z, direction.x, direction.y, direction.z,
+                maxDistance, stopsAt, hit);
+    }
+
+    /**
+     * Tests the blocks containing {@code from} and {@code to} as well, so a point inside an opaque block sees
+     * nothing and is seen by nothing. Callers looking from or at a block face should offset the point into the
+     * air in front of it.
+     *
+     * @return whether no opaque block lies on the segment between {@code from} and {@code to}
+     */
+    public static boolean hasLineOfSight(@NotNull BlockAccess blocks, @NotNull Vector3f from, @NotNull Vector3f to) {
+        float dx = to.x - from.x;
+        float dy = to.y - from.y;
+        float dz = to.z - from.z;
+        float distance = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+        return !trace(blocks, from.x, from.y, from.z, dx, dy, dz, distance, OPAQUE, null);
+    }
+
+    private static boolean trace(@NotNull BlockAccess blocks, float originX, float originY, float originZ,
+                                 float directionX, float directionY, float directionZ, float maxDistance,
+                                 @NotNull IntPredicate stopsAt, @Nullable RaycastHit hit) {
+        if (!Float.isFinite(maxDistance)) {
+            throw new IllegalArgumentException(String.format("Ray length %f is not finite", maxDistance));
+        }
+        float length = (float) Math.sqrt(directionX * directionX + directionY * directionY + directionZ * directionZ);
+        if (length == 0 || Float.isNaN(length)) {
+            return false;
+        }
+        float dx = directionX / length;
+        float dy = directionY / length;
+        float dz = directionZ / length;
+
+        int x = (int) Math.floor(originX);
+        int y = (int) Math.floor(originY);
+        int z = (int) Math.floor(originZ);
+        int stepX = dx > 0 ? 1 : dx < 0 ? -1 : 0;
+        int stepY = dy > 0 ? 1 : dy < 0 ? -1 : 0;
+        int stepZ = dz > 0 ? 1 : dz < 0 ? -1 : 0;
+
+        // Distance along the ray to cross one whole block, and to the first boundary on each axis
+        float deltaX = stepX == 0 ? Float.POSITIVE_INFINITY : Math.abs(1 / dx);
+        float deltaY = stepY == 0 ? Float.POSITIVE_INFINITY : Math.abs(1 / dy);
+        float deltaZ = stepZ == 0 ? Float.POSITIVE_INFINITY : Math.abs(1 / dz);
+        float nextX = boundary(originX, x, stepX, deltaX);
+        float nextY = boundary(originY, y, stepY, deltaY);
+        float nextZ = boundary(originZ, z, stepZ, deltaZ);
+
+        int faceX = 0;
+        int faceY = 0;
+        int faceZ = 0;
+        float distance = 0;
+        while (true) {
+            int block = blocks.getBlockId(x, y, z);
+            if (stopsAt.test(block)) {
+                if (hit != null) {
+                    hit.set(x, y, z, block, faceX, faceY, faceZ, distance);
+                }
+                return true;
+            }
+
+            faceX = 0;
+            faceY = 0;
+            faceZ = 0;
+            if (nextX < nextY && nextX < nextZ) {
+                distance = nextX;
+                x += stepX;
+                nextX += deltaX;
+                faceX = -stepX;
+            } else if (nextY < nextZ) {
+                distance = nextY;
+                y += stepY;
+                nextY += deltaY;
+                faceY = -stepY;
+            } else {
+                distance = nextZ;
+                z += stepZ;
+                nextZ += deltaZ;
+                faceZ = -stepZ;
+            }
+            if (distance > maxDistance) {
+                return false;
+            }
+        }
+    }
+
+    private static float boundary(float origin, int block, int step, float delta) {
+        if (step == 0) {
+            return Float.POSITIVE_INFINITY;
+        }
+        float offset = step > 0 ? block + 1 - origin : origin - block;
+        return offset * delta;
+    }
+}
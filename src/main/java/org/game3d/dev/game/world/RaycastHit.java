@@ -0,0 +1,46 @@
+package org.game3d.dev.game.world;
+
+import lombok.Getter;
+
+/**
+ * Result of a {@link Raycast}. Meant to be kept and reused by the caller, so casting rays does not allocate.
+ * The face normal points from the hit block towards the ray origin; it is zero when the ray starts inside the
+ * hit block.
+ */
+@Getter
+public class RaycastHit {
+    private int x;
+    private int y;
+    private int z;
+    private int block;
+    private int faceX;
+    private int faceY;
+    private int faceZ;
+    private float distance;
+
+    void set(int x, int y, int z, int block, int faceX, int faceY, int faceZ, float distance) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.block = block;
+        this.faceX = faceX;
+        this.faceY = faceY;
+        this.faceZ = faceZ;
+        this.distance = distance;
+    }
+
+    /**
+     * @return x of the block in front of the hit face, where a placed block would go
+     */
+    public int getAdjacentX() {
+        return this.x + this.faceX;
+    }
+
+    public int getAdjacentY() {
+        return this.y + this.faceY;
+    }
+
+    public int getAdjacentZ() {
+        return this.z + this.faceZ;
+    }
+}
@@ -0,0 +1,185 @@
+package org.game3d.dev.game.world;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.function.IntFunction;
+
+import static org.lwjgl.util.lz4.LZ4.*;
+
+/**
+ * A file holding the chunks of a {@value #SIZE}x{@value #SIZE} grid. It starts with an offset table of one
+ * (sector, length) pair per chunk, followed by LZ4 compressed chunk payloads aligned to {@value #SECTOR_BYTES}
+ * byte sectors. Reads decompress straight out of a memory mapping of the file.
+ * <p>
+ * Offset table entries that do not fit the file and payloads that do not decompress to the length stored with
+ * them read as missing, so a chunk damaged by a crash mid-write is generated again instead of failing the load.
+ */
+public class RegionFile {
+    public static final int SIZE = 32;
+    private static final int SECTOR_BYTES = 4096;
+    private static final int HEADER_BYTES = SIZE * SIZE * 8;
+    private static final int HEADER_SECTORS = HEADER_BYTES / SECTOR_BYTES;
+    private static final int PAYLOAD_HEADER_BYTES = 4;
+    /**
+     * LZ4 cannot expand a payload by more than this factor, so a larger stored length is corrupt.
+     */
+    private static final int MAX_EXPANSION = 255;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final int[] sectors;
+    private final int[] lengths;
+    private final BitSet usedSectors;
+    private final ByteBuffer entryBuffer;
+    private MappedByteBuffer mapped;
+
+    public RegionFile(@NotNull Path path) {
+        this.path = path;
+        this.sectors = new int[SIZE * SIZE];
+        this.lengths = new int[SIZE * SIZE];
+        this.usedSectors = new BitSet();
+        this.usedSectors.set(0, HEADER_SECTORS);
+        this.entryBuffer = ByteBuffer.allocate(8);
+        try {
+            this.channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            if (this.channel.size() < HEADER_BYTES) {
+                this.channel.write(ByteBuffer.allocate(HEADER_BYTES), 0);
+            }
+            this.remap();
+            for (int i = 0; i < SIZE * SIZE; i++) {
+                int sector = this.mapped.getInt(i * 8);
+                int length = this.mapped.getInt(i * 8 + 4);
+                // An entry pointing into the header or past the end of the file is left out, as if never written
+                if (length <= PAYLOAD_HEADER_BYTES || sector < HEADER_SECTORS
+                        || (long) sector * SECTOR_BYTES + length > this.mapped.capacity()) {
+                    continue;
+                }
+                this.sectors[i] = sector;
+                this.lengths[i] = length;
+                this.usedSectors.set(sector, sector + sectorCount(length));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error opening region file [" + path + "]", e);
+        }
+    }
+
+    /**
+     * Decompresses a chunk payload into a buffer obtained from {@code buffers} for the uncompressed size.
+     *
+     * @return the flipped buffer, or {@code null} if the chunk was never written or its payload is corrupt
+     */
+    public synchronized @Nullable ByteBuffer read(int localX, int localZ, @NotNull IntFunction<ByteBuffer> buffers) {
+        int entry = entry(localX, localZ);
+        int length = this.lengths[entry];
+        if (length == 0) {
+            return null;
+        }
+        try {
+            long end = (long) this.sectors[entry] * SECTOR_BYTES + length;
+            if (end > this.mapped.capacity()) {
+                this.remap();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error mapping region file [" + this.path + "]", e);
+        }
+
+        int offset = this.sectors[entry] * SECTOR_BYTES;
+        int rawLength = this.mapped.getInt(offset);
+        int compressedLength = length - PAYLOAD_HEADER_BYTES;
+        if (rawLength <= 0 || rawLength > (long) compressedLength * MAX_EXPANSION) {
+            return null;
+        }
+        ByteBuffer compressed = this.mapped.slice(offset + PAYLOAD_HEADER_BYTES, compressedLength);
+        ByteBuffer destination = buffers.apply(rawLength);
+        destination.clear().limit(rawLength);
+        if (LZ4_decompress_safe(compressed, destination) != rawLength) {
+            return null;
+        }
+        return destination;
+    }
+
+    /**
+     * Writes an already compressed payload, reusing the chunk's current sectors when it still fits.
+     */
+    public synchronized void write(int localX, int localZ, int rawLength, @NotNull ByteBuffer compressed) {
+        int entry = entry(localX, localZ);
+        int length = PAYLOAD_HEADER_BYTES + compressed.remaining();
+        int count = sectorCount(length);
+
+        int sector = this.sectors[entry];
+        int oldCount = this.lengths[entry] == 0 ? 0 : sectorCount(this.lengths[entry]);
+        if (count > oldCount) {
+            if (oldCount > 0) {
+                this.usedSectors.clear(sector, sector + oldCount);
+            }
+            sector = this.findFreeSectors(count);
+        } else if (count < oldCount) {
+            this.usedSectors.clear(sector + count, sector + oldCount);
+        }
+        this.usedSectors.set(sector, sector + count);
+
+        try {
+            long position = (long) sector * SECTOR_BYTES;
+            ByteBuffer payloadHeader = ByteBuffer.allocate(PAYLOAD_HEADER_BYTES).putInt(0, rawLength);
+            this.channel.write(payloadHeader, position);
+            int start = compressed.position();
+            while (compressed.hasRemaining()) {
+                this.channel.write(compressed, position + PAYLOAD_HEADER_BYTES + compressed.position() - start);
+            }
+            // Pad the last sector so the mapping never has to cover a partial one
+            long sectorsEnd = position + (long) count * SECTOR_BYTES;
+            if (this.channel.size() < sectorsEnd) {
+                this.channel.write(ByteBuffer.allocate(1), sectorsEnd - 1);
+            }
+
+            this.entryBuffer.clear();
+            this.entryBuffer.putInt(sector).putInt(length).flip();
+            this.channel.write(this.entryBuffer, (long) entry * 8);
+        } catch (IOException e) {
+            throw new RuntimeException("Error writing region file [" + this.path + "]", e);
+        }
+        this.sectors[entry] = sector;
+        this.lengths[entry] = length;
+    }
+
+    public synchronized void close() {
+        try {
+            this.channel.force(true);
+            this.channel.close();
+        } catch (IOException e) {
+            throw new RuntimeException("Error closing region file [" + this.path + "]", e);
+        }
+    }
+
+    private int findFreeSectors(int count) {
+        int start = this.usedSectors.nextClearBit(HEADER_SECTORS);
+        while (true) {
+            int end = this.usedSectors.nextSetBit(start);
+            if (end < 0 || end - start >= count) {
+                return start;
+            }
+            start = this.usedSectors.nextClearBit(end);
+        }
+    }
+
+    private void remap() throws IOException {
+        this.mapped = this.channel.map(FileChannel.MapMode.READ_ONLY, 0, this.channel.size());
+    }
+
+    private static int entry(int localX, int localZ) {
+        return localZ * SIZE + localX;
+    }
+
+    private static int sectorCount(int length) {
+        return (length + SECTOR_BYTES - 1) / SECTOR_BYTES;
+    }
+}
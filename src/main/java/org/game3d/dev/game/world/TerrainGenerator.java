@@ -0,0 +1,178 @@
+package org.game3d.dev.game.world;
+
+import lombok.Getter;
+import org.game3d.dev.game.scene.Block;
+import org.game3d.dev.game.scene.Chunk;
+import org.game3d.dev.game.scene.Section;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Fills chunk sections from seeded noise: a fractal heightmap for the surface, coarse 3D noise for caves and
+ * layers of block types by depth. The result only depends on the seed and the chunk origin, never on which
+ * thread generates a chunk or in which order, so the same seed always yields bit-identical chunks.
+ * <p>
+ * The heightmap octaves are evaluated once per column and the cave noise only on a lattice every
+ * {@value #CAVE_CELL} blocks, interpolated in between.
+ */
+public class TerrainGenerator {
+    private static final int CAVE_CELL = 4;
+    private static final int HEIGHT_OCTAVES = 5;
+    private static final double HEIGHT_FREQUENCY = 1.0 / 96;
+    private static final double CONTINENT_FREQUENCY = 1.0 / 512;
+    private static final double CAVE_FREQUENCY_XZ = 1.0 / 28;
+    private static final double CAVE_FREQUENCY_Y = 1.0 / 16;
+    private static final double CAVE_THRESHOLD = 0.32;
+    private static final int DIRT_DEPTH = 3;
+
+    @Getter private final long seed;
+    @Getter private final int height;
+    @Getter private final int seaLevel;
+    private final Noise heightNoise;
+    private final Noise continentNoise;
+    private final Noise caveNoise;
+    private final ThreadLocal<Scratch> scratch;
+
+    public TerrainGenerator(long seed, int height) {
+        this.seed = seed;
+        this.height = height;
+        this.seaLevel = height * 3 / 8;
+        this.heightNoise = new Noise(seed);
+        this.continentNoise = new Noise(seed + 1);
+        this.caveNoise = new Noise(seed + 2);
+        this.scratch = ThreadLocal.withInitial(Scratch::new);
+    }
+
+    public int getSurfaceHeight(int x, int z) {
+        double continent = this.continentNoise.noise(x * CONTINENT_FREQUENCY, z * CONTINENT_FREQUENCY);
+        double hills = this.heightNoise.fractal(x * HEIGHT_FREQUENCY, z * HEIGHT_FREQUENCY, HEIGHT_OCTAVES, 0.5);
+        double amplitude = this.height * (0.15 + 0.2 * (continent + 1) * 0.5);
+        int surface = (int) Math.floor(this.height * 0.4 + continent * this.height * 0.1 + hills * amplitude);
+        return Math.clamp(surface, 1, this.height - 2);
+    }
+
+    public void generate(@NotNull Chunk chunk) {
+        int originX = chunk.getPosition().x;
+        int originZ = chunk.getPosition().y;
+        int size = Chunk.SIZE;
+        Scratch scratch = this.scratch.get();
+
+        int[] surface = scratch.surface;
+        int maxSurface = 0;
+        for (int z = 0; z < size; z++) {
+            for (int x = 0; x < size; x++) {
+                int top = this.getSurfaceHeight(originX + x, originZ + z);
+                surface[z * size + x] = top;
+                maxSurface = Math.max(maxSurface, top);
+            }
+        }
+        this.sampleCaves(scratch, originX, originZ, size, maxSurface + 1, size);
+
+        int air = Block.AIR;
+        int grass = Block.GRASS;
+        int dirt = Block.DIRT;
+        int sand = Block.SAND;
+        int stone = Block.STONE;
+        int bedrock = Block.BEDROCK;
+
+        int[] blocks = scratch.blocks;
+        for (Section section : chunk.getSections()) {
+            int originY = section.getOriginY();
+            if (originY > maxSurface) {
+                section.getStorage().fill(air);
+                continue;
+            }
+            int index = 0;
+            for (int y = originY; y < originY + Section.SIZE; y++) {
+                for (int z = 0; z < size; z++) {
+                    for (int x = 0; x < size; x++, index++) {
+                        int top = surface[z * size + x];
+                        int block;
+                        if (y == 0) {
+                            block = bedrock;
+                        } else if (y > top) {
+                            block = air;
+                        } else if (this.isCave(scratch, x, y, z, top)) {
+                            block = air;
+                        } else if (y > top - DIRT_DEPTH) {
+                            boolean beach = top <= this.seaLevel + 1;
+                            block = beach ? sand : (y == top ? grass : dirt);
+                        } else {
+                            block = stone;
+                        }
+                        blocks[index] = block;
+                    }
+                }
+            }
+            section.getStorage().load(blocks);
+        }
+    }
+
+    private void sampleCaves(@NotNull Scratch scratch, int originX, int originZ, int sizeX, int sizeY, int sizeZ) {
+        int cellsX = cells(sizeX);
+        int cellsY = cells(sizeY);
+        int cellsZ = cells(sizeZ);
+        scratch.ensureCapacity(cellsX * cellsY * cellsZ);
+        scratch.cellsX = cellsX;
+        scratch.cellsZ = cellsZ;
+        int index = 0;
+        for (int cy = 0; cy < cellsY; cy++) {
+            for (int cz = 0; cz < cellsZ; cz++) {
+                for (int cx = 0; cx < cellsX; cx++) {
+                    scratch.caves[index++] = this.caveNoise.noise(
+                            (originX + cx * CAVE_CELL) * CAVE_FREQUENCY_XZ,
+                            cy * CAVE_CELL * CAVE_FREQUENCY_Y,
+                            (originZ + cz * CAVE_CELL) * CAVE_FREQUENCY_XZ
+                    );
+                }
+            }
+        }
+    }
+
+    private boolean isCave(@NotNull Scratch scratch, int x, int y, int z, int top) {
+        if (y < 3) {
+            return false;
+        }
+        int cx = x / CAVE_CELL;
+        int cy = y / CAVE_CELL;
+        int cz = z / CAVE_CELL;
+        double fx = (double) (x - cx * CAVE_CELL) / CAVE_CELL;
+        double fy = (double) (y - cy * CAVE_CELL) / CAVE_CELL;
+        double fz = (double) (z - cz * CAVE_CELL) / CAVE_CELL;
+
+        int strideY = scratch.cellsX * scratch.cellsZ;
+        int base = (cy * scratch.cellsZ + cz) * scratch.cellsX + cx;
+        double[] caves = scratch.caves;
+        double c00 = lerp(fx, caves[base], caves[base + 1]);
+        double c10 = lerp(fx, caves[base + scratch.cellsX], caves[base + scratch.cellsX + 1]);
+        double c01 = lerp(fx, caves[base + strideY], caves[base + strideY + 1]);
+        double c11 = lerp(fx, caves[base + strideY + scratch.cellsX], caves[base + strideY + scratch.cellsX + 1]);
+        double density = lerp(fy, lerp(fz, c00, c10), lerp(fz, c01, c11));
+
+        // Close caves off towards the surface so they only occasionally break through
+        double threshold = CAVE_THRESHOLD + Math.max(0, y - (top - 6)) * 0.04;
+        return density > threshold;
+    }
+
+    private static int cells(int size) {
+        // One lattice point past the last block so interpolation always has an upper neighbour
+        return (size - 1) / CAVE_CELL + 2;
+    }
+
+    private static double lerp(double t, double a, double b) {
+        return a + t * (b - a);
+    }
+
+    private static class Scratch {
+        private final int[] surface = new int[Chunk.SIZE * Chunk.SIZE];
+        private final int[] blocks = new int[Section.SIZE * Section.SIZE * Section.SIZE];
+        private double[] caves = new double[0];
+        private int cellsX;
+        private int cellsZ;
+
+        private void ensureCapacity(int cells) {
+            if (this.caves.length < cells) {
+                this.caves = new double[cells];
+            }
+        }
+    }
+}
@@ -0,0 +1,532 @@
+package org.game3d.dev.game.world;
+
+import lombok.Getter;
+import org.game3d.dev.engine.scene.Scene;
+import org.game3d.dev.game.scene.Block;
+import org.game3d.dev.game.scene.BlockAccess;
+import org.game3d.dev.game.scene.Chunk;
+import org.game3d.dev.game.scene.ChunkMesher;
+import org.game3d.dev.game.scene.Section;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.joml.Vector2i;
+import org.joml.Vector3f;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+/**
+ * Keeps the chunks within the render distance of the camera loaded. The chunks live in a fixed ring
+ * (a toroidal window indexed by chunk coordinate modulo the window size); when the camera crosses a chunk
+ * border the chunks that fall out of range are reset and reused for the ones coming into range.
+ * A chunk read by a running job is pinned and only recycled once that job has been released.
+ * <p>
+ * Blocks are ticked by {@link #tick()}: each non-empty section of a loaded chunk gets a few random ticks at
+ * uniformly sampled positions, and a change to a block schedules a tick for it and its neighbours if their type
+ * asks for one.
+ */
+public class World implements BlockAccess {
+    public static final int RANDOM_TICKS_PER_SECTION = 3;
+    public static final int SCHEDULED_TICK_BUDGET = 1024;
+    private static final IntPredicate RANDOM_TICKING = block -> Block.ticks(block, Block.TICK_RANDOM);
+
+    @Getter private final int height;
+    @Getter private final int renderDistance;
+    private final int windowSize;
+    private final Chunk[] chunks;
+    private final ChunkMap index;
+    private final Scene scene;
+    private final ChunkScheduler scheduler;
+    private final ThreadLocal<ChunkMesher> meshers;
+    private final ThreadLocal<LightEngine> chunkLighting;
+    private final LightEngine lighting;
+    @Getter private final TerrainGenerator generator;
+    private final WorldStorage storage;
+    private final List<Chunk> editedChunks;
+    @Getter private final BlockTicks scheduledTicks;
+    private final BlockTickHandler[] tickHandlers;
+    @Getter private final FluidSimulation fluids;
+    private long randomState;
+    @Getter private int centerX;
+    @Getter private int centerZ;
+    private boolean initialised;
+    private boolean recyclePending;
+    private Chunk lastAccessed;
+
+    public World(Scene scene, long seed, Path saveDirectory, int height, int renderDistance, int workerCount) {
+        if (height <= 0 || height % Section.SIZE != 0) {
+            throw new IllegalArgumentException(
+                    String.format("World height %d is not a multiple of %d", height, Section.SIZE)
+            );
+        }
+        this.scene = scene;
+        this.height = height;
+        this.renderDistance = renderDistance;
+        this.windowSize = renderDistance * 2 + 1;
+        this.chunks = new Chunk[this.windowSize * this.windowSize];
+        for (int i = 0; i < this.chunks.length; i++) {
+            this.chunks[i] = new Chunk(height / Section.SIZE, new Vector2i(), i);
+        }
+        this.index = new ChunkMap(this.chunks.length);
+        this.scheduler = new ChunkScheduler(workerCount);
+        this.meshers = ThreadLocal.withInitial(ChunkMesher::new);
+        this.chunkLighting = ThreadLocal.withInitial(() -> new LightEngine(height, null, null));
+        this.lighting = new LightEngine(height, this::getChunk, this::onLightChanged);
+        this.generator = new TerrainGenerator(seed, height);
+        this.storage = new WorldStorage(saveDirectory);
+        this.editedChunks = new ArrayList<>();
+        this.scheduledTicks = new BlockTicks(SCHEDULED_TICK_BUDGET);
+        this.tickHandlers = new BlockTickHandler[Block.MAX_TYPES];
+        this.fluids = new FluidSimulation(height, this::getChunk, this::isInRange, this::setBlock);
+        this.randomState = seed | 1;
+    }
+
+    /**
+     * Sets what a block type does when it is ticked. Which ticks it gets is decided by its registered properties.
+     */
+    public void setTickHandler(int blockId, @Nullable BlockTickHandler handler) {
+        this.tickHandlers[blockId] = handler;
+    }
+
+    /**
+     * Advances the world by one tick: runs the scheduled block ticks that are due, within the budget, the
+     * random ticks of every loaded section and the fluid simulation.
+     */
+    public void tick() {
+        this.scheduledTicks.tick(this::runScheduledTick);
+        this.fluids.tick();
+        for (Chunk chunk : this.chunks) {
+            if (chunk.getState().compareTo(Chunk.State.GENERATED) >= 0) {
+                this.randomTick(chunk);
+            }
+        }
+    }
+
+    /**
+     * Schedules a tick for the block at the given position, unless it already has one pending.
+     */
+    public boolean scheduleTick(int x, int y, int z, int delay) {
+        if (y < 0 || y >= this.height) {
+            return false;
+        }
+        return this.scheduledTicks.schedule(x, y, z, delay);
+    }
+
+    public void update(@NotNull Vector3f cameraPosition, long uploadBudgetNanos) {
+        // All edits of the last tick share one mesh job per chunk
+        for (Chunk chunk : this.editedChunks) {
+            this.tryScheduleMeshing(chunk);
+        }
+        this.editedChunks.clear();
+
+        int chunkX = Math.floorDiv((int) Math.floor(cameraPosition.x), Chunk.SIZE);
+        int chunkZ = Math.floorDiv((int) Math.floor(cameraPosition.z), Chunk.SIZE);
+        if (!this.initialised || chunkX != this.centerX || chunkZ != this.centerZ) {
+            this.initialised = true;
+            this.centerX = chunkX;
+            this.centerZ = chunkZ;
+            this.scheduler.recenter(chunkX, chunkZ, this.renderDistance);
+            this.recyclePending = true;
+        }
+        if (this.recyclePending) {
+            this.recycle();
+        }
+        this.scheduler.processUploads(uploadBudgetNanos);
+    }
+
+    public @Nullable Chunk getChunk(int chunkX, int chunkZ) {
+        Chunk chunk = this.index.get(chunkX, chunkZ);
+        if (chunk == null || chunk.getState() == Chunk.State.EMPTY) {
+            return null;
+        }
+        return chunk;
+    }
+
+    /**
+     * @return whether the blocks of the column at block position ({@code x}, {@code z}) are available
+     */
+    public boolean isLoaded(int x, int z) {
+        Chunk chunk = this.getChunk(x >> Section.SHIFT, z >> Section.SHIFT);
+        return chunk != null && chunk.getState().compareTo(Chunk.State.GENERATED) >= 0;
+    }
+
+    @Override
+    public int getBlockId(int x, int y, int z) {
+        if (y < 0 || y >= this.height) {
+            return Block.AIR;
+        }
+        int chunkX = x >> Section.SHIFT;
+        int chunkZ = z >> Section.SHIFT;
+        // Ray casts and other walks through the world ask for many blocks of the same chunk in a row
+        Chunk chunk = this.lastAccessed;
+        if (chunk == null || chunk.getChunkX() != chunkX || chunk.getChunkZ() != chunkZ) {
+            chunk = this.getChunk(chunkX, chunkZ);
+            if (chunk == null) {
+                return Block.AIR;
+            }
+            this.lastAccessed = chunk;
+        }
+        if (chunk.getState().compareTo(Chunk.State.GENERATED) < 0) {
+            return Block.AIR;
+        }
+        return chunk.getBlockId(x & Section.MASK, y, z & Section.MASK);
+    }
+
+    @Override
+    public int getLight(int x, int y, int z) {
+        if (y >= this.height) {
+            return FULL_SKY_LIGHT;
+        }
+        if (y < 0) {
+            return 0;
+        }
+        Chunk chunk = this.getChunk(Math.floorDiv(x, Chunk.SIZE), Math.floorDiv(z, Chunk.SIZE));
+        if (chunk == null || chunk.getState().compareTo(Chunk.State.GENERATED) < 0) {
+            return FULL_SKY_LIGHT;
+        }
+        return chunk.getLight(Math.floorMod(x, Chunk.SIZE), y, Math.floorMod(z, Chunk.SIZE));
+    }
+
+    /**
+     * Changes a block in a loaded chunk. The affected sections, including those of neighbouring chunks when
+     * the block is on a chunk border, are re-meshed on the next {@link #update(Vector3f, long)}, together with
+     * every section whose light changed.
+     *
+     * @return the previous block, or -1 if the position is not loaded
+     */
+    public int setBlock(int x, int y, int z, int blockId) {
+        if (y < 0 || y >= this.height) {
+            return -1;
+        }
+        int chunkX = Math.floorDiv(x, Chunk.SIZE);
+        int chunkZ = Math.floorDiv(z, Chunk.SIZE);
+        Chunk chunk = this.getChunk(chunkX, chunkZ);
+        if (chunk == null || chunk.getState().compareTo(Chunk.State.GENERATED) < 0) {
+            return -1;
+        }
+        int localX = Math.floorMod(x, Chunk.SIZE);
+        int localZ = Math.floorMod(z, Chunk.SIZE);
+        int old = chunk.setBlock(localX, y, localZ, blockId);
+        if (old == blockId) {
+            return old;
+        }
+        this.queueEdit(chunk);
+        this.lighting.update(x, y, z, blockId);
+        this.notifyNeighbours(x, y, z);
+        this.fluids.markActive(x, y, z);
+
+        int minX = localX == 0 ? -1 : 0;
+        int maxX = localX == Chunk.SIZE - 1 ? 1 : 0;
+        int minZ = localZ == 0 ? -1 : 0;
+        int maxZ = localZ == Chunk.SIZE - 1 ? 1 : 0;
+        for (int dz = minZ; dz <= maxZ; dz++) {
+            for (int dx = minX; dx <= maxX; dx++) {
+                if (dx == 0 && dz == 0) {
+                    continue;
+                }
+                Chunk neighbour = this.getChunk(chunkX + dx, chunkZ + dz);
+                if (neighbour != null && neighbour.getState().compareTo(Chunk.State.MESHING) >= 0) {
+                    neighbour.markDirtyAround(y);
+                    this.queueEdit(neighbour);
+                }
+            }
+        }
+        return old;
+    }
+
+    public int getLoadedCount() {
+        int count = 0;
+        for (Chunk chunk : this.chunks) {
+            if (chunk.getState().compareTo(Chunk.State.GENERATED) >= 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public void cleanup() {
+        // Waits for running jobs, so no worker is still writing to a chunk that is saved below
+        this.scheduler.cleanup();
+        for (Chunk chunk : this.chunks) {
+            this.save(chunk);
+        }
+        this.storage.cleanup();
+    }
+
+    /**
+     * Returns a random int in [0, bound). Ticks only run on the update thread, so a plain xorshift will do.
+     */
+    public int nextRandom(int bound) {
+        long state = this.randomState;
+        state ^= state << 13;
+        state ^= state >>> 7;
+        state ^= state << 17;
+        this.randomState = state;
+        return (int) (((state >>> 32) * bound) >>> 32);
+    }
+
+    private void runScheduledTick(int x, int y, int z) {
+        // The chunk was unloaded since: the tick is dropped, scheduled ticks are not saved
+        if (!this.isLoaded(x, z)) {
+            return;
+        }
+        int block = this.getBlockId(x, y, z);
+        BlockTickHandler handler = this.tickHandlers[block];
+        if (handler != null && Block.ticks(block, Block.TICK_SCHEDULED)) {
+            handler.tick(this, x, y, z, block);
+        }
+    }
+
+    private void randomTick(@NotNull Chunk chunk) {
+        int originX = chunk.getPosition().x;
+        int originZ = chunk.getPosition().y;
+        for (int i = 0; i < this.height >> Section.SHIFT; i++) {
+            Section section = chunk.getSection(i);
+            // Only the palette is looked at, so sections without any ticking block cost next to nothing
+            if (section.isEmpty() || !section.getStorage().anyMatch(RANDOM_TICKING)) {
+                continue;
+            }
+            for (int n = 0; n < RANDOM_TICKS_PER_SECTION; n++) {
+                int index = this.nextRandom(Section.VOLUME);
+                int block = section.getStorage().getAt(index);
+                BlockTickHandler handler = this.tickHandlers[block];
+                if (handler != null && Block.ticks(block, Block.TICK_RANDOM)) {
+                    int x = index & Section.MASK;
+                    int z = (index >> Section.SHIFT) & Section.MASK;
+                    int y = index >> (Section.SHIFT * 2);
+                    handler.tick(this, originX + x, section.getOriginY() + y, originZ + z, block);
+                }
+            }
+        }
+    }
+
+    /**
+     * Schedules ticks for the changed block and the six blocks touching it, if their types tick on changes.
+     */
+    private void notifyNeighbours(int x, int y, int z) {
+        this.scheduleUpdate(x, y, z);
+        this.scheduleUpdate(x - 1, y, z);
+        this.scheduleUpdate(x + 1, y, z);
+        this.scheduleUpdate(x, y - 1, z);
+        this.scheduleUpdate(x, y + 1, z);
+        this.scheduleUpdate(x, y, z - 1);
+        this.scheduleUpdate(x, y, z + 1);
+    }
+
+    private void scheduleUpdate(int x, int y, int z) {
+        int block = this.getBlockId(x, y, z);
+        if (Block.ticks(block, Block.TICK_SCHEDULED)) {
+            this.scheduleTick(x, y, z, Block.getTickDelay(block));
+        }
+    }
+
+    private void recycle() {
+        boolean blocked = false;
+        int minX = this.centerX - this.renderDistance;
+        int minZ = this.centerZ - this.renderDistance;
+        for (int slotZ = 0; slotZ < this.windowSize; slotZ++) {
+            for (int slotX = 0; slotX < this.windowSize; slotX++) {
+                int chunkX = minX + Math.floorMod(slotX - minX, this.windowSize);
+                int chunkZ = minZ + Math.floorMod(slotZ - minZ, this.windowSize);
+                Chunk chunk = this.chunks[slotZ * this.windowSize + slotX];
+                if (chunk.getState() != Chunk.State.EMPTY && chunk.getChunkX() == chunkX && chunk.getChunkZ() == chunkZ) {
+                    continue;
+                }
+                if (chunk.isPinned()) {
+                    blocked = true;
+                    continue;
+                }
+                this.save(chunk);
+                this.index.remove(ChunkMap.key(chunk.getChunkX(), chunk.getChunkZ()), chunk);
+                chunk.reset(chunkX * Chunk.SIZE, chunkZ * Chunk.SIZE);
+                this.index.put(ChunkMap.key(chunkX, chunkZ), chunk);
+                this.scheduleGeneration(chunk);
+            }
+        }
+        this.recyclePending = blocked;
+    }
+
+    private void scheduleGeneration(@NotNull Chunk chunk) {
+        chunk.setState(Chunk.State.GENERATING);
+        chunk.pin();
+        this.scheduler.submit(chunk.getChunkX(), chunk.getChunkZ(), () -> {
+            boolean loaded = this.storage.load(chunk);
+            if (!loaded) {
+                this.generator.generate(chunk);
+            }
+            // Light is not saved; it only depends on the blocks and is cheaper to recompute than to store
+            this.chunkLighting.get().initialise(chunk);
+            return loaded;
+        }, loaded -> {
+            chunk.setUnsaved(!loaded);
+            this.onGenerated(chunk);
+        }, () -> {
+            chunk.unpin();
+            if (chunk.getState() == Chunk.State.GENERATING) {
+                // Cancelled: generate it again if the camera comes back before the slot is reused
+                chunk.setState(Chunk.State.EMPTY);
+                this.recyclePending = true;
+            }
+        });
+    }
+
+    private void onGenerated(@NotNull Chunk chunk) {
+        chunk.setState(Chunk.State.GENERATED);
+        this.lighting.connect(chunk);
+        // Fluid next to a chunk that is not loaded stops, as it reads bedrock there
+        this.fluids.activate(chunk);
+        chunk.markDirty();
+        for (int dz = -1; dz <= 1; dz++) {
+            for (int dx = -1; dx <= 1; dx++) {
+                Chunk neighbour = this.getChunk(chunk.getChunkX() + dx, chunk.getChunkZ() + dz);
+                if (neighbour == null) {
+                    continue;
+                }
+                // Neighbours meshed before this chunk existed still carry faces along the shared border
+                if (neighbour.getState().compareTo(Chunk.State.MESHING) >= 0) {
+                    neighbour.markDirty();
+                }
+                this.tryScheduleMeshing(neighbour);
+            }
+        }
+    }
+
+    /**
+     * Re-meshes the sections with faces looking into a block whose light changed.
+     */
+    private void onLightChanged(@NotNull Chunk chunk, int localX, int y, int localZ) {
+        this.markLightDirty(chunk, y);
+        if (localX == 0 || localX == Chunk.SIZE - 1) {
+            this.markLightDirty(this.getChunk(chunk.getChunkX() + (localX == 0 ? -1 : 1), chunk.getChunkZ()), y);
+        }
+        if (localZ == 0 || localZ == Chunk.SIZE - 1) {
+            this.markLightDirty(this.getChunk(chunk.getChunkX(), chunk.getChunkZ() + (localZ == 0 ? -1 : 1)), y);
+        }
+    }
+
+    private void markLightDirty(@Nullable Chunk chunk, int y) {
+        // Chunks that were never meshed are fully dirty already
+        if (chunk != null && chunk.getState().compareTo(Chunk.State.MESHING) >= 0) {
+            chunk.markDirtyAround(y);
+            this.queueEdit(chunk);
+        }
+    }
+
+    private void queueEdit(@NotNull Chunk chunk) {
+        if (!this.editedChunks.contains(chunk)) {
+            this.editedChunks.add(chunk);
+        }
+    }
+
+    private void save(@NotNull Chunk chunk) {
+        if (chunk.isUnsaved() && chunk.getState().compareTo(Chunk.State.GENERATED) >= 0) {
+            this.storage.save(chunk);
+            chunk.setUnsaved(false);
+        }
+    }
+
+    private void tryScheduleMeshing(@NotNull Chunk chunk) {
+        Chunk.State state = chunk.getState();
+        if (state != Chunk.State.GENERATED && (state != Chunk.State.READY || !chunk.isMeshDirty())) {
+            return;
+        }
+        if (!this.isInRange(chunk.getChunkX(), chunk.getChunkZ())) {
+            return;
+        }
+
+        Chunk[] neighbourhood = new Chunk[9];
+        for (int dz = -1; dz <= 1; dz++) {
+            for (int dx = -1; dx <= 1; dx++) {
+                int chunkX = chunk.getChunkX() + dx;
+                int chunkZ = chunk.getChunkZ() + dz;
+                if (!this.isInRange(chunkX, chunkZ)) {
+                    continue;
+                }
+                Chunk neighbour = this.getChunk(chunkX, chunkZ);
+                if (neighbour == null || neighbour.getState().compareTo(Chunk.State.GENERATED) < 0) {
+                    return;
+                }
+                neighbourhood[(dz + 1) * 3 + dx + 1] = neighbour;
+            }
+        }
+        this.scheduleMeshing(chunk, neighbourhood);
+    }
+
+    private void scheduleMeshing(@NotNull Chunk chunk, Chunk @NotNull [] neighbourhood) {
+        chunk.setState(Chunk.State.MESHING);
+        int[] sections = chunk.takeDirtySections();
+        for (Chunk neighbour : neighbourhood) {
+            if (neighbour != null) {
+                neighbour.pin();
+            }
+        }
+
+        Neighbourhood blocks = new Neighbourhood(neighbourhood, chunk.getPosition().x, chunk.getPosition().y,
+                this.height);
+        this.scheduler.submit(
+                chunk.getChunkX(), chunk.getChunkZ(),
+                () -> chunk.buildMeshes(this.meshers.get(), blocks, sections),
+                meshData -> {
+                    chunk.uploadMeshes(this.scene, sections, meshData);
+                    chunk.setState(Chunk.State.READY);
+                },
+                () -> {
+                    for (Chunk neighbour : neighbourhood) {
+                        if (neighbour != null) {
+                            neighbour.unpin();
+                        }
+                    }
+                    if (chunk.getState() == Chunk.State.MESHING) {
+                        chunk.setState(Chunk.State.GENERATED);
+                        chunk.markDirty(sections);
+                    }
+                    this.tryScheduleMeshing(chunk);
+                }
+        );
+    }
+
+    private boolean isInRange(int chunkX, int chunkZ) {
+        return Math.abs(chunkX - this.centerX) <= this.renderDistance
+                && Math.abs(chunkZ - this.centerZ) <= this.renderDistance;
+    }
+
+    /**
+     * Block access for a mesh job: the chunk being meshed and its pinned neighbours, captured when the job
+     * was submitted so the worker never looks at ring slots that may be recycled meanwhile.
+     */
+    private record Neighbourhood(Chunk[] chunks, int originX, int originZ, int height)
+            implements BlockAccess {
+        @Override
+        public int getBlockId(int x, int y, int z) {
+            if (y < 0 || y >= this.height) {
+                return Block.AIR;
+            }
+            int dx = Math.floorDiv(x - this.originX, Chunk.SIZE);
+            int dz = Math.floorDiv(z - this.originZ, Chunk.SIZE);
+            Chunk chunk = this.chunks[(dz + 1) * 3 + dx + 1];
+            if (chunk == null) {
+                return Block.AIR;
+            }
+            return chunk.getBlockId(Math.floorMod(x, Chunk.SIZE), y, Math.floorMod(z, Chunk.SIZE));
+        }
+
+        @Override
+        public int getLight(int x, int y, int z) {
+            if (y >= this.height) {
+                return FULL_SKY_LIGHT;
+            }
+            if (y < 0) {
+                return 0;
+            }
+            int dx = Math.floorDiv(x - this.originX, Chunk.SIZE);
+            int dz = Math.floorDiv(z - this.originZ, Chunk.SIZE);
+            Chunk chunk = this.chunks[(dz + 1) * 3 + dx + 1];
+            if (chunk == null) {
+                return FULL_SKY_LIGHT;
+            }
+            return chunk.getLight(Math.floorMod(x, Chunk.SIZE), y, Math.floorMod(z, Chunk.SIZE));
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package org.game3d.dev.game.world;
+
+import org.game3d.dev.game.scene.Chunk;
+import org.game3d.dev.game.scene.Section;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.lwjgl.util.lz4.LZ4.*;
+
+/**
+ * Persists chunks in {@link RegionFile}s below a save directory. Saves take a snapshot of the chunk on the
+ * calling thread and compress and write it on a background thread; until that write has finished, loads of
+ * the chunk are answered from the snapshot. Loads may run on any thread.
+ */
+public class WorldStorage {
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 12;
+
+    private final Path directory;
+    private final Map<Long, RegionFile> regions;
+    private final Map<Long, byte[]> pendingSaves;
+    private final ExecutorService saver;
+    private final ThreadLocal<ByteBuffer[]> readBuffers;
+    private ByteBuffer rawBuffer;
+    private ByteBuffer compressedBuffer;
+    private volatile RuntimeException saveError;
+
+    public WorldStorage(@NotNull Path directory) {
+        this.directory = directory;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new RuntimeException("Error creating save directory [" + directory + "]", e);
+        }
+        this.regions = new ConcurrentHashMap<>();
+        this.pendingSaves = new ConcurrentHashMap<>();
+        this.saver = Executors.newSingleThreadExecutor(Thread.ofPlatform().daemon().name("chunk-saver").factory());
+        this.readBuffers = ThreadLocal.withInitial(() -> new ByteBuffer[1]);
+        this.rawBuffer = ByteBuffer.allocateDirect(0);
+        this.compressedBuffer = ByteBuffer.allocateDirect(0);
+    }
+
+    /**
+     * @return {@code false} if the chunk has never been saved (or was saved with a different height, or its saved
+     * data is corrupt), in which case it has to be generated
+     */
+    public boolean load(@NotNull Chunk chunk) {
+        int chunkX = chunk.getChunkX();
+        int chunkZ = chunk.getChunkZ();
+        byte[] snapshot = this.pendingSaves.get(ChunkMap.key(chunkX, chunkZ));
+        if (snapshot != null) {
+            return read(ByteBuffer.wrap(snapshot), chunk);
+        }
+
+        ByteBuffer buffer = this.region(chunkX, chunkZ).read(
+                Math.floorMod(chunkX, RegionFile.SIZE), Math.floorMod(chunkZ, RegionFile.SIZE), this::readBuffer
+        );
+        return buffer != null && read(buffer, chunk);
+    }
+
+    public void save(@NotNull Chunk chunk) {
+        this.checkSaveError();
+        int size = HEADER_BYTES;
+        for (Section section : chunk.getSections()) {
+            size += section.getStorage().getSerializedSize();
+        }
+        ByteBuffer snapshot = ByteBuffer.allocate(size);
+        snapshot.putInt(VERSION).putInt(Section.SIZE).putInt(chunk.getSections().length);
+        for (Section section : chunk.getSections()) {
+            section.getStorage().write(snapshot);
+        }
+
+        int chunkX = chunk.getChunkX();
+        int chunkZ = chunk.getChunkZ();
+        long key = ChunkMap.key(chunkX, chunkZ);
+        byte[] bytes = snapshot.array();
+        this.pendingSaves.put(key, bytes);
+        this.saver.execute(() -> {
+            try {
+                this.write(chunkX, chunkZ, bytes);
+            } catch (RuntimeException e) {
+                this.saveError = e;
+            } finally {
+                this.pendingSaves.remove(key, bytes);
+            }
+        });
+    }
+
+    public int getPendingSaveCount() {
+        return this.pendingSaves.size();
+    }
+
+    public void cleanup() {
+        this.saver.shutdown();
+        try {
+            if (!this.saver.awaitTermination(30, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("Timed out writing chunks to [" + this.directory + "]");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        this.regions.values().forEach(RegionFile::close);
+        this.regions.clear();
+        this.checkSaveError();
+    }
+
+    private void write(int chunkX, int chunkZ, byte @NotNull [] snapshot) {
+        if (this.rawBuffer.capacity() < snapshot.length) {
+            this.rawBuffer = ByteBuffer.allocateDirect(snapshot.length);
+            this.compressedBuffer = ByteBuffer.allocateDirect(LZ4_compressBound(snapshot.length));
+        }
+        this.rawBuffer.clear();
+        this.rawBuffer.put(snapshot).flip();
+        this.compressedBuffer.clear();
+        int compressedLength = LZ4_compress_default(this.rawBuffer, this.compressedBuffer);
+        if (compressedLength <= 0) {
+            throw new IllegalStateException(String.format("Failed to compress chunk [%d, %d]", chunkX, chunkZ));
+        }
+        this.compressedBuffer.limit(compressedLength);
+        this.region(chunkX, chunkZ).write(
+                Math.floorMod(chunkX, RegionFile.SIZE), Math.floorMod(chunkZ, RegionFile.SIZE),
+                snapshot.length, this.compressedBuffer
+        );
+    }
+
+    private @NotNull RegionFile region(int chunkX, int chunkZ) {
+        int regionX = Math.floorDiv(chunkX, RegionFile.SIZE);
+        int regionZ = Math.floorDiv(chunkZ, RegionFile.SIZE);
+        return this.regions.computeIfAbsent(ChunkMap.key(regionX, regionZ), _ -> new RegionFile(
+                this.directory.resolve(String.format("r.%d.%d.region", regionX, regionZ))
+        ));
+    }
+
+    private ByteBuffer readBuffer(int size) {
+        ByteBuffer[] buffer = this.readBuffers.get();
+        if (buffer[0] == null || buffer[0].capacity() < size) {
+            buffer[0] = ByteBuffer.allocateDirect(size);
+        }
+        return buffer[0];
+    }
+
+    private void checkSaveError() {
+        RuntimeException error = this.saveError;
+        if (error != null) {
+            this.saveError = null;
+            throw new RuntimeException("Error saving chunks to [" + this.directory + "]", error);
+        }
+    }
+
+    private static boolean read(@NotNull ByteBuffer buffer, @NotNull Chunk chunk) {
+        if (buffer.getInt() != VERSION || buffer.getInt() != Section.SIZE
+                || buffer.getInt() != chunk.getSections().length) {
+            return false;
+        }
+        try {
+            for (Section section : chunk.getSections()) {
+                section.getStorage().read(buffer);
+            }
+        } catch (IllegalStateException | BufferUnderflowException e) {
+            // Sections read so far are overwritten when the chunk is generated instead
+            return false;
+        }
+        return true;
+    }
+}
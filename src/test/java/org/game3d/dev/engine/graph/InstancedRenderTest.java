@@ -0,0 +1,141 @@
+package org.game3d.dev.engine.graph;
+
+import org.game3d.dev.engine.scene.Scene;
+import org.game3d.dev.engine.scene.lights.SceneLights;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.lwjgl.glfw.GLFW.*;
+import static org.lwjgl.opengl.GL.createCapabilities;
+import static org.lwjgl.opengl.GL11.GL_NO_ERROR;
+import static org.lwjgl.opengl.GL11.glGetError;
+import static org.lwjgl.system.MemoryUtil.NULL;
+
+/**
+ * Renders scenes into a hidden window and counts the draw calls of the scene render. Needs an OpenGL 3.2 core
+ * context; without a display the tests are skipped. On a machine without a GPU they run under
+ * {@code xvfb-run} with Mesa's llvmpipe software renderer.
+ */
+class InstancedRenderTest {
+    private static final int ENTITIES = 500;
+
+    private long window;
+    private Scene scene;
+    private SceneRender sceneRender;
+
+    @BeforeEach
+    void createContext() {
+        assumeTrue(glfwInit(), "no display to create an OpenGL context on");
+        glfwDefaultWindowHints();
+        glfwWindowHint(GLFW_VISIBLE, GLFW_FALSE);
+        glfwWindowHint(GLFW_CONTEXT_VERSION_MAJOR, 3);
+        glfwWindowHint(GLFW_CONTEXT_VERSION_MINOR, 2);
+        glfwWindowHint(GLFW_OPENGL_PROFILE, GLFW_OPENGL_CORE_PROFILE);
+        glfwWindowHint(GLFW_OPENGL_FORWARD_COMPAT, GLFW_TRUE);
+        this.window = glfwCreateWindow(64, 64, "InstancedRenderTest", NULL, NULL);
+        if (this.window == NULL) {
+            glfwTerminate();
+        }
+        assumeTrue(this.window != NULL, "no OpenGL 3.2 core context available");
+        glfwMakeContextCurrent(this.window);
+        createCapabilities();
+
+        this.scene = new Scene(64, 64);
+        this.scene.setSceneLights(new SceneLights());
+        this.sceneRender = new SceneRender(null);
+    }
+
+    @AfterEach
+    void destroyContext() {
+        if (this.window == NULL) {
+            return;
+        }
+        this.sceneRender.cleanup();
+        this.scene.cleanup();
+        this.scene.getTextureCache().cleanup();
+        glfwDestroyWindow(this.window);
+        glfwTerminate();
+    }
+
+    @Test
+    void staticModelIsDrawnWithOneCallPerMesh() {
+        this.scene.addModel(quadModel("one", 1, List.of()));
+        this.scene.addModel(quadModel("two", 2, List.of()));
+        for (int i = 0; i < ENTITIES; i++) {
+            this.createEntity("one", i);
+            this.createEntity("two", i);
+        }
+
+        this.render();
+
+        assertEquals(3, this.sceneRender.getDrawCallCount());
+        assertEquals(3 * ENTITIES, this.sceneRender.getInstanceCount());
+        assertEquals(0, this.sceneRender.getBoneUploadCount());
+
+        // Moving, adding and removing entities keeps the single call
+        this.scene.getEntities().setPosition(this.createEntity("one", ENTITIES), 1, 2, 3);
+        this.scene.removeEntity(this.createEntity("one", ENTITIES + 1));
+        this.render();
+
+        assertEquals(3, this.sceneRender.getDrawCallCount());
+        assertEquals(3 * ENTITIES + 1, this.sceneRender.getInstanceCount());
+    }
+
+    @Test
+    void animatedModelIsDrawnPerEntity() {
+        this.scene.addModel(quadModel("static", 1, List.of()));
+        this.scene.addModel(quadModel("animated", 1, List.of(new Model.Animation("idle", 1, List.of()))));
+        for (int i = 0; i < ENTITIES; i++) {
+            this.createEntity("static", i);
+        }
+        for (int i = 0; i < 10; i++) {
+            this.createEntity("animated", i);
+        }
+
+        this.render();
+
+        assertEquals(1 + 10, this.sceneRender.getDrawCallCount());
+        assertEquals(ENTITIES + 10, this.sceneRender.getInstanceCount());
+        assertEquals(10, this.sceneRender.getBoneUploadCount());
+    }
+
+    private int createEntity(@NotNull String modelId, int i) {
+        int entity = this.scene.createEntity(modelId);
+        this.scene.getEntities().setPosition(entity, i % 20, i / 20 % 20, -5 - i / 400);
+        return entity;
+    }
+
+    private void render() {
+        this.scene.getEntities().updateModelMatrices();
+        this.sceneRender.render(this.scene);
+        assertEquals(GL_NO_ERROR, glGetError());
+    }
+
+    /**
+     * @return a model with one unit quad per material
+     */
+    private static @NotNull Model quadModel(@NotNull String id, int materials,
+                                            @NotNull List<Model.Animation> animations) {
+        List<Material> materialList = new ArrayList<>();
+        for (int i = 0; i < materials; i++) {
+            Material material = new Material();
+            material.getMeshes().add(new Mesh(
+                    new float[]{0, 0, 0, 1, 0, 0, 1, 1, 0, 0, 1, 0},
+                    new float[]{0, 0, 1, 0, 0, 1, 0, 0, 1, 0, 0, 1},
+                    new float[]{1, 0, 0, 1, 0, 0, 1, 0, 0, 1, 0, 0},
+                    new float[]{0, 1, 0, 0, 1, 0, 0, 1, 0, 0, 1, 0},
+                    new float[]{0, 0, 1, 0, 1, 1, 0, 1},
+                    new int[]{0, 1, 2, 2, 3, 0}
+            ));
+            materialList.add(material);
+        }
+        return new Model(id, materialList, animations);
+    }
+}
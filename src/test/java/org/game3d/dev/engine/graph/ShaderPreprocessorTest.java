@@ -0,0 +1,122 @@
+package org.game3d.dev.engine.graph;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShaderPreprocessorTest {
+    private static final Pattern LINE = Pattern.compile("#line (\\d+) (\\d+)");
+    private static final String[] SCENE_FEATURES = {"SKINNED", "NORMAL_MAP", "FOG", "ATLAS"};
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void includeIsFollowedByLineDirective() throws IOException {
+        Path shader = this.write("main.frag", "#version 330\n#include \"a.glsl\"\nvoid main() {}\n");
+        this.write("a.glsl", "float a;\nfloat b;\n");
+
+        String source = ShaderPreprocessor.process(shader.toString(), List.of());
+
+        assertEquals("#version 330\n#line 1 1\nfloat a;\nfloat b;\n\n#line 3 0\nvoid main() {}\n", source);
+    }
+
+    @Test
+    void definesAreFollowedByLineDirective() throws IOException {
+        Path shader = this.write("main.frag", "// Comment\n#version 330\nvoid main() {}\n");
+
+        String source = ShaderPreprocessor.process(shader.toString(), List.of("FOG", "ATLAS"));
+
+        assertEquals("// Comment\n#version 330\n#define FOG\n#define ATLAS\n#line 3 0\nvoid main() {}\n", source);
+    }
+
+    @Test
+    void nestedAndRepeatedIncludesMapBackToTheirFiles() throws IOException {
+        Path shader = this.write("main.frag", "#version 330\n#include \"lib/a.glsl\"\n#include \"b.glsl\"\n"
+                + "#include \"lib/a.glsl\"\nvoid main() {\n    b();\n}\n");
+        Path a = this.write("lib/a.glsl", "#include \"../b.glsl\"\nfloat a() {\n    return b();\n}");
+        Path b = this.write("b.glsl", "float b() {\n    return 1.0;\n}\n");
+
+        String source = ShaderPreprocessor.process(shader.toString(), List.of("FOG"));
+
+        // b.glsl is expanded inside a.glsl and nowhere else
+        assertEquals(1, source.split("float b\\(\\)", -1).length - 1);
+        assertLinesMapBack(source, List.of(shader, a, b), List.of("FOG"));
+    }
+
+    @Test
+    void sceneShadersMapBackToTheirFiles() {
+        Path vertex = Path.of("resources", "shaders", "scene.vert");
+        Path fragment = Path.of("resources", "shaders", "scene.frag");
+        Path lighting = Path.of("resources", "shaders", "lighting.glsl");
+        for (int features = 0; features < 1 << SCENE_FEATURES.length; features++) {
+            List<String> defines = new ArrayList<>();
+            for (int i = 0; i < SCENE_FEATURES.length; i++) {
+                if ((features & 1 << i) != 0) {
+                    defines.add(SCENE_FEATURES[i]);
+                }
+            }
+            assertLinesMapBack(ShaderPreprocessor.process(vertex.toString(), defines), List.of(vertex), defines);
+            assertLinesMapBack(ShaderPreprocessor.process(fragment.toString(), defines), List.of(fragment, lighting),
+                    defines);
+        }
+    }
+
+    /**
+     * Follows the {@code #line} directives of a processed source the way the compiler does and checks that every
+     * line other than the inserted defines is the line of the file that the numbering attributes it to.
+     *
+     * @param files the files by source string number
+     */
+    private static void assertLinesMapBack(@NotNull String source, @NotNull List<Path> files,
+                                           @NotNull List<String> defines) {
+        List<String[]> fileLines = new ArrayList<>();
+        for (Path file : files) {
+            try {
+                fileLines.add(Files.readString(file).split("\n", -1));
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        int sourceNumber = 0;
+        int line = 1;
+        boolean versionSeen = false;
+        for (String text : source.split("\n", -1)) {
+            Matcher directive = LINE.matcher(text);
+            if (directive.matches()) {
+                line = Integer.parseInt(directive.group(1));
+                sourceNumber = Integer.parseInt(directive.group(2));
+                continue;
+            }
+            boolean inserted = versionSeen && sourceNumber == 0 && text.startsWith("#define ")
+                    && defines.contains(text.substring("#define ".length()));
+            if (!inserted) {
+                String[] lines = fileLines.get(sourceNumber);
+                String location = files.get(sourceNumber) + ":" + line;
+                assertTrue(line <= lines.length, location + " does not exist");
+                // An include of a file that was already expanded is left as an empty line
+                if (!(text.isEmpty() && lines[line - 1].startsWith("#include"))) {
+                    assertEquals(lines[line - 1], text, location);
+                }
+            }
+            versionSeen |= text.startsWith("#version");
+            line++;
+        }
+    }
+
+    private @NotNull Path write(@NotNull String name, @NotNull String content) throws IOException {
+        Path file = this.directory.resolve(name);
+        Files.createDirectories(file.getParent());
+        return Files.writeString(file, content);
+    }
+}
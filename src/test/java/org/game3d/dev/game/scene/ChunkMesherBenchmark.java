@@ -0,0 +1,69 @@
+package org.game3d.dev.game.scene;
+
+import org.game3d.dev.game.world.TerrainGenerator;
+import org.joml.Vector2i;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Meshing throughput of the chunk mesher, in full-height chunks per second per thread. {@code terrain} meshes
+ * a generated chunk, {@code checkerboard} fills every section with a 3D checkerboard, the worst case for both
+ * greedy merging and ambient occlusion since no two faces merge and every vertex has occluding neighbours.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChunkMesherBenchmark {
+    private static final long SEED = 20240613L;
+    private static final int HEIGHT = 256;
+
+    @Param({"terrain", "checkerboard"})
+    private String blocks;
+
+    private ChunkMesher mesher;
+    private Chunk chunk;
+    private BlockAccess neighbours;
+    private int[] sections;
+
+    @Setup
+    public void setup() {
+        this.mesher = new ChunkMesher();
+        this.chunk = new Chunk(HEIGHT / Section.SIZE, new Vector2i(), 0);
+        if (this.blocks.equals("terrain")) {
+            new TerrainGenerator(SEED, HEIGHT).generate(this.chunk);
+        } else {
+            for (int y = 0; y < HEIGHT; y++) {
+                for (int z = 0; z < Chunk.SIZE; z++) {
+                    for (int x = 0; x < Chunk.SIZE; x++) {
+                        if ((x + y + z) % 2 == 0) {
+                            this.chunk.setBlock(x, y, z, Block.STONE);
+                        }
+                    }
+                }
+            }
+        }
+        // Neighbouring chunks are left out, every face on the chunk border is visible
+        this.neighbours = (x, y, z) -> x >= 0 && x < Chunk.SIZE && z >= 0 && z < Chunk.SIZE && y >= 0 && y < HEIGHT
+                ? this.chunk.getBlockId(x, y, z) : Block.AIR;
+        this.sections = new int[HEIGHT / Section.SIZE];
+        for (int i = 0; i < this.sections.length; i++) {
+            this.sections[i] = i;
+        }
+    }
+
+    @Benchmark
+    public ChunkMesher.MeshData[] meshChunk() {
+        return this.chunk.buildMeshes(this.mesher, this.neighbours, this.sections);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ChunkMesherBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,160 @@
+package org.game3d.dev.game.scene;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChunkMesherTest {
+    private static final BlockAccess AIR = (x, y, z) -> Block.AIR;
+
+    private final ChunkMesher mesher = new ChunkMesher();
+
+    @Test
+    void singleBlockHasSixFaces() {
+        Section section = new Section(0);
+        section.setBlock(5, 5, 5, Block.STONE);
+
+        ChunkMesher.MeshData mesh = this.mesher.mesh(section, 0, 0, AIR);
+
+        assertEquals(6, mesh.getQuadCount());
+        assertEquals(24, mesh.positions().length / 3);
+        for (int axis = 0; axis < 3; axis++) {
+            assertEquals(1, countFaces(mesh, axis, 1), "faces towards +" + axis);
+            assertEquals(1, countFaces(mesh, axis, -1), "faces towards -" + axis);
+        }
+        assertBounds(mesh, 5, 5, 5, 6, 6, 6);
+    }
+
+    @Test
+    void solidSectionMergesIntoSixQuads() {
+        Section section = new Section(0);
+        section.getStorage().fill(Block.STONE);
+
+        ChunkMesher.MeshData mesh = this.mesher.mesh(section, 0, 0, AIR);
+
+        assertEquals(6, mesh.getQuadCount());
+        for (int axis = 0; axis < 3; axis++) {
+            assertEquals(1, countFaces(mesh, axis, 1));
+            assertEquals(1, countFaces(mesh, axis, -1));
+        }
+        assertBounds(mesh, 0, 0, 0, Section.SIZE, Section.SIZE, Section.SIZE);
+    }
+
+    @Test
+    void solidSectionSurroundedBySolidBlocksIsEmpty() {
+        Section section = new Section(0);
+        section.getStorage().fill(Block.STONE);
+
+        ChunkMesher.MeshData mesh = this.mesher.mesh(section, 0, 0, (x, y, z) -> Block.STONE);
+
+        assertTrue(mesh.isEmpty());
+    }
+
+    @Test
+    void checkerboardFacesAreNeverMerged() {
+        Section section = new Section(0);
+        int blocks = 0;
+        for (int y = 0; y < Section.SIZE; y++) {
+            for (int z = 0; z < Section.SIZE; z++) {
+                for (int x = 0; x < Section.SIZE; x++) {
+                    if ((x + y + z) % 2 == 0) {
+                        section.setBlock(x, y, z, Block.STONE);
+                        blocks++;
+                    }
+                }
+            }
+        }
+
+        ChunkMesher.MeshData mesh = this.mesher.mesh(section, 0, 0, AIR);
+
+        // No two blocks share a face and no two faces of one plane share an edge
+        assertEquals(Section.VOLUME / 2, blocks);
+        assertEquals(6 * blocks, mesh.getQuadCount());
+    }
+
+    @Test
+    void faceAgainstSolidSectionBelowIsHidden() {
+        Section section = new Section(1);
+        section.setBlock(3, 0, 3, Block.STONE);
+        section.setBlock(8, Section.SIZE - 1, 8, Block.STONE);
+        BlockAccess solidBelow = (x, y, z) -> y < Section.SIZE ? Block.STONE : Block.AIR;
+
+        ChunkMesher.MeshData mesh = this.mesher.mesh(section, 0, 0, solidBelow);
+
+        assertEquals(11, mesh.getQuadCount());
+        assertEquals(1, countFaces(mesh, 1, -1));
+        assertEquals(2, countFaces(mesh, 1, 1));
+        // Positions are relative to the column, not to the section
+        assertBounds(mesh, 3, Section.SIZE, 3, 9, 2 * Section.SIZE, 9);
+    }
+
+    @Test
+    void faceAgainstSolidNeighbourChunkIsHidden() {
+        Section section = new Section(0);
+        section.setBlock(0, 4, 0, Block.STONE);
+        section.setBlock(Section.SIZE - 1, 4, Section.SIZE - 1, Block.STONE);
+        int originX = Section.SIZE;
+        int originZ = -Section.SIZE;
+        BlockAccess solidWest = (x, y, z) -> x < originX ? Block.STONE : Block.AIR;
+
+        ChunkMesher.MeshData mesh = this.mesher.mesh(section, originX, originZ, solidWest);
+
+        assertEquals(11, mesh.getQuadCount());
+        assertEquals(1, countFaces(mesh, 0, -1));
+        assertEquals(2, countFaces(mesh, 0, 1));
+        assertBounds(mesh, 0, 4, 0, Section.SIZE, 5, Section.SIZE);
+    }
+
+    @Test
+    void facesOfNeighbourBlocksAreLeftToTheirSection() {
+        Section section = new Section(0);
+        section.setBlock(0, 0, 0, Block.STONE);
+
+        ChunkMesher.MeshData mesh = this.mesher.mesh(section, 0, 0, (x, y, z) -> Block.STONE);
+
+        // The three faces against the border are hidden, the solid border itself gets no faces here
+        assertEquals(3, mesh.getQuadCount());
+        assertEquals(1, countFaces(mesh, 0, 1));
+        assertEquals(1, countFaces(mesh, 1, 1));
+        assertEquals(1, countFaces(mesh, 2, 1));
+    }
+
+    @Test
+    void layerOfSameBlocksMergesIntoSixQuads() {
+        Section section = new Section(0);
+        section.getStorage().fill(0, 7, 0, Section.SIZE - 1, 7, Section.SIZE - 1, Block.DIRT);
+
+        ChunkMesher.MeshData mesh = this.mesher.mesh(section, 0, 0, AIR);
+
+        assertEquals(6, mesh.getQuadCount());
+    }
+
+    /**
+     * Counts the quads whose normal points along {@code axis} in the direction of {@code sign}.
+     */
+    private static int countFaces(@NotNull ChunkMesher.MeshData mesh, int axis, int sign) {
+        int count = 0;
+        float[] normals = mesh.normals();
+        // Every quad has four vertices with the same normal
+        for (int vertex = 0; vertex < normals.length / 3; vertex += 4) {
+            if (normals[vertex * 3 + axis] == sign) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static void assertBounds(@NotNull ChunkMesher.MeshData mesh, float minX, float minY, float minZ,
+                                     float maxX, float maxY, float maxZ) {
+        float[] min = {Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE};
+        float[] max = {-Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE};
+        float[] positions = mesh.positions();
+        for (int i = 0; i < positions.length; i++) {
+            min[i % 3] = Math.min(min[i % 3], positions[i]);
+            max[i % 3] = Math.max(max[i % 3], positions[i]);
+        }
+        assertArrayEquals(new float[]{minX, minY, minZ}, min, 0);
+        assertArrayEquals(new float[]{maxX, maxY, maxZ}, max, 0);
+    }
+}
@@ -0,0 +1,123 @@
+package org.game3d.dev.game.world;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BlockTicksTest {
+    private static final int UNLIMITED = Integer.MAX_VALUE;
+    /**
+     * Ticks covered by one revolution of the top wheel.
+     */
+    private static final long REVOLUTION = BlockTicks.MAX_DELAY + 1;
+
+    @Test
+    void ticksCascadeDownToTheirDueTick() {
+        // Delays on both sides of every wheel boundary, from the first tick and from one in the middle of each wheel
+        long[] delays = {
+                1, 2, 63, 64, 65, 127, 128, 4095, 4096, 4097, 8191, 262143, 262144, 262145, 1_000_000,
+                BlockTicks.MAX_DELAY - 1, BlockTicks.MAX_DELAY
+        };
+        for (long start : new long[]{0, 37, 4000, 300_000}) {
+            BlockTicks ticks = new BlockTicks(UNLIMITED);
+            advance(ticks, start, (x, y, z) -> fail("nothing is scheduled"));
+            for (int i = 0; i < delays.length; i++) {
+                assertTrue(ticks.schedule(i, 0, 0, delays[i]));
+            }
+
+            Map<Integer, Long> fired = runAll(ticks, start + BlockTicks.MAX_DELAY);
+
+            for (int i = 0; i < delays.length; i++) {
+                assertEquals(start + delays[i], fired.get(i), "delay " + delays[i] + " from tick " + start);
+            }
+        }
+    }
+
+    @Test
+    void ticksWrapAroundTheTopWheel() {
+        BlockTicks ticks = new BlockTicks(UNLIMITED);
+        // Shortly before the top wheel completes its first revolution
+        long start = REVOLUTION - 10;
+        advance(ticks, start, (x, y, z) -> fail("nothing is scheduled"));
+        Random random = new Random(11);
+        long[] delays = new long[200];
+        for (int i = 0; i < delays.length; i++) {
+            // Half land in the next revolution within a few ticks, half close to a whole revolution away
+            delays[i] = i % 2 == 0 ? random.nextLong(1, 64) : BlockTicks.MAX_DELAY - random.nextLong(0, 100_000);
+            ticks.schedule(i, 0, 0, delays[i]);
+        }
+
+        Map<Integer, Long> fired = runAll(ticks, start + BlockTicks.MAX_DELAY);
+
+        for (int i = 0; i < delays.length; i++) {
+            assertEquals(start + delays[i], fired.get(i), "delay " + delays[i]);
+        }
+    }
+
+    @Test
+    void ticksOverBudgetSpillOverInOrder() {
+        BlockTicks ticks = new BlockTicks(3);
+        for (int i = 0; i < 8; i++) {
+            ticks.schedule(i, 0, 0, 1);
+        }
+        ticks.schedule(8, 0, 0, 2);
+        List<Integer> ran = new ArrayList<>();
+
+        ticks.tick((x, y, z) -> ran.add(x));
+        assertEquals(List.of(0, 1, 2), ran);
+        assertEquals(3, ticks.getLastRunCount());
+        assertEquals(5, ticks.getReadyCount());
+        assertEquals(6, ticks.getPendingCount());
+        // A tick that is ready but has not run yet is still pending
+        assertTrue(ticks.isScheduled(3, 0, 0));
+        assertFalse(ticks.schedule(3, 0, 0, 1));
+
+        // The backlog runs before ticks that became due later
+        ticks.tick((x, y, z) -> ran.add(x));
+        ticks.tick((x, y, z) -> ran.add(x));
+        assertEquals(List.of(0, 1, 2, 3, 4, 5, 6, 7, 8), ran);
+        assertEquals(0, ticks.getReadyCount());
+        assertEquals(0, ticks.getPendingCount());
+
+        ticks.tick((x, y, z) -> ran.add(x));
+        assertEquals(0, ticks.getLastRunCount());
+    }
+
+    @Test
+    void positionsHaveOneTickPending() {
+        BlockTicks ticks = new BlockTicks(UNLIMITED);
+        assertTrue(ticks.schedule(-5, 70, 12, 10));
+        assertFalse(ticks.schedule(-5, 70, 12, 3));
+        assertTrue(ticks.isScheduled(-5, 70, 12));
+
+        Map<Integer, Long> fired = runAll(ticks, 20);
+
+        assertEquals(Map.of(-5, 10L), fired);
+        assertFalse(ticks.isScheduled(-5, 70, 12));
+        assertTrue(ticks.schedule(-5, 70, 12, 3));
+    }
+
+    private static void advance(@NotNull BlockTicks ticks, long tick, @NotNull BlockTicks.Consumer consumer) {
+        while (ticks.getCurrentTick() < tick) {
+            ticks.tick(consumer);
+        }
+    }
+
+    /**
+     * Runs world ticks up to {@code tick}.
+     *
+     * @return the world tick each scheduled tick ran on, by its x coordinate
+     */
+    private static @NotNull Map<Integer, Long> runAll(@NotNull BlockTicks ticks, long tick) {
+        Map<Integer, Long> fired = new HashMap<>();
+        advance(ticks, tick, (x, y, z) -> assertNull(fired.put(x, ticks.getCurrentTick()), "ran twice: " + x));
+        return fired;
+    }
+}
@@ -0,0 +1,98 @@
+package org.game3d.dev.game.world;
+
+import org.game3d.dev.game.scene.Block;
+import org.game3d.dev.game.scene.BlockAccess;
+import org.game3d.dev.game.scene.Chunk;
+import org.game3d.dev.game.scene.ChunkMesher;
+import org.game3d.dev.game.scene.Section;
+import org.joml.Vector2i;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of one edit batch on a generated chunk: applying the edits and meshing what they made dirty, which is
+ * the work between a burst of edits and its meshes being ready for upload. A batch is a cube of {@code size}^3
+ * blocks around the surface, carved out and filled back in on alternate operations.
+ * <p>
+ * {@link #dirtySections()} re-meshes the sections the edits marked dirty, {@link #wholeChunk()} all sections of
+ * the chunk as before edits were tracked per section. With {@code pinned} set the chunk is held by a mesh job,
+ * so every edit copies its section's storage.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChunkRemeshBenchmark {
+    private static final long SEED = 20240613L;
+    private static final int HEIGHT = 256;
+
+    @Param({"1", "3", "7"})
+    private int size;
+    @Param({"false", "true"})
+    private boolean pinned;
+
+    private Chunk chunk;
+    private ChunkMesher mesher;
+    private BlockAccess neighbours;
+    private int minY;
+    private boolean filled;
+
+    @Setup
+    public void setup() {
+        TerrainGenerator generator = new TerrainGenerator(SEED, HEIGHT);
+        this.chunk = new Chunk(HEIGHT / Section.SIZE, new Vector2i(), 0);
+        generator.generate(this.chunk);
+        this.minY = generator.getSurfaceHeight(Chunk.SIZE / 2, Chunk.SIZE / 2) - this.size / 2;
+        this.mesher = new ChunkMesher();
+        // Neighbouring chunks are left out, every face on the chunk border is visible
+        this.neighbours = (x, y, z) -> x >= 0 && x < Chunk.SIZE && z >= 0 && z < Chunk.SIZE && y >= 0 && y < HEIGHT
+                ? this.chunk.getBlockId(x, y, z) : Block.AIR;
+        this.chunk.takeDirtySections();
+        if (this.pinned) {
+            this.chunk.pin();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (this.pinned) {
+            this.chunk.unpin();
+        }
+    }
+
+    @Benchmark
+    public ChunkMesher.MeshData[] dirtySections() {
+        this.edit();
+        return this.chunk.buildMeshes(this.mesher, this.neighbours, this.chunk.takeDirtySections());
+    }
+
+    @Benchmark
+    public ChunkMesher.MeshData[] wholeChunk() {
+        this.edit();
+        this.chunk.markDirty();
+        return this.chunk.buildMeshes(this.mesher, this.neighbours, this.chunk.takeDirtySections());
+    }
+
+    private void edit() {
+        int block = this.filled ? Block.AIR : Block.STONE;
+        this.filled = !this.filled;
+        int minXZ = Chunk.SIZE / 2 - this.size / 2;
+        for (int y = 0; y < this.size; y++) {
+            for (int z = 0; z < this.size; z++) {
+                for (int x = 0; x < this.size; x++) {
+                    this.chunk.setBlock(minXZ + x, this.minY + y, minXZ + z, block);
+                }
+            }
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ChunkRemeshBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,225 @@
+package org.game3d.dev.game.world;
+
+import org.game3d.dev.game.scene.Block;
+import org.game3d.dev.game.scene.Chunk;
+import org.game3d.dev.game.scene.Section;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.joml.Vector2i;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the simulation on a few chunks with a stone floor, standing in for the world: a change to a block marks
+ * the cells around it active, as {@link World#setBlock(int, int, int, int)} does.
+ */
+class FluidSimulationTest {
+    private static final int HEIGHT = 32;
+    /**
+     * The lowest block above the floor.
+     */
+    private static final int FLOOR = 4;
+
+    private final Map<Long, Chunk> chunks = new HashMap<>();
+    private final FluidSimulation fluids = new FluidSimulation(HEIGHT, this::getChunk, this::isInRange, this::setBlock);
+    private int range = 1;
+
+    @Test
+    void waterSpreadsOneLevelPerBlock() {
+        this.chunk(0, 0, Chunk.State.GENERATED);
+        this.setBlock(8, FLOOR, 8, Block.WATER);
+
+        this.step(Block.FLUID_SOURCE + 2);
+
+        for (int z = 0; z < Chunk.SIZE; z++) {
+            for (int x = 0; x < Chunk.SIZE; x++) {
+                int level = Block.FLUID_SOURCE - Math.abs(x - 8) - Math.abs(z - 8);
+                int expected = level > 0 ? Block.getFluidBlock(Block.FLUID_WATER, level) : Block.AIR;
+                assertEquals(expected, this.getBlockId(x, FLOOR, z), "at " + x + ", " + z);
+                assertEquals(Block.AIR, this.getBlockId(x, FLOOR + 1, z));
+            }
+        }
+        assertEquals(0, this.fluids.getLastChangedCount());
+    }
+
+    @Test
+    void lavaSpreadsTwoLevelsPerBlock() {
+        this.chunk(0, 0, Chunk.State.GENERATED);
+        this.setBlock(4, FLOOR, 8, Block.LAVA);
+
+        this.step(Block.FLUID_SOURCE);
+
+        assertEquals(Block.getFluidBlock(Block.FLUID_LAVA, 6), this.getBlockId(5, FLOOR, 8));
+        assertEquals(Block.getFluidBlock(Block.FLUID_LAVA, 4), this.getBlockId(6, FLOOR, 8));
+        assertEquals(Block.getFluidBlock(Block.FLUID_LAVA, 2), this.getBlockId(7, FLOOR, 8));
+        assertEquals(Block.AIR, this.getBlockId(8, FLOOR, 8));
+    }
+
+    @Test
+    void fluidFallsAndSpreadsOnlyWhereItRests() {
+        this.chunk(0, 0, Chunk.State.GENERATED);
+        this.setBlock(8, FLOOR + 5, 8, Block.WATER);
+
+        this.step(Block.FLUID_SOURCE + 2);
+
+        int falling = Block.getFluidBlock(Block.FLUID_WATER, Block.FLUID_SOURCE - 1);
+        for (int y = FLOOR; y < FLOOR + 5; y++) {
+            assertEquals(falling, this.getBlockId(8, y, 8), "at height " + y);
+            assertEquals(Block.AIR, this.getBlockId(9, y + 1, 8), "beside at height " + (y + 1));
+        }
+        assertEquals(Block.getFluidBlock(Block.FLUID_WATER, Block.FLUID_SOURCE - 2), this.getBlockId(9, FLOOR, 8));
+    }
+
+    @Test
+    void flowDriesUpWithoutSource() {
+        this.chunk(0, 0, Chunk.State.GENERATED);
+        this.setBlock(8, FLOOR, 8, Block.WATER);
+        this.step(Block.FLUID_SOURCE + 2);
+
+        this.setBlock(8, FLOOR, 8, Block.AIR);
+        this.step(Block.FLUID_SOURCE * 2);
+
+        for (int z = 0; z < Chunk.SIZE; z++) {
+            for (int x = 0; x < Chunk.SIZE; x++) {
+                assertEquals(Block.AIR, this.getBlockId(x, FLOOR, z), "at " + x + ", " + z);
+            }
+        }
+    }
+
+    @Test
+    void lavaTouchingWaterTurnsToStone() {
+        this.chunk(0, 0, Chunk.State.GENERATED);
+        this.setBlock(8, FLOOR, 8, Block.WATER);
+        this.setBlock(9, FLOOR, 8, Block.LAVA);
+
+        this.step(1);
+
+        assertEquals(Block.WATER, this.getBlockId(8, FLOOR, 8));
+        assertEquals(Block.STONE, this.getBlockId(9, FLOOR, 8));
+    }
+
+    @Test
+    void cellsWaitForTheirChunkToLoad() {
+        this.chunk(0, 0, Chunk.State.GENERATED);
+        Chunk loading = this.chunk(1, 0, Chunk.State.GENERATING);
+        this.setBlock(Chunk.SIZE - 1, FLOOR, 8, Block.WATER);
+        this.step(Block.FLUID_SOURCE + 2);
+        assertEquals(Block.AIR, this.getBlockId(Chunk.SIZE, FLOOR, 8));
+
+        // Not woken by the load, and the water next to it is still: only the cells marked before can start the flow
+        loading.setState(Chunk.State.GENERATED);
+        this.step(Block.FLUID_SOURCE + 2);
+
+        assertEquals(Block.getFluidBlock(Block.FLUID_WATER, Block.FLUID_SOURCE - 1),
+                this.getBlockId(Chunk.SIZE, FLOOR, 8));
+        assertEquals(Block.getFluidBlock(Block.FLUID_WATER, Block.FLUID_SOURCE - 3),
+                this.getBlockId(Chunk.SIZE + 2, FLOOR, 8));
+    }
+
+    @Test
+    void cellsOutOfRangeAreDropped() {
+        this.range = 0;
+        this.chunk(0, 0, Chunk.State.GENERATED);
+        Chunk loading = this.chunk(1, 0, Chunk.State.GENERATING);
+        this.setBlock(Chunk.SIZE - 1, FLOOR, 8, Block.WATER);
+        this.step(Block.FLUID_SOURCE + 2);
+
+        loading.setState(Chunk.State.GENERATED);
+        this.step(3);
+
+        assertEquals(Block.AIR, this.getBlockId(Chunk.SIZE, FLOOR, 8));
+    }
+
+    @Test
+    void loadedChunkWakesFluidAlongItsBorders() {
+        // Sources in the four chunks around one out of range, one block from the border facing it
+        int origin = 3 * Chunk.SIZE;
+        int[][] sources = {{origin - 1, 8}, {origin + Chunk.SIZE, 8}, {origin + 8, -1}, {origin + 8, Chunk.SIZE}};
+        for (int[] source : sources) {
+            this.chunk(source[0] >> Section.SHIFT, source[1] >> Section.SHIFT, Chunk.State.GENERATED);
+            this.setBlock(source[0], FLOOR, source[1], Block.WATER);
+        }
+        this.step(Block.FLUID_SOURCE + 2);
+
+        // The camera moves, and the chunk comes into range
+        this.range = 3;
+        Chunk loaded = this.chunk(3, 0, Chunk.State.GENERATED);
+        this.fluids.activate(loaded);
+        this.step(1);
+
+        int flowing = Block.getFluidBlock(Block.FLUID_WATER, Block.FLUID_SOURCE - 1);
+        assertEquals(flowing, this.getBlockId(origin, FLOOR, 8));
+        assertEquals(flowing, this.getBlockId(origin + Chunk.SIZE - 1, FLOOR, 8));
+        assertEquals(flowing, this.getBlockId(origin + 8, FLOOR, 0));
+        assertEquals(flowing, this.getBlockId(origin + 8, FLOOR, Chunk.SIZE - 1));
+    }
+
+    @Test
+    void loadedChunkWakesItsOwnFluid() {
+        this.chunk(0, 0, Chunk.State.GENERATED);
+
+        // Loaded from disk with a source in it, which was never set through the world
+        Chunk loaded = this.chunk(1, 0, Chunk.State.GENERATING);
+        loaded.setBlock(0, FLOOR, 3, Block.WATER);
+        loaded.setState(Chunk.State.GENERATED);
+        this.fluids.activate(loaded);
+        this.step(1);
+
+        int flowing = Block.getFluidBlock(Block.FLUID_WATER, Block.FLUID_SOURCE - 1);
+        assertEquals(flowing, this.getBlockId(Chunk.SIZE - 1, FLOOR, 3));
+        assertEquals(flowing, this.getBlockId(Chunk.SIZE + 1, FLOOR, 3));
+    }
+
+    private void step(int steps) {
+        for (int i = 0; i < steps * FluidSimulation.STEP_INTERVAL; i++) {
+            this.fluids.tick();
+        }
+    }
+
+    /**
+     * Adds a chunk with a stone floor below {@value #FLOOR}.
+     */
+    private @NotNull Chunk chunk(int chunkX, int chunkZ, @NotNull Chunk.State state) {
+        Chunk chunk = new Chunk(HEIGHT / Section.SIZE, new Vector2i(chunkX * Chunk.SIZE, chunkZ * Chunk.SIZE),
+                this.chunks.size());
+        for (int y = 0; y < FLOOR; y++) {
+            for (int z = 0; z < Chunk.SIZE; z++) {
+                for (int x = 0; x < Chunk.SIZE; x++) {
+                    chunk.setBlock(x, y, z, Block.STONE);
+                }
+            }
+        }
+        chunk.setState(state);
+        this.chunks.put(ChunkMap.key(chunkX, chunkZ), chunk);
+        return chunk;
+    }
+
+    private @Nullable Chunk getChunk(int chunkX, int chunkZ) {
+        return this.chunks.get(ChunkMap.key(chunkX, chunkZ));
+    }
+
+    private boolean isInRange(int chunkX, int chunkZ) {
+        return Math.abs(chunkX) <= this.range && Math.abs(chunkZ) <= this.range;
+    }
+
+    private int getBlockId(int x, int y, int z) {
+        Chunk chunk = this.getChunk(x >> Section.SHIFT, z >> Section.SHIFT);
+        return chunk == null ? Block.AIR : chunk.getBlockId(x & Section.MASK, y, z & Section.MASK);
+    }
+
+    private int setBlock(int x, int y, int z, int blockId) {
+        Chunk chunk = this.getChunk(x >> Section.SHIFT, z >> Section.SHIFT);
+        if (chunk == null || chunk.getState().compareTo(Chunk.State.GENERATED) < 0) {
+            return -1;
+        }
+        int old = chunk.setBlock(x & Section.MASK, y, z & Section.MASK, blockId);
+        if (old != blockId) {
+            this.fluids.markActive(x, y, z);
+        }
+        return old;
+    }
+}
@@ -0,0 +1,84 @@
+package org.game3d.dev.game.world;
+
+import org.game3d.dev.game.scene.Block;
+import org.game3d.dev.game.scene.BlockAccess;
+import org.game3d.dev.game.scene.Chunk;
+import org.game3d.dev.game.scene.Section;
+import org.joml.Vector2i;
+import org.joml.Vector3f;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of one ray cast through generated terrain. Rays start at eye height above the surface of a
+ * {@value #CHUNKS} by {@value #CHUNKS} chunk area and point in random directions, so some hit the ground at
+ * once and some travel the full {@code maxDistance} through the air; 8 is the block picking reach.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RaycastBenchmark {
+    private static final long SEED = 20240613L;
+    private static final int HEIGHT = 256;
+    private static final int CHUNKS = 5;
+    private static final int RAYS = 1024;
+
+    @Param({"8", "64"})
+    private float maxDistance;
+
+    private BlockAccess blocks;
+    private Vector3f[] origins;
+    private Vector3f[] directions;
+    private RaycastHit hit;
+    private int next;
+
+    @Setup
+    public void setup() {
+        TerrainGenerator generator = new TerrainGenerator(SEED, HEIGHT);
+        Chunk[] chunks = new Chunk[CHUNKS * CHUNKS];
+        for (int i = 0; i < chunks.length; i++) {
+            chunks[i] = new Chunk(HEIGHT / Section.SIZE,
+                    new Vector2i(i % CHUNKS * Chunk.SIZE, i / CHUNKS * Chunk.SIZE), 0);
+            generator.generate(chunks[i]);
+        }
+        int size = CHUNKS * Chunk.SIZE;
+        this.blocks = (x, y, z) -> x >= 0 && x < size && z >= 0 && z < size && y >= 0 && y < HEIGHT
+                ? chunks[z / Chunk.SIZE * CHUNKS + x / Chunk.SIZE].getBlockId(x % Chunk.SIZE, y, z % Chunk.SIZE)
+                : Block.AIR;
+
+        Random random = new Random(SEED);
+        this.origins = new Vector3f[RAYS];
+        this.directions = new Vector3f[RAYS];
+        for (int i = 0; i < RAYS; i++) {
+            // Keep clear of the area edge so rays within reach stay on generated terrain
+            float x = size / 2f + random.nextFloat(-Chunk.SIZE, Chunk.SIZE);
+            float z = size / 2f + random.nextFloat(-Chunk.SIZE, Chunk.SIZE);
+            float y = generator.getSurfaceHeight((int) x, (int) z) + 2.6f;
+            this.origins[i] = new Vector3f(x, y, z);
+            this.directions[i] = new Vector3f(
+                    (float) random.nextGaussian(), (float) random.nextGaussian(), (float) random.nextGaussian()
+            );
+        }
+        this.hit = new RaycastHit();
+    }
+
+    @Benchmark
+    public boolean cast() {
+        int index = this.next;
+        this.next = (index + 1) % RAYS;
+        return Raycast.cast(this.blocks, this.origins[index], this.directions[index], this.maxDistance,
+                Raycast.SOLID, this.hit);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(RaycastBenchmark.class.getSimpleName()).build()).run();
+    }
+}
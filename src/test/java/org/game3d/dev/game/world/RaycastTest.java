@@ -0,0 +1,239 @@
+package org.game3d.dev.game.world;
+
+import org.game3d.dev.game.scene.Block;
+import org.game3d.dev.game.scene.BlockAccess;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.joml.Vector3f;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RaycastTest {
+    private static final int WORLD_SIZE = 16;
+    /**
+     * The brute-force march samples the ray this often, so it knows where a block was entered to within a step.
+     */
+    private static final double STEP = 1.0e-3;
+
+    /**
+     * Stone in about one of eight blocks of a cube around the origin, so rays cross positive and negative
+     * coordinates alike; everything outside is air.
+     */
+    private static final BlockAccess SCATTERED = (x, y, z) -> {
+        if (x < -WORLD_SIZE || x >= WORLD_SIZE || y < -WORLD_SIZE || y >= WORLD_SIZE
+                || z < -WORLD_SIZE || z >= WORLD_SIZE) {
+            return Block.AIR;
+        }
+        int hash = x * 73856093 ^ y * 19349663 ^ z * 83492791;
+        hash ^= hash >>> 13;
+        hash *= 0x5bd1e995;
+        hash ^= hash >>> 15;
+        return (hash & 7) == 0 ? Block.STONE : Block.AIR;
+    };
+
+    private final RaycastHit hit = new RaycastHit();
+
+    @Test
+    void randomRaysMatchBruteForceMarch() {
+        Random random = new Random(42);
+        int compared = 0;
+        int hits = 0;
+        for (int i = 0; i < 1000; i++) {
+            Vector3f origin = new Vector3f(
+                    random.nextFloat(-10, 10), random.nextFloat(-10, 10), random.nextFloat(-10, 10)
+            );
+            Vector3f direction = new Vector3f(
+                    (float) random.nextGaussian(), (float) random.nextGaussian(), (float) random.nextGaussian()
+            );
+            Marched expected = this.compare(origin, direction, random.nextFloat(0, 24));
+            if (expected != null) {
+                compared++;
+                hits += expected.hit ? 1 : 0;
+            }
+        }
+        // Rays passing within a step of a block edge or corner, or ending within a step of a face, are skipped
+        assertTrue(compared > 950, "only " + compared + " rays compared");
+        assertTrue(hits > 100, "only " + hits + " rays hit");
+    }
+
+    @Test
+    void axisAlignedRaysMatchBruteForceMarch() {
+        Random random = new Random(7);
+        float[][] axes = {{1, 0, 0}, {-1, 0, 0}, {0, 1, 0}, {0, -1, 0}, {0, 0, 1}, {0, 0, -1}};
+        int compared = 0;
+        for (int i = 0; i < 300; i++) {
+            float[] axis = axes[i % axes.length];
+            Vector3f origin = new Vector3f(
+                    random.nextFloat(-10, 10), random.nextFloat(-10, 10), random.nextFloat(-10, 10)
+            );
+            if (this.compare(origin, new Vector3f(axis), random.nextFloat(0, 24)) != null) {
+                compared++;
+            }
+        }
+        assertTrue(compared > 290, "only " + compared + " rays compared");
+    }
+
+    @Test
+    void rayStartingInsideSolidBlockHitsItAtOnce() {
+        BlockAccess blocks = solidAt(-3, 2, -5);
+
+        assertTrue(Raycast.cast(blocks, new Vector3f(-2.5f, 2.5f, -4.5f), new Vector3f(1, 0.3f, -0.2f), 10,
+                Raycast.SOLID, this.hit));
+
+        assertHit(-3, 2, -5, 0, 0, 0, 0);
+    }
+
+    @Test
+    void negativeCoordinatesRoundDownToTheirBlock() {
+        BlockAccess blocks = solidAt(-5, -4, -8);
+
+        assertTrue(Raycast.cast(blocks, new Vector3f(-0.5f, -3.5f, -7.25f), new Vector3f(-2, 0, 0), 10,
+                Raycast.SOLID, this.hit));
+
+        // The block spans x -5 to -4, so the ray enters it 3.5 blocks from its origin through its +x face
+        assertHit(-5, -4, -8, 1, 0, 0, 3.5f);
+        assertEquals(-4, this.hit.getAdjacentX());
+    }
+
+    @Test
+    void blocksBeyondMaxDistanceAreNotHit() {
+        BlockAccess blocks = solidAt(4, 0, 0);
+        Vector3f origin = new Vector3f(0.5f, 0.5f, 0.5f);
+        Vector3f direction = new Vector3f(1, 0, 0);
+
+        assertFalse(Raycast.cast(blocks, origin, direction, 3.4f, Raycast.SOLID, this.hit));
+        assertTrue(Raycast.cast(blocks, origin, direction, 3.5f, Raycast.SOLID, this.hit));
+        assertHit(4, 0, 0, -1, 0, 0, 3.5f);
+    }
+
+    @Test
+    void degenerateRaysNeverHit() {
+        assertFalse(Raycast.cast(solidAt(0, 0, 0), new Vector3f(0.5f), new Vector3f(), 10, Raycast.SOLID, this.hit));
+        assertThrows(IllegalArgumentException.class, () -> Raycast.cast(SCATTERED, new Vector3f(),
+                new Vector3f(1, 0, 0), Float.POSITIVE_INFINITY, Raycast.SOLID, this.hit));
+    }
+
+    @Test
+    void lineOfSightIsBlockedByOpaqueBlocksBetweenThePoints() {
+        BlockAccess blocks = solidAt(3, 0, 0);
+
+        assertTrue(Raycast.hasLineOfSight(blocks, new Vector3f(0.5f, 0.5f, 0.5f), new Vector3f(2.5f, 0.5f, 0.5f)));
+        assertFalse(Raycast.hasLineOfSight(blocks, new Vector3f(0.5f, 0.5f, 0.5f), new Vector3f(5.5f, 0.5f, 0.5f)));
+        assertFalse(Raycast.hasLineOfSight(blocks, new Vector3f(5.5f, 0.5f, 0.5f), new Vector3f(0.5f, 0.5f, 0.5f)));
+        assertTrue(Raycast.hasLineOfSight(blocks, new Vector3f(0.5f, 1.5f, 0.5f), new Vector3f(5.5f, 1.5f, 0.5f)));
+    }
+
+    @Test
+    void lineOfSightIncludesTheBlocksOfBothEnds() {
+        BlockAccess blocks = solidAt(3, 0, 0);
+
+        assertFalse(Raycast.hasLineOfSight(blocks, new Vector3f(3.5f, 0.5f, 0.5f), new Vector3f(6.5f, 0.5f, 0.5f)));
+        assertFalse(Raycast.hasLineOfSight(blocks, new Vector3f(0.5f, 0.5f, 0.5f), new Vector3f(3.5f, 0.5f, 0.5f)));
+        assertTrue(Raycast.hasLineOfSight(blocks, new Vector3f(0.5f, 0.5f, 0.5f), new Vector3f(2.99f, 0.5f, 0.5f)));
+    }
+
+    @Test
+    void lineOfSightMatchesCastOverRandomSegments() {
+        Random random = new Random(3);
+        for (int i = 0; i < 500; i++) {
+            Vector3f from = new Vector3f(
+                    random.nextFloat(-10, 10), random.nextFloat(-10, 10), random.nextFloat(-10, 10)
+            );
+            Vector3f to = new Vector3f(
+                    random.nextFloat(-10, 10), random.nextFloat(-10, 10), random.nextFloat(-10, 10)
+            );
+            Vector3f direction = new Vector3f(to).sub(from);
+            boolean blocked = Raycast.cast(SCATTERED, from, direction, direction.length(), Raycast.OPAQUE, this.hit);
+
+            assertEquals(!blocked, Raycast.hasLineOfSight(SCATTERED, from, to), () -> from + " -> " + to);
+        }
+    }
+
+    /**
+     * Casts a ray through {@link #SCATTERED} and checks it against {@link #march}.
+     *
+     * @return what the march found, or {@code null} if it could not tell and the ray was not compared
+     */
+    private @Nullable Marched compare(@NotNull Vector3f origin, @NotNull Vector3f direction, float maxDistance) {
+        Marched expected = march(origin, direction, maxDistance);
+        if (expected == null) {
+            return null;
+        }
+        String ray = origin + " + t * " + direction + ", t <= " + maxDistance;
+        boolean hit = Raycast.cast(SCATTERED, origin, direction, maxDistance, Raycast.SOLID, this.hit);
+        assertEquals(expected.hit, hit, ray);
+        if (!hit) {
+            return expected;
+        }
+        assertArrayEquals(new int[]{expected.x, expected.y, expected.z},
+                new int[]{this.hit.getX(), this.hit.getY(), this.hit.getZ()}, ray);
+        assertArrayEquals(new int[]{expected.faceX, expected.faceY, expected.faceZ},
+                new int[]{this.hit.getFaceX(), this.hit.getFaceY(), this.hit.getFaceZ()}, ray);
+        assertEquals(expected.distance, this.hit.getDistance(), STEP + 1.0e-4, ray);
+        assertEquals(Block.STONE, this.hit.getBlock(), ray);
+        return expected;
+    }
+
+    /**
+     * Walks the ray in steps of {@link #STEP} in double precision and reports the first solid block it lands in.
+     *
+     * @return {@code null} if a step crossed two block boundaries at once, or if the ray was cut off within a
+     * step of entering a solid block, where the order of the crossings is lost
+     */
+    private static @Nullable Marched march(@NotNull Vector3f origin, @NotNull Vector3f direction, float maxDistance) {
+        double length = Math.sqrt(direction.x * direction.x + direction.y * direction.y + direction.z * direction.z);
+        double dx = direction.x / length;
+        double dy = direction.y / length;
+        double dz = direction.z / length;
+        int x = (int) Math.floor(origin.x);
+        int y = (int) Math.floor(origin.y);
+        int z = (int) Math.floor(origin.z);
+        if (Raycast.SOLID.test(SCATTERED.getBlockId(x, y, z))) {
+            return new Marched(true, x, y, z, 0, 0, 0, 0);
+        }
+
+        for (double t = STEP; t - STEP <= maxDistance; t += STEP) {
+            int nextX = (int) Math.floor(origin.x + dx * t);
+            int nextY = (int) Math.floor(origin.y + dy * t);
+            int nextZ = (int) Math.floor(origin.z + dz * t);
+            int crossed = (nextX != x ? 1 : 0) + (nextY != y ? 1 : 0) + (nextZ != z ? 1 : 0);
+            if (crossed == 0) {
+                continue;
+            }
+            if (crossed > 1) {
+                return null;
+            }
+            int faceX = x - nextX;
+            int faceY = y - nextY;
+            int faceZ = z - nextZ;
+            x = nextX;
+            y = nextY;
+            z = nextZ;
+            if (Raycast.SOLID.test(SCATTERED.getBlockId(x, y, z))) {
+                // Entered somewhere in the last step
+                if (t <= maxDistance) {
+                    return new Marched(true, x, y, z, faceX, faceY, faceZ, (float) (t - STEP / 2));
+                }
+                return null;
+            }
+        }
+        return new Marched(false, 0, 0, 0, 0, 0, 0, 0);
+    }
+
+    private static @NotNull BlockAccess solidAt(int solidX, int solidY, int solidZ) {
+        return (x, y, z) -> x == solidX && y == solidY && z == solidZ ? Block.STONE : Block.AIR;
+    }
+
+    private void assertHit(int x, int y, int z, int faceX, int faceY, int faceZ, float distance) {
+        assertArrayEquals(new int[]{x, y, z}, new int[]{this.hit.getX(), this.hit.getY(), this.hit.getZ()});
+        assertArrayEquals(new int[]{faceX, faceY, faceZ},
+                new int[]{this.hit.getFaceX(), this.hit.getFaceY(), this.hit.getFaceZ()});
+        assertEquals(distance, this.hit.getDistance(), 1.0e-5);
+    }
+
+    private record Marched(boolean hit, int x, int y, int z, int faceX, int faceY, int faceZ, float distance) {
+    }
+}
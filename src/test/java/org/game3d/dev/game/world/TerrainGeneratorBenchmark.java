@@ -0,0 +1,74 @@
+package org.game3d.dev.game.world;
+
+import org.game3d.dev.game.scene.Chunk;
+import org.game3d.dev.game.scene.Section;
+import org.joml.Vector2i;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.ThreadParams;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generation throughput of the terrain generator alone, without scheduling, lighting or meshing. One operation
+ * generates one full-height chunk; the score is chunks per second summed over all benchmark threads.
+ * <p>
+ * All threads share one generator, as the chunk scheduler's workers do. {@link #generate} runs on one thread,
+ * {@link #generateOnAllCores} on as many as there are cores, so the two scores show how generation scales; other
+ * thread counts can be measured with {@code -t}. Each thread takes chunks in turn from a square region of
+ * {@value #REGION} by {@value #REGION} chunks, starting at its own offset, so every operation samples different
+ * noise and the result covers plains and mountains alike.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TerrainGeneratorBenchmark {
+    private static final long SEED = 20240613L;
+    private static final int REGION = 64;
+
+    private Chunk chunk;
+    private int next;
+
+    @Setup
+    public void setup(Shared shared, ThreadParams threads) {
+        this.chunk = new Chunk(shared.height / Section.SIZE, new Vector2i(), 0);
+        this.next = threads.getThreadIndex() * (REGION * REGION / threads.getThreadCount());
+    }
+
+    @Benchmark
+    public Chunk generate(Shared shared) {
+        int index = this.next;
+        this.next = (index + 1) % (REGION * REGION);
+        this.chunk.getPosition().set(index % REGION * Chunk.SIZE, index / REGION * Chunk.SIZE);
+        shared.generator.generate(this.chunk);
+        return this.chunk;
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public Chunk generateOnAllCores(Shared shared) {
+        return this.generate(shared);
+    }
+
+    @State(Scope.Benchmark)
+    public static class Shared {
+        @Param({"256"})
+        private int height;
+
+        private TerrainGenerator generator;
+
+        @Setup
+        public void setup() {
+            this.generator = new TerrainGenerator(SEED, this.height);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(TerrainGeneratorBenchmark.class.getSimpleName()).build()).run();
+    }
+}
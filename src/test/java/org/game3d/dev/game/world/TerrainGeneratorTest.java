@@ -0,0 +1,116 @@
+package org.game3d.dev.game.world;
+
+import org.game3d.dev.game.scene.BlockStorage;
+import org.game3d.dev.game.scene.Chunk;
+import org.game3d.dev.game.scene.Section;
+import org.jetbrains.annotations.NotNull;
+import org.joml.Vector2i;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TerrainGeneratorTest {
+    private static final long SEED = 20240613L;
+    private static final int HEIGHT = 256;
+    private static final int REGION = 6;
+    private static final int THREADS = 4;
+
+    @Test
+    void parallelGenerationMatchesSequential() {
+        List<Chunk> sequential = region();
+        TerrainGenerator generator = new TerrainGenerator(SEED, HEIGHT);
+        for (Chunk chunk : sequential) {
+            generator.generate(chunk);
+        }
+
+        // A fresh generator, chunks in shuffled order spread over more threads than a small machine has cores
+        List<Chunk> parallel = region();
+        List<Chunk> shuffled = new ArrayList<>(parallel);
+        Collections.shuffle(shuffled, new Random(5));
+        TerrainGenerator parallelGenerator = new TerrainGenerator(SEED, HEIGHT);
+        ForkJoinPool pool = new ForkJoinPool(THREADS);
+        try {
+            pool.submit(() -> shuffled.parallelStream().forEach(parallelGenerator::generate)).join();
+        } finally {
+            pool.shutdown();
+        }
+
+        assertSameBlocks(sequential, parallel);
+    }
+
+    @Test
+    void recycledChunksMatchFreshOnes() {
+        TerrainGenerator generator = new TerrainGenerator(SEED, HEIGHT);
+        List<Chunk> fresh = region();
+        fresh.forEach(generator::generate);
+
+        // Every chunk first holds the terrain of another position, as pooled chunks do
+        List<Chunk> recycled = region();
+        for (int i = 0; i < recycled.size(); i++) {
+            Chunk chunk = recycled.get(i);
+            Vector2i position = new Vector2i(chunk.getPosition());
+            Vector2i other = fresh.get(fresh.size() - 1 - i).getPosition();
+            chunk.getPosition().set(other);
+            generator.generate(chunk);
+            chunk.reset(position.x, position.y);
+            generator.generate(chunk);
+        }
+
+        assertSameBlocks(fresh, recycled);
+    }
+
+    @Test
+    void seedsGiveDifferentTerrain() {
+        List<Chunk> a = region();
+        List<Chunk> b = region();
+        a.forEach(new TerrainGenerator(SEED, HEIGHT)::generate);
+        b.forEach(new TerrainGenerator(SEED + 1, HEIGHT)::generate);
+
+        int different = 0;
+        for (int i = 0; i < a.size(); i++) {
+            for (int s = 0; s < a.get(i).getSections().length; s++) {
+                different += serialize(a.get(i).getSection(s).getStorage())
+                        .equals(serialize(b.get(i).getSection(s).getStorage())) ? 0 : 1;
+            }
+        }
+        assertTrue(different > 0);
+    }
+
+    /**
+     * @return empty chunks for a square of {@value #REGION} by {@value #REGION} chunks around the origin
+     */
+    private static @NotNull List<Chunk> region() {
+        List<Chunk> chunks = new ArrayList<>();
+        for (int z = 0; z < REGION; z++) {
+            for (int x = 0; x < REGION; x++) {
+                Vector2i position = new Vector2i((x - REGION / 2) * Chunk.SIZE, (z - REGION / 2) * Chunk.SIZE);
+                chunks.add(new Chunk(HEIGHT / Section.SIZE, position, chunks.size()));
+            }
+        }
+        return chunks;
+    }
+
+    private static void assertSameBlocks(@NotNull List<Chunk> expected, @NotNull List<Chunk> actual) {
+        for (int i = 0; i < expected.size(); i++) {
+            Chunk chunk = expected.get(i);
+            for (int s = 0; s < chunk.getSections().length; s++) {
+                assertEquals(serialize(chunk.getSection(s).getStorage()),
+                        serialize(actual.get(i).getSection(s).getStorage()),
+                        "chunk " + chunk.getPosition() + ", section " + s);
+            }
+        }
+    }
+
+    private static @NotNull ByteBuffer serialize(@NotNull BlockStorage storage) {
+        ByteBuffer buffer = ByteBuffer.allocate(storage.getSerializedSize());
+        storage.write(buffer);
+        return buffer.flip();
+    }
+}